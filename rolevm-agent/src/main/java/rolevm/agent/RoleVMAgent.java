@@ -6,9 +6,14 @@ import java.lang.instrument.Instrumentation;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import rolevm.transform.CachingTransformer;
 import rolevm.transform.DefaultTransformer;
 import rolevm.transform.DumpingTransformer;
+import rolevm.transform.RoleMethodIndex;
 import rolevm.transform.StandardBlacklist;
 import rolevm.transform.UserDefinedBlacklist;
 
@@ -21,29 +26,85 @@ public class RoleVMAgent {
     private static final Path PATH = Paths.get("target", "rolevm-transformed-classes");
 
     /**
-     * Registers the RoleVM {@link ClassFileTransformer}.
+     * Registers the RoleVM {@link ClassFileTransformer}. The system properties
+     * {@code rolevm.include} and {@code rolevm.exclude} select the transformed
+     * classes (see {@link #createBlacklist(String, String)}). If the system property
+     * {@code rolevm.contextField} is {@code true}, player classes get a field for
+     * their dispatch context. If the system property {@code rolevm.roleIndex} is
+     * set, only call sites that a role method could intercept are rewritten (see
+     * {@link #createIndex(String)}). If the system property {@code rolevm.cacheDir}
+     * is set (and the agent does not dump classes), transformed classes are
+     * cached in that directory across runs (see {@link CachingTransformer}).
      */
     public static void premain(final String args, final Instrumentation ins) {
-        ins.addTransformer(createTransformer(System.getProperty("rolevm.exclude"), "dump".equals(args)));
+        ins.addTransformer(createTransformer(
+                createBlacklist(System.getProperty("rolevm.include"), System.getProperty("rolevm.exclude")),
+                "dump".equals(args),
+                Boolean.getBoolean("rolevm.contextField"), createIndex(System.getProperty("rolevm.roleIndex")),
+                System.getProperty("rolevm.cacheDir")));
     }
 
-    private static ClassFileTransformer createTransformer(final String exclude, final boolean dump) {
-        StandardBlacklist blacklist = createBlacklist(exclude);
+    private static ClassFileTransformer createTransformer(final StandardBlacklist blacklist, final boolean dump,
+            final boolean contextField, final RoleMethodIndex index, final String cacheDir) {
         if (dump) {
             try {
                 Files.createDirectories(PATH);
-                return new DumpingTransformer(blacklist, PATH);
+                return new DumpingTransformer(blacklist, contextField, index, PATH);
             } catch (final IOException e) {
                 System.err.println("Could not create dump directory, dumping disabled.");
             }
+        } else if (cacheDir != null && !cacheDir.trim().isEmpty()) {
+            try {
+                return new CachingTransformer(blacklist, contextField, index, Paths.get(cacheDir));
+            } catch (final IOException e) {
+                System.err.println("Could not open transformation cache, caching disabled: " + e);
+            }
+        }
+        return new DefaultTransformer(blacklist, contextField, index);
+    }
+
+    /**
+     * Creates the role method index: {@code classpath} scans the class path for
+     * role methods, any other value is the path of an index file (see
+     * {@link RoleMethodIndex#main(String[])}). Returns {@code null}, i.e., all
+     * call sites are rewritten, if {@code roleIndex} is {@code null} or the index
+     * cannot be created.
+     */
+    private static RoleMethodIndex createIndex(final String roleIndex) {
+        if (roleIndex == null || roleIndex.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            if ("classpath".equals(roleIndex)) {
+                return RoleMethodIndex.scan(System.getProperty("java.class.path"));
+            }
+            return RoleMethodIndex.read(Paths.get(roleIndex));
+        } catch (final IOException e) {
+            System.err.println("Could not create role method index, rewriting all call sites: " + e);
+            return null;
         }
-        return new DefaultTransformer(blacklist);
     }
 
-    private static StandardBlacklist createBlacklist(final String exclude) {
-        if (exclude != null && !exclude.trim().isEmpty()) {
-            return new UserDefinedBlacklist(exclude);
+    /**
+     * Creates the blacklist from comma-separated rules (see
+     * {@link UserDefinedBlacklist}). Each entry of {@code include} is an include
+     * rule, i.e., if it is set, only the matching classes are transformed. The
+     * rules of {@code exclude} follow, so they win over include rules for the
+     * same package. The standard exclusions are always compiled with the rules,
+     * so that the decisions are cached per package even without user rules.
+     */
+    private static StandardBlacklist createBlacklist(final String include, final String exclude) {
+        List<String> rules = new ArrayList<>();
+        if (include != null) {
+            for (String rule : include.split(",")) {
+                if (!rule.trim().isEmpty()) {
+                    rules.add("+" + rule.trim());
+                }
+            }
+        }
+        if (exclude != null) {
+            rules.addAll(Arrays.asList(exclude.split(",")));
         }
-        return new StandardBlacklist();
+        return new UserDefinedBlacklist(rules);
     }
 }
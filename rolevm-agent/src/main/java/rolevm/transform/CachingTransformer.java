@@ -0,0 +1,151 @@
+package rolevm.transform;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.instrument.IllegalClassFormatException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.ProtectionDomain;
+import java.util.Objects;
+
+import org.objectweb.asm.ClassReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Transformer that stores transformed classes in a persistent
+ * {@link TransformationCache}, so that identical class files are not
+ * transformed again when the application is restarted. The key of a class file
+ * is the SHA-256 hash of its contents and of the configuration of the
+ * transformer, i.e., the version of the agent, the blacklist, the
+ * {@linkplain ContextFieldAdapter context field} option and the
+ * {@linkplain RoleMethodIndex role method index}. If the blacklist has rules
+ * that are scoped to class loaders, the key also covers the scope of the loader
+ * that defines the superclass, which decides whether a context field is added.
+ * A cache hit costs a hash and a copy of the cached class file. I/O errors are logged, and the class is
+ * transformed as if there was no cache.
+ *
+ * @author Martin Morgenstern
+ */
+public class CachingTransformer extends DefaultTransformer implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(CachingTransformer.class);
+    private static final String ALGORITHM = "SHA-256";
+    private static final int FORMAT_VERSION = 1;
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw (AssertionError) new AssertionError().initCause(e);
+        }
+    });
+
+    private final StandardBlacklist blacklist;
+    private final byte[] configuration;
+    private final TransformationCache cache;
+
+    /**
+     * Creates a transformer like
+     * {@link DefaultTransformer#DefaultTransformer(StandardBlacklist, boolean, RoleMethodIndex)}
+     * that opens (or creates) the cache in {@code directory}.
+     */
+    public CachingTransformer(final StandardBlacklist blacklist, final boolean contextField,
+            final RoleMethodIndex index, final Path directory) throws IOException {
+        super(blacklist, contextField, index);
+        this.blacklist = blacklist;
+        this.configuration = hashConfiguration(blacklist, contextField, index);
+        this.cache = new TransformationCache(Objects.requireNonNull(directory));
+    }
+
+    @Override
+    public byte[] transform(final ClassLoader loader, final String className, final Class<?> classBeingRedefined,
+            final ProtectionDomain protectionDomain, final byte[] classfileBuffer) throws IllegalClassFormatException {
+        // see DefaultTransformer: fields cannot be added to classes that are already loaded
+        final boolean addField = addsContextField() && classBeingRedefined == null;
+        if (!isCandidate(loader, className, addField, classfileBuffer)) {
+            return null;
+        }
+        final byte[] key = key(loader, addField, classfileBuffer);
+        try {
+            final byte[] cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        } catch (IOException e) {
+            LOG.warn("Could not read cached class {}: {}", className, e.toString());
+        }
+        final byte[] buffer = transformClass(loader, className, addField, classfileBuffer);
+        if (buffer != null) {
+            try {
+                cache.put(key, buffer);
+            } catch (IOException e) {
+                LOG.warn("Could not cache class {}: {}", className, e.toString());
+            }
+        }
+        return buffer;
+    }
+
+    /** Returns the number of cached class files. */
+    public int cachedClasses() {
+        return cache.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        cache.close();
+    }
+
+    private byte[] key(final ClassLoader loader, final boolean addField, final byte[] classfile) {
+        MessageDigest digest = DIGEST.get();
+        digest.update(configuration);
+        digest.update(addField ? (byte) 1 : (byte) 0);
+        if (addField && blacklist.isScoped()) {
+            // see ContextFieldAdapter: the superclass is looked up with its scope
+            String superName = new ClassReader(classfile).getSuperName();
+            if (superName != null) {
+                String scope = PackageRules.scopeOf(ContextFieldAdapter.definingLoader(superName, loader));
+                digest.update((scope == null ? "\n" : "@" + scope + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        digest.update(classfile);
+        return digest.digest();
+    }
+
+    private static byte[] hashConfiguration(final StandardBlacklist blacklist, final boolean contextField,
+            final RoleMethodIndex index) throws IOException {
+        StringWriter out = new StringWriter();
+        out.write(FORMAT_VERSION + "\n" + agentVersion() + "\n" + blacklist + "\n" + contextField + "\n");
+        if (index != null) {
+            index.write(out);
+        }
+        MessageDigest digest = DIGEST.get();
+        return digest.digest(out.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the version of the agent, including the size and modification time
+     * of its jar file, so that snapshot builds do not share cache entries.
+     */
+    private static String agentVersion() {
+        String version = String.valueOf(CachingTransformer.class.getPackage().getImplementationVersion());
+        CodeSource source = CachingTransformer.class.getProtectionDomain().getCodeSource();
+        if (source != null && source.getLocation() != null) {
+            try {
+                Path jar = Paths.get(source.getLocation().toURI());
+                if (Files.isRegularFile(jar)) {
+                    version += " " + Files.size(jar) + " " + Files.getLastModifiedTime(jar).toMillis();
+                }
+            } catch (URISyntaxException | IllegalArgumentException | IOException e) {
+                // use the implementation version only
+            }
+        }
+        return version;
+    }
+}
@@ -0,0 +1,144 @@
+package rolevm.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Scans the constant pool of a class file, without parsing the rest of it, to
+ * find out whether the class may contain call sites that the
+ * {@link IndyMethodAdapter} rewrites. Only {@code Methodref} and
+ * {@code InterfaceMethodref} constants can be the operand of an
+ * {@code invokevirtual} or {@code invokeinterface} instruction, so a class
+ * without such constants (except for constructors and class initializers) is
+ * left unchanged. If a {@link RoleMethodIndex} is given, only method references
+ * in the index (and references to the methods that implement {@code proceed}
+ * calls) are taken into account. The scan is conservative, i.e., it cannot tell
+ * a static method from an instance method, and it returns {@code true} for
+ * class files it does not understand.
+ *
+ * @author Martin Morgenstern
+ */
+final class ConstantPoolScanner {
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELDREF = 9;
+    private static final int METHODREF = 10;
+    private static final int INTERFACE_METHODREF = 11;
+    private static final int NAME_AND_TYPE = 12;
+    private static final int METHOD_HANDLE = 15;
+    private static final int METHOD_TYPE = 16;
+    private static final int DYNAMIC = 17;
+    private static final int INVOKE_DYNAMIC = 18;
+    private static final int MODULE = 19;
+    private static final int PACKAGE = 20;
+
+    private final byte[] b;
+    private final int[] offsets;
+
+    private ConstantPoolScanner(final byte[] classfile) {
+        b = classfile;
+        offsets = new int[readUnsignedShort(8)];
+    }
+
+    /**
+     * Returns {@code true} if the class file may contain call sites that are
+     * rewritten using the given index (which may be {@code null}).
+     */
+    static boolean mayContainRewritableCalls(final byte[] classfile, final RoleMethodIndex index) {
+        try {
+            ConstantPoolScanner scanner = new ConstantPoolScanner(classfile);
+            if (scanner.readUnsignedShort(0) != 0xCAFE || scanner.readUnsignedShort(2) != 0xBABE) {
+                return true;
+            }
+            return !scanner.readOffsets() || scanner.hasCandidates(index);
+        } catch (ArrayIndexOutOfBoundsException | IOException e) {
+            return true;
+        }
+    }
+
+    /** Records the offsets of all constants; returns {@code false} for unknown constants. */
+    private boolean readOffsets() {
+        int offset = 10;
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] = offset;
+            switch (b[offset]) {
+            case UTF8:
+                offset += 3 + readUnsignedShort(offset + 1);
+                break;
+            case CLASS:
+            case STRING:
+            case METHOD_TYPE:
+            case MODULE:
+            case PACKAGE:
+                offset += 3;
+                break;
+            case METHOD_HANDLE:
+                offset += 4;
+                break;
+            case INTEGER:
+            case FLOAT:
+            case FIELDREF:
+            case METHODREF:
+            case INTERFACE_METHODREF:
+            case NAME_AND_TYPE:
+            case DYNAMIC:
+            case INVOKE_DYNAMIC:
+                offset += 5;
+                break;
+            case LONG:
+            case DOUBLE:
+                offset += 9;
+                i++;
+                break;
+            default:
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasCandidates(final RoleMethodIndex index) throws IOException {
+        for (int i = 1; i < offsets.length; i++) {
+            int offset = offsets[i];
+            if (offset != 0 && (b[offset] == METHODREF || b[offset] == INTERFACE_METHODREF)) {
+                int nameAndType = offsets[readUnsignedShort(offset + 3)];
+                int name = offsets[readUnsignedShort(nameAndType + 1)];
+                // only <init> and <clinit> start with '<'
+                if (readUnsignedShort(name + 1) > 0 && b[name + 3] != '<'
+                        && (index == null || isIndexed(index, name, offsets[readUnsignedShort(nameAndType + 3)]))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isIndexed(final RoleMethodIndex index, final int name, final int descriptor) throws IOException {
+        String methodName = readUtf8(name);
+        // MethodHandle.invoke and DispatchContext.proceed implement proceed calls
+        return "invoke".equals(methodName) || "proceed".equals(methodName)
+                || index.contains(methodName, readUtf8(descriptor));
+    }
+
+    private String readUtf8(final int offset) throws IOException {
+        int length = readUnsignedShort(offset + 1);
+        for (int i = offset + 3; i < offset + 3 + length; i++) {
+            if (b[i] <= 0) {
+                // modified UTF-8, which is what DataInput uses
+                return new DataInputStream(new ByteArrayInputStream(b, offset + 1, length + 2)).readUTF();
+            }
+        }
+        return new String(b, offset + 3, length, StandardCharsets.ISO_8859_1);
+    }
+
+    private int readUnsignedShort(final int offset) {
+        return ((b[offset] & 0xFF) << 8) | (b[offset + 1] & 0xFF);
+    }
+}
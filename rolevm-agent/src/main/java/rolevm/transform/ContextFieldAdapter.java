@@ -0,0 +1,111 @@
+package rolevm.transform;
+
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+import static org.objectweb.asm.Opcodes.ACC_MODULE;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ACC_TRANSIENT;
+import static org.objectweb.asm.Opcodes.ACC_VOLATILE;
+import static org.objectweb.asm.Opcodes.ASM7;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+
+/**
+ * Adds a synthetic instance field to classes that may be players, in which the
+ * runtime stores the dispatch context of the player instead of looking it up
+ * in a map. The field is only added to the topmost transformed class of a
+ * hierarchy, i.e., to classes whose superclass is excluded from the
+ * transformation, since subclasses inherit it. If the blacklist has rules that
+ * are scoped to class loaders, the superclass is looked up with the loader that
+ * defines it (see {@link #definingLoader(String, ClassLoader)}), which may be a
+ * parent of the loader of the transformed class. Interfaces and role types are
+ * skipped.
+ * 
+ * @author Martin Morgenstern
+ */
+public class ContextFieldAdapter extends ClassVisitor {
+    /** Name of the field, which is also hardcoded in the runtime. */
+    public static final String FIELD_NAME = "$rolevm$ctx";
+    public static final String FIELD_DESC = "Ljava/lang/Object;";
+    private static final String ROLE_ANNOTATION_DESC = "Lrolevm/api/Role;";
+
+    /** Finds the resources of the bootstrap class loader only. */
+    private static final ClassLoader BOOT_RESOURCES = new ClassLoader(null) {
+    };
+
+    private final StandardBlacklist blacklist;
+    private final ClassLoader loader;
+    private boolean eligible;
+
+    /**
+     * Creates the adapter for a class that is defined by {@code loader}
+     * ({@code null} is the bootstrap class loader).
+     */
+    public ContextFieldAdapter(final ClassVisitor cv, final StandardBlacklist blacklist, final ClassLoader loader) {
+        super(ASM7, cv);
+        this.blacklist = blacklist;
+        this.loader = loader;
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        super.visit(version, access, name, signature, superName, interfaces);
+        eligible = (access & (ACC_INTERFACE | ACC_MODULE)) == 0 && superName != null
+                && blacklist.isExcluded(superName, superclassLoader(superName));
+    }
+
+    /** Returns the class loader with which the superclass is looked up. */
+    private ClassLoader superclassLoader(final String superName) {
+        return blacklist.isScoped() ? definingLoader(superName, loader) : loader;
+    }
+
+    /**
+     * Returns the loader that defines the class with the given internal name when
+     * it is loaded by {@code loader}, i.e., in the standard delegation order, the
+     * bootstrap class loader ({@code null}) or the topmost parent that finds its
+     * class file. The class itself is not loaded. Returns {@code loader} if no
+     * loader finds the class file.
+     */
+    static ClassLoader definingLoader(final String name, final ClassLoader loader) {
+        final String resource = name + ".class";
+        if (loader == null || BOOT_RESOURCES.getResource(resource) != null) {
+            return null;
+        }
+        ClassLoader defining = loader;
+        for (ClassLoader parent = loader.getParent(); parent != null
+                && parent.getResource(resource) != null; parent = parent.getParent()) {
+            defining = parent;
+        }
+        return defining;
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+        if (ROLE_ANNOTATION_DESC.equals(desc)) {
+            eligible = false;
+        }
+        return super.visitAnnotation(desc, visible);
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+        if (FIELD_NAME.equals(name)) {
+            eligible = false;
+        }
+        return super.visitField(access, name, desc, signature, value);
+    }
+
+    @Override
+    public void visitEnd() {
+        if (eligible) {
+            final FieldVisitor fv = super.visitField(ACC_PRIVATE | ACC_TRANSIENT | ACC_VOLATILE | ACC_SYNTHETIC,
+                    FIELD_NAME, FIELD_DESC, null, null);
+            if (fv != null) {
+                fv.visitEnd();
+            }
+        }
+        super.visitEnd();
+    }
+}
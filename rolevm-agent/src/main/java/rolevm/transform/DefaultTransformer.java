@@ -20,21 +20,87 @@ import rolevm.agent.RoleVMAgent;
 public class DefaultTransformer implements ClassFileTransformer {
     private static final Logger LOG = LoggerFactory.getLogger(DefaultTransformer.class);
     private final StandardBlacklist blacklist;
+    private final boolean contextField;
+    private final RoleMethodIndex index;
+    private final boolean prescan;
 
     public DefaultTransformer(StandardBlacklist blacklist) {
+        this(blacklist, false);
+    }
+
+    /**
+     * Creates a transformer that additionally adds a context field to player
+     * classes, if {@code contextField} is {@code true}.
+     * 
+     * @see ContextFieldAdapter
+     */
+    public DefaultTransformer(StandardBlacklist blacklist, boolean contextField) {
+        this(blacklist, contextField, null);
+    }
+
+    /**
+     * Creates a transformer that only rewrites the call sites in {@code index},
+     * unless it is {@code null}. The constant pool scan is enabled unless the
+     * system property {@code rolevm.prescan} is {@code false}.
+     * 
+     * @see IndyMethodAdapter
+     */
+    public DefaultTransformer(StandardBlacklist blacklist, boolean contextField, RoleMethodIndex index) {
+        this(blacklist, contextField, index, !"false".equals(System.getProperty("rolevm.prescan")));
+    }
+
+    /**
+     * Creates a transformer that skips classes without call sites to rewrite
+     * after scanning their constant pool, if {@code prescan} is {@code true}.
+     * 
+     * @see ConstantPoolScanner
+     */
+    public DefaultTransformer(StandardBlacklist blacklist, boolean contextField, RoleMethodIndex index,
+            boolean prescan) {
         this.blacklist = blacklist;
+        this.contextField = contextField;
+        this.index = index;
+        this.prescan = prescan;
     }
 
     @Override
     public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
             ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
-        if (blacklist.isExcluded(className)) {
+        // fields cannot be added to classes that are already loaded
+        final boolean addField = contextField && classBeingRedefined == null;
+        if (!isCandidate(loader, className, addField, classfileBuffer)) {
             return null;
         }
+        return transformClass(loader, className, addField, classfileBuffer);
+    }
+
+    /**
+     * Returns {@code false} if the class (defined by {@code loader}) is excluded,
+     * or if it needs no context field and its constant pool shows that it
+     * contains no call sites to rewrite (see {@link ConstantPoolScanner}), unless
+     * the scan is disabled.
+     */
+    protected boolean isCandidate(ClassLoader loader, String className, boolean addField, byte[] classfileBuffer) {
+        if (blacklist.isExcluded(className, loader)) {
+            return false;
+        }
+        if (prescan && !addField && !ConstantPoolScanner.mayContainRewritableCalls(classfileBuffer, index)) {
+            LOG.trace("Skipping class without rewritable calls {}", className);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Transforms a candidate class (defined by {@code loader}), and returns
+     * {@code null} if the transformation fails.
+     */
+    protected byte[] transformClass(ClassLoader loader, String className, boolean addField, byte[] classfileBuffer) {
         LOG.trace("Transforming class {}", className);
         final ClassReader reader = new ClassReader(classfileBuffer);
         final ClassWriter writer = new ClassWriter(reader, 0);
-        final ClassVisitor visitor = new IndyClassAdapter(writer);
+        final ClassVisitor visitor = new IndyClassAdapter(
+                addField ? new ContextFieldAdapter(writer, blacklist, loader) : writer, index);
         try {
             reader.accept(visitor, 0);
             return writer.toByteArray();
@@ -46,4 +112,9 @@ public class DefaultTransformer implements ClassFileTransformer {
         }
         return null;
     }
+
+    /** Returns {@code true} if this transformer adds context fields to player classes. */
+    protected boolean addsContextField() {
+        return contextField;
+    }
 }
@@ -19,7 +19,16 @@ public class DumpingTransformer extends DefaultTransformer {
     private final Path directory;
 
     public DumpingTransformer(StandardBlacklist blacklist, final Path directory) {
-        super(blacklist);
+        this(blacklist, false, directory);
+    }
+
+    public DumpingTransformer(StandardBlacklist blacklist, final boolean contextField, final Path directory) {
+        this(blacklist, contextField, null, directory);
+    }
+
+    public DumpingTransformer(StandardBlacklist blacklist, final boolean contextField, final RoleMethodIndex index,
+            final Path directory) {
+        super(blacklist, contextField, index);
         this.directory = Objects.requireNonNull(directory);
     }
 
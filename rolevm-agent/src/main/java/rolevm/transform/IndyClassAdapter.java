@@ -12,10 +12,17 @@ import org.objectweb.asm.MethodVisitor;
  * @author Martin Morgenstern
  */
 public class IndyClassAdapter extends ClassVisitor {
+    private final RoleMethodIndex index;
     private String className;
 
     public IndyClassAdapter(ClassVisitor cv) {
+        this(cv, null);
+    }
+
+    /** Creates an adapter that only rewrites call sites in {@code index}, unless it is {@code null}. */
+    public IndyClassAdapter(ClassVisitor cv, RoleMethodIndex index) {
         super(ASM7, cv);
+        this.index = index;
     }
 
     @Override
@@ -30,6 +37,6 @@ public class IndyClassAdapter extends ClassVisitor {
     @Override
     public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
         final MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
-        return new IndyMethodAdapter(new MethodInfo(className, access, name, desc), mv);
+        return new IndyMethodAdapter(new MethodInfo(className, access, name, desc), mv, index);
     }
 }
@@ -19,7 +19,8 @@ import org.objectweb.asm.MethodVisitor;
  * equivalent {@code invokedynamic} call sites. Call sites representing
  * {@code proceed} calls are assigned a special bootstrap method, and calls to
  * the {@link rolevm.api.DispatchContext#proceed()} marker method are replaced
- * by no-ops.
+ * by no-ops. If a {@link RoleMethodIndex} is given, other call sites are only
+ * rewritten if a role method could intercept them.
  * 
  * @author Martin Morgenstern
  */
@@ -27,22 +28,32 @@ public class IndyMethodAdapter extends MethodVisitor {
     private static final Handle DEFAULT_BSM = new Handle(H_INVOKESTATIC, BSM_CLASS, BSM_DEFAULT_NAME, BSM_TYPE, false);
     private static final Handle PROCEED_BSM = new Handle(H_INVOKESTATIC, BSM_CLASS, BSM_PROCEED_NAME, BSM_TYPE, false);
     private final MethodInfo info;
+    private final RoleMethodIndex index;
 
     public IndyMethodAdapter(MethodInfo info, MethodVisitor mv) {
+        this(info, mv, null);
+    }
+
+    /**
+     * Creates an adapter that leaves call sites unchanged that are not in
+     * {@code index}, unless it is {@code null}.
+     */
+    public IndyMethodAdapter(MethodInfo info, MethodVisitor mv, RoleMethodIndex index) {
         super(ASM5, mv);
         this.info = info;
+        this.index = index;
     }
 
     @Override
     public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
         if (opcode == INVOKEVIRTUAL || opcode == INVOKEINTERFACE) {
-            rewriteInvokeInstruction(owner, name, desc);
+            rewriteInvokeInstruction(opcode, owner, name, desc, itf);
         } else {
             super.visitMethodInsn(opcode, owner, name, desc, itf);
         }
     }
 
-    private void rewriteInvokeInstruction(String owner, String name, String descriptor) {
+    private void rewriteInvokeInstruction(int opcode, String owner, String name, String descriptor, boolean itf) {
         // System.err.printf("rewriteInvoke(%s, %s, %s)%n", owner, name, descriptor);
         if ("java/lang/invoke/MethodHandle".equals(owner) && "invoke".equals(name)
                 && descriptor.startsWith("(Lrolevm/api/DispatchContext;")) {
@@ -51,8 +62,10 @@ public class IndyMethodAdapter extends MethodVisitor {
                 && "()Ljava/lang/invoke/MethodHandle;".equals(descriptor)) {
             visitInsn(POP);
             visitInsn(ACONST_NULL);
-        } else {
+        } else if (index == null || index.contains(name, descriptor)) {
             visitInvokeDynamicInsn(name, adaptDescriptor(owner, descriptor), DEFAULT_BSM);
+        } else {
+            super.visitMethodInsn(opcode, owner, name, descriptor, itf);
         }
     }
 
@@ -0,0 +1,186 @@
+package rolevm.transform;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.instrument.IllegalClassFormatException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Weaves whole jar files ahead of time, i.e., rewrites their classes like the
+ * agent does at load time, so that the woven jar can be run without the agent
+ * (but still with the RoleVM runtime on the class path). Classes are
+ * transformed in parallel in a {@link ForkJoinPool}, and the entries of the
+ * woven jar are written in the original order. Signature files are dropped,
+ * since the signatures of woven classes would not match anymore.
+ * <p>
+ * The {@link #main(String[])} method provides a command line interface.
+ *
+ * @author Martin Morgenstern
+ */
+public class JarWeaver {
+    private final DefaultTransformer transformer;
+    private final ForkJoinPool pool;
+
+    /** Creates a weaver that uses {@code transformer} and the common pool. */
+    public JarWeaver(final DefaultTransformer transformer) {
+        this(transformer, ForkJoinPool.commonPool());
+    }
+
+    /** Creates a weaver that uses {@code transformer} and the given pool. */
+    public JarWeaver(final DefaultTransformer transformer, final ForkJoinPool pool) {
+        this.transformer = Objects.requireNonNull(transformer);
+        this.pool = Objects.requireNonNull(pool);
+    }
+
+    /**
+     * Weaves the jar file {@code in} into the jar file {@code out}, which must be
+     * different files, and returns the number of woven classes.
+     */
+    public int weave(final Path in, final Path out) throws IOException {
+        if (Files.exists(out) && Files.isSameFile(in, out)) {
+            throw new IllegalArgumentException("input and output must be different files: " + in);
+        }
+        try (JarFile jar = new JarFile(in.toFile())) {
+            List<ForkJoinTask<Entry>> tasks = new ArrayList<>();
+            for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+                JarEntry entry = entries.nextElement();
+                if (!isSignatureFile(entry.getName())) {
+                    byte[] contents = read(jar, entry);
+                    tasks.add(pool.submit(() -> transform(entry, contents)));
+                }
+            }
+            int woven = 0;
+            try (OutputStream os = Files.newOutputStream(out); JarOutputStream jos = new JarOutputStream(os)) {
+                for (ForkJoinTask<Entry> task : tasks) {
+                    Entry entry = task.get();
+                    JarEntry outEntry = new JarEntry(entry.name);
+                    outEntry.setTime(entry.time);
+                    jos.putNextEntry(outEntry);
+                    jos.write(entry.contents);
+                    jos.closeEntry();
+                    if (entry.woven) {
+                        woven++;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } catch (ExecutionException e) {
+                throw new IOException("Weaving failed: " + in, e.getCause());
+            }
+            return woven;
+        }
+    }
+
+    private Entry transform(final JarEntry entry, final byte[] contents) throws IllegalClassFormatException {
+        String name = entry.getName();
+        if (name.endsWith(".class") && !name.startsWith("META-INF/") && !name.endsWith("module-info.class")) {
+            String className = name.substring(0, name.length() - ".class".length());
+            // woven jars are usually loaded from the class path, so rules scoped to @app apply
+            byte[] woven = transformer.transform(ClassLoader.getSystemClassLoader(), className, null, null, contents);
+            if (woven != null) {
+                return new Entry(name, entry.getTime(), woven, true);
+            }
+        }
+        return new Entry(name, entry.getTime(), contents, false);
+    }
+
+    private static byte[] read(final JarFile jar, final JarEntry entry) throws IOException {
+        try (InputStream in = jar.getInputStream(entry)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static boolean isSignatureFile(final String name) {
+        if (!name.startsWith("META-INF/") || name.indexOf('/', "META-INF/".length()) >= 0) {
+            return false;
+        }
+        return name.endsWith(".SF") || name.endsWith(".RSA") || name.endsWith(".DSA") || name.endsWith(".EC");
+    }
+
+    private static final class Entry {
+        final String name;
+        final long time;
+        final byte[] contents;
+        final boolean woven;
+
+        Entry(final String name, final long time, final byte[] contents, final boolean woven) {
+            this.name = name;
+            this.time = time;
+            this.contents = contents;
+            this.woven = woven;
+        }
+    }
+
+    /**
+     * Command line interface:
+     *
+     * <pre>
+     * java -cp rolevm-agent.jar rolevm.transform.JarWeaver [options] in.jar out.jar
+     * </pre>
+     *
+     * Options are {@code --exclude rule,...} (like {@code rolevm.exclude}),
+     * {@code --index file} (see {@link RoleMethodIndex}), {@code --context-field}
+     * (like {@code rolevm.contextField}), and {@code --threads n}.
+     */
+    public static void main(final String[] args) throws IOException {
+        String exclude = null;
+        Path index = null;
+        boolean contextField = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+            case "--exclude":
+                exclude = argument(args, ++i);
+                break;
+            case "--index":
+                index = Paths.get(argument(args, ++i));
+                break;
+            case "--context-field":
+                contextField = true;
+                break;
+            case "--threads":
+                threads = Integer.parseInt(argument(args, ++i));
+                break;
+            default:
+                files.add(args[i]);
+            }
+        }
+        if (files.size() != 2) {
+            System.err.println("Usage: JarWeaver [--exclude rule,...] [--index file] [--context-field] "
+                    + "[--threads n] in.jar out.jar");
+            System.exit(2);
+        }
+        StandardBlacklist blacklist = exclude != null ? new UserDefinedBlacklist(exclude) : new StandardBlacklist();
+        DefaultTransformer transformer = new DefaultTransformer(blacklist, contextField,
+                index != null ? RoleMethodIndex.read(index) : null);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            int woven = new JarWeaver(transformer, pool).weave(Paths.get(files.get(0)), Paths.get(files.get(1)));
+            System.out.println("Woven " + woven + " classes into " + files.get(1));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static String argument(final String[] args, final int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("missing argument for " + args[i - 1]);
+        }
+        return args[i];
+    }
+}
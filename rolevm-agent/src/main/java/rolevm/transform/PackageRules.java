@@ -0,0 +1,292 @@
+package rolevm.transform;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Include and exclude rules for internal class names, compiled into a trie of
+ * name segments (i.e., packages and the simple class name). Each rule has the
+ * form {@code [+|-]pattern[@scope]}:
+ * <ul>
+ * <li>{@code +} includes, {@code -} (the default) excludes the matching classes.
+ * <li>A pattern that ends with {@code /} matches all classes in the package and
+ * its subpackages. Otherwise, like a plain prefix, its last segment matches
+ * all segments that start with it, e.g., {@code org/example/Foo} matches
+ * {@code org/example/FooBar} and {@code org/example/Foo/Bar}.
+ * <li>A {@code *} in a segment matches any characters within that segment, and
+ * a {@code **} segment matches any number of segments.
+ * <li>A rule with a scope only applies to classes defined by the class loader
+ * with that {@linkplain ClassLoader#getName() name}, where {@code boot} is the
+ * bootstrap class loader (and {@code platform} and {@code app} are the names of
+ * the other built-in class loaders).
+ * </ul>
+ * The rule that matches the most segments of a class name wins, and of those,
+ * the last one. Classes that no rule matches are excluded if there is at least
+ * one include rule, and included otherwise.
+ * <p>
+ * The decisions for the packages of a class loader are cached, so that each
+ * lookup needs a hash map lookup and, if there are rules that match simple
+ * class names in the package, one step in the trie.
+ *
+ * @author Martin Morgenstern
+ */
+final class PackageRules {
+    /** The scope name of the bootstrap class loader. */
+    static final String BOOT_SCOPE = "boot";
+
+    private final Node root = new Node(false);
+    private final boolean includeOnly;
+    private final boolean scoped;
+    private final Predicate<String> excludedPackage;
+    private final Map<String, Map<String, PackageDecision>> scopes = new ConcurrentHashMap<>();
+    private final Map<String, PackageDecision> unscoped = new ConcurrentHashMap<>();
+
+    /**
+     * Compiles the given rules. Packages (with a trailing {@code /}) that
+     * {@code excludedPackage} accepts are always excluded.
+     */
+    PackageRules(final List<String> rules, final Predicate<String> excludedPackage) {
+        boolean include = false;
+        boolean scope = false;
+        int order = 0;
+        for (String rule : rules) {
+            Rule compiled = parse(rule.trim(), order);
+            if (compiled != null) {
+                include |= compiled.include;
+                scope |= compiled.scope != null;
+                order++;
+            }
+        }
+        this.includeOnly = include;
+        this.scoped = scope;
+        this.excludedPackage = excludedPackage;
+    }
+
+    /**
+     * Returns {@code true} if the class is excluded, where {@code scope} is the
+     * name of its class loader, or {@code null} if scoped rules do not apply.
+     */
+    boolean isExcluded(final String name, final String scope) {
+        int slash = name.lastIndexOf('/');
+        String packageName = slash < 0 ? "" : name.substring(0, slash);
+        Map<String, PackageDecision> cache = unscoped;
+        if (scoped && scope != null) {
+            cache = scopes.computeIfAbsent(scope, s -> new ConcurrentHashMap<>());
+        }
+        PackageDecision decision = cache.get(packageName);
+        if (decision == null) {
+            decision = decidePackage(packageName, scoped ? scope : null);
+            cache.put(packageName, decision);
+        }
+        return decision.isExcluded(name.substring(slash + 1), scope);
+    }
+
+    /** Returns {@code true} if there are rules with a scope. */
+    boolean isScoped() {
+        return scoped;
+    }
+
+    /** Returns the scope name of the given class loader. */
+    static String scopeOf(final ClassLoader loader) {
+        return loader == null ? BOOT_SCOPE : loader.getName();
+    }
+
+    private PackageDecision decidePackage(final String packageName, final String scope) {
+        if (excludedPackage.test(packageName + "/")) {
+            return new PackageDecision(List.of(), true);
+        }
+        List<Node> states = closure(List.of(root));
+        // rules of deeper nodes match more segments and replace the earlier ones
+        Rule best = best(states, scope);
+        if (!packageName.isEmpty()) {
+            for (String segment : packageName.split("/")) {
+                states = step(states, segment);
+                Rule rule = best(states, scope);
+                if (rule != null) {
+                    best = rule;
+                }
+            }
+        }
+        states.removeIf(Node::isLeaf);
+        return new PackageDecision(states, isExcluded(best));
+    }
+
+    private boolean isExcluded(final Rule rule) {
+        return rule == null ? includeOnly : !rule.include;
+    }
+
+    /** The cached decision for a package, which may depend on the simple class name. */
+    private final class PackageDecision {
+        /** The nodes that may match the simple class name. */
+        private final List<Node> states;
+        private final boolean excluded;
+
+        PackageDecision(final List<Node> states, final boolean excluded) {
+            this.states = states;
+            this.excluded = excluded;
+        }
+
+        boolean isExcluded(final String simpleName, final String scope) {
+            if (states.isEmpty()) {
+                return excluded;
+            }
+            Rule rule = best(step(states, simpleName), scope);
+            return rule == null ? excluded : PackageRules.this.isExcluded(rule);
+        }
+    }
+
+    /** Returns the last rule of the given nodes that applies to the scope. */
+    private static Rule best(final List<Node> nodes, final String scope) {
+        Rule best = null;
+        for (Node node : nodes) {
+            for (Rule rule : node.rules) {
+                if ((rule.scope == null || rule.scope.equals(scope)) && (best == null || rule.order > best.order)) {
+                    best = rule;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static List<Node> step(final List<Node> states, final String segment) {
+        List<Node> next = new ArrayList<>();
+        for (Node node : states) {
+            if (node.any) {
+                next.add(node);
+            }
+            Node child = node.literals.get(segment);
+            if (child != null) {
+                next.add(child);
+            }
+            for (Segment glob : node.globs) {
+                if (glob.matches(segment)) {
+                    next.add(glob.node);
+                }
+            }
+        }
+        return closure(next);
+    }
+
+    /** Adds the {@code **} nodes, which also match zero segments. */
+    private static List<Node> closure(final List<Node> nodes) {
+        List<Node> result = new ArrayList<>(nodes);
+        for (int i = 0; i < result.size(); i++) {
+            Node any = result.get(i).anySegments;
+            if (any != null && !result.contains(any)) {
+                result.add(any);
+            }
+        }
+        return result;
+    }
+
+    private Rule parse(String rule, final int order) {
+        boolean include = false;
+        if (rule.startsWith("+") || rule.startsWith("-")) {
+            include = rule.charAt(0) == '+';
+            rule = rule.substring(1).trim();
+        }
+        String scope = null;
+        int at = rule.lastIndexOf('@');
+        if (at >= 0) {
+            scope = rule.substring(at + 1).trim();
+            rule = rule.substring(0, at).trim();
+        }
+        if (rule.isEmpty()) {
+            return null;
+        }
+        boolean partial = !rule.endsWith("/");
+        String[] segments = rule.split("/");
+        Node node = root;
+        for (int i = 0; i < segments.length; i++) {
+            node = node.child(segments[i], partial && i == segments.length - 1);
+        }
+        Rule compiled = new Rule(include, scope, order);
+        node.rules.add(compiled);
+        return compiled;
+    }
+
+    private static final class Node {
+        final boolean any;
+        final Map<String, Node> literals = new HashMap<>();
+        final List<Segment> globs = new ArrayList<>();
+        final List<Rule> rules = new ArrayList<>();
+        Node anySegments;
+
+        Node(final boolean any) {
+            this.any = any;
+        }
+
+        boolean isLeaf() {
+            return !any && literals.isEmpty() && globs.isEmpty() && anySegments == null;
+        }
+
+        Node child(final String segment, final boolean prefix) {
+            if ("**".equals(segment)) {
+                if (anySegments == null) {
+                    anySegments = new Node(true);
+                }
+                return anySegments;
+            }
+            if (!prefix && segment.indexOf('*') < 0) {
+                return literals.computeIfAbsent(segment, s -> new Node(false));
+            }
+            String glob = prefix ? segment + "*" : segment;
+            for (Segment existing : globs) {
+                if (existing.glob.equals(glob)) {
+                    return existing.node;
+                }
+            }
+            Segment created = new Segment(glob);
+            globs.add(created);
+            return created.node;
+        }
+    }
+
+    /** A segment pattern with {@code *} wildcards. */
+    private static final class Segment {
+        final String glob;
+        final Node node = new Node(false);
+        private final String prefix;
+        private final Pattern pattern;
+
+        Segment(final String glob) {
+            this.glob = glob;
+            int star = glob.indexOf('*');
+            if (star == glob.length() - 1) {
+                prefix = glob.substring(0, star);
+                pattern = null;
+            } else {
+                StringBuilder regex = new StringBuilder();
+                for (String part : glob.split("\\*", -1)) {
+                    if (regex.length() > 0) {
+                        regex.append(".*");
+                    }
+                    regex.append(Pattern.quote(part));
+                }
+                prefix = null;
+                pattern = Pattern.compile(regex.toString());
+            }
+        }
+
+        boolean matches(final String segment) {
+            return prefix != null ? segment.startsWith(prefix) : pattern.matcher(segment).matches();
+        }
+    }
+
+    private static final class Rule {
+        final boolean include;
+        final String scope;
+        final int order;
+
+        Rule(final boolean include, final String scope, final int order) {
+            this.include = include;
+            this.scope = scope;
+            this.order = order;
+        }
+    }
+}
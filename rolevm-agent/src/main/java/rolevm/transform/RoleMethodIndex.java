@@ -0,0 +1,222 @@
+package rolevm.transform;
+
+import static java.util.jar.Attributes.Name.CLASS_PATH;
+import static org.objectweb.asm.ClassReader.SKIP_CODE;
+import static org.objectweb.asm.ClassReader.SKIP_DEBUG;
+import static org.objectweb.asm.ClassReader.SKIP_FRAMES;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ASM7;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+/**
+ * Index of the base methods (name and descriptor, excluding the receiver) that
+ * role methods exist for. A role method has the same name as its base method,
+ * and its parameter list starts with a {@code DispatchContext} and the base
+ * object, followed by the parameters of the base method. Methods of all
+ * classes are indexed, not only of {@code @Role} classes, since role methods
+ * may be inherited from supertypes that are not roles themselves.
+ * <p>
+ * The {@link IndyMethodAdapter} uses the index to rewrite only those call
+ * sites that a role method could intercept. An index can be computed by
+ * {@linkplain #scan(List) scanning the class path} when the agent starts, or
+ * it can be {@linkplain #write(Writer) written} at build time (see
+ * {@link #main(String[])}) and {@linkplain #read(Path) read} by the agent.
+ * Roles that are loaded from elsewhere are not intercepted at call sites that
+ * are not in the index.
+ *
+ * @author Martin Morgenstern
+ */
+public class RoleMethodIndex {
+    private static final String CONTEXT_DESC = "Lrolevm/api/DispatchContext;";
+
+    /** Entries of the form {@code name + descriptor}. */
+    private final Set<String> methods = new HashSet<>();
+
+    /** Creates an empty index. */
+    public RoleMethodIndex() {
+    }
+
+    /**
+     * Returns {@code true} if there may be a role method for the base method with
+     * the given name and descriptor (excluding the receiver).
+     */
+    public boolean contains(final String name, final String descriptor) {
+        return methods.contains(name + descriptor);
+    }
+
+    /** Returns the number of indexed base methods. */
+    public int size() {
+        return methods.size();
+    }
+
+    /** Adds the base methods of the role methods in the given class file. */
+    public void addClass(final byte[] classfile) {
+        new ClassReader(classfile).accept(new ClassVisitor(ASM7) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                    String[] exceptions) {
+                addMethod(access, name, desc);
+                return null;
+            }
+        }, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+    }
+
+    private void addMethod(final int access, final String name, final String desc) {
+        if ((access & ACC_STATIC) != 0 || !desc.startsWith("(" + CONTEXT_DESC)) {
+            return;
+        }
+        Type[] params = Type.getArgumentTypes(desc);
+        if (params.length >= 2) {
+            Type[] baseParams = new Type[params.length - 2];
+            System.arraycopy(params, 2, baseParams, 0, baseParams.length);
+            methods.add(name + Type.getMethodDescriptor(Type.getReturnType(desc), baseParams));
+        }
+    }
+
+    /**
+     * Creates an index of the role methods in the given class path entries, which
+     * are either directories or jar files. The {@code Class-Path} entries in the
+     * manifests of jar files are followed, and missing entries are ignored.
+     */
+    public static RoleMethodIndex scan(final List<Path> classpath) throws IOException {
+        RoleMethodIndex index = new RoleMethodIndex();
+        Set<Path> visited = new HashSet<>();
+        for (Path entry : classpath) {
+            index.scanEntry(entry, visited);
+        }
+        return index;
+    }
+
+    /** Like {@link #scan(List)}, for a path string in the format of {@code java.class.path}. */
+    public static RoleMethodIndex scan(final String classpath) throws IOException {
+        List<Path> entries = new ArrayList<>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                entries.add(Paths.get(entry));
+            }
+        }
+        return scan(entries);
+    }
+
+    private void scanDirectory(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.toString().endsWith(".class") && Files.isRegularFile(file)) {
+                    addClass(Files.readAllBytes(file));
+                }
+            }
+        }
+    }
+
+    private void scanEntry(final Path entry, final Set<Path> visited) throws IOException {
+        if (!visited.add(entry.toAbsolutePath().normalize())) {
+            return;
+        }
+        if (Files.isDirectory(entry)) {
+            scanDirectory(entry);
+        } else if (Files.isRegularFile(entry)) {
+            scanJar(entry, visited);
+        }
+    }
+
+    private void scanJar(final Path jar, final Set<Path> visited) throws IOException {
+        try (JarFile file = new JarFile(jar.toFile())) {
+            Manifest manifest = file.getManifest();
+            String classPath = manifest == null ? null : manifest.getMainAttributes().getValue(CLASS_PATH);
+            if (classPath != null) {
+                for (String url : classPath.trim().split("\\s+")) {
+                    Path entry = resolve(jar, url);
+                    if (entry != null) {
+                        scanEntry(entry, visited);
+                    }
+                }
+            }
+            for (Enumeration<JarEntry> entries = file.entries(); entries.hasMoreElements();) {
+                JarEntry entry = entries.nextElement();
+                if (entry.getName().endsWith(".class")) {
+                    try (InputStream in = file.getInputStream(entry)) {
+                        addClass(in.readAllBytes());
+                    }
+                }
+            }
+        }
+    }
+
+    /** Resolves a {@code Class-Path} entry of a jar file, or returns {@code null}. */
+    private static Path resolve(final Path jar, final String url) {
+        try {
+            URI uri = jar.toUri().resolve(url);
+            return "file".equals(uri.getScheme()) ? Paths.get(uri) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads an index that has been written by {@link #write(Writer)}, i.e., one
+     * {@code name descriptor} pair per line. Empty lines and lines that start
+     * with {@code #} are ignored.
+     */
+    public static RoleMethodIndex read(final Path file) throws IOException {
+        RoleMethodIndex index = new RoleMethodIndex();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                int separator = line.indexOf(' ');
+                if (separator < 0) {
+                    throw new IOException("Malformed role method index entry: " + line);
+                }
+                index.methods.add(line.substring(0, separator) + line.substring(separator + 1).trim());
+            }
+        }
+        return index;
+    }
+
+    /** Writes this index in the format expected by {@link #read(Path)}. */
+    public void write(final Writer out) throws IOException {
+        for (String method : new TreeSet<>(methods)) {
+            int separator = method.indexOf('(');
+            out.write(method.substring(0, separator) + " " + method.substring(separator) + "\n");
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes the index of the role methods in the given class path entries to
+     * standard output, e.g., to create an index file at build time.
+     */
+    public static void main(final String[] args) throws IOException {
+        List<Path> classpath = new ArrayList<>();
+        for (String arg : args) {
+            classpath.add(Paths.get(arg));
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        scan(classpath).write(out);
+    }
+}
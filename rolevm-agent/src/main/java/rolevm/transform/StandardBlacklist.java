@@ -11,4 +11,26 @@ public class StandardBlacklist {
         return n.startsWith("java/") || n.startsWith("jdk/") || n.startsWith("sun/") || n.startsWith("rolevm/runtime/")
                 || n.startsWith("rolevm/api/") || n.startsWith("com/sun/") || n.startsWith("org/junit/");
     }
+
+    /**
+     * Like {@link #isExcluded(String)}, for a class that is defined by the given
+     * class loader ({@code null} is the bootstrap class loader).
+     */
+    public boolean isExcluded(final String name, final ClassLoader loader) {
+        return isExcluded(name);
+    }
+
+    /**
+     * Returns {@code true} if {@link #isExcluded(String, ClassLoader)} depends on
+     * the class loader.
+     */
+    public boolean isScoped() {
+        return false;
+    }
+
+    /** Describes the excluded prefixes (e.g., as part of a cache key). */
+    @Override
+    public String toString() {
+        return "StandardBlacklist";
+    }
 }
@@ -0,0 +1,163 @@
+package rolevm.transform;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of transformed class files, which is stored in two
+ * append-only files in a directory: the pack file {@code classes.pack}
+ * contains the transformed class files, and the index file {@code classes.idx}
+ * contains one fixed-size entry (key, offset, length) per class file. The index
+ * is read when the cache is opened, and the pack file is mapped into memory, so
+ * a lookup only copies the class file from the mapped buffer. Entries that are
+ * added later are appended to both files (index after pack, so that a partially
+ * written entry is never visible) under a file lock, which allows several
+ * processes to share a cache directory.
+ *
+ * @author Martin Morgenstern
+ */
+class TransformationCache implements Closeable {
+    /** The size of the keys, e.g., SHA-256 hashes. */
+    static final int KEY_SIZE = 32;
+    private static final int ENTRY_SIZE = KEY_SIZE + Long.BYTES + Integer.BYTES;
+
+    private final FileChannel pack;
+    private final FileChannel index;
+    private final MappedByteBuffer mapped;
+    private final Map<ByteBuffer, Location> locations = new ConcurrentHashMap<>();
+
+    /** Opens (or creates) the cache in the given directory. */
+    TransformationCache(final Path directory) throws IOException {
+        Files.createDirectories(directory);
+        pack = FileChannel.open(directory.resolve("classes.pack"), CREATE, READ, WRITE);
+        try {
+            index = FileChannel.open(directory.resolve("classes.idx"), CREATE, READ, WRITE);
+        } catch (IOException e) {
+            pack.close();
+            throw e;
+        }
+        try {
+            FileLock lock = index.lock();
+            try {
+                long packSize = pack.size();
+                mapped = pack.map(READ_ONLY, 0, Math.min(packSize, Integer.MAX_VALUE));
+                readIndex(packSize);
+            } finally {
+                lock.release();
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void readIndex(final long packSize) throws IOException {
+        long size = index.size() - index.size() % ENTRY_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Index too large: " + size);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        readFully(index, buffer, 0);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            byte[] key = new byte[KEY_SIZE];
+            buffer.get(key);
+            Location location = new Location(buffer.getLong(), buffer.getInt());
+            if (location.offset >= 0 && location.length >= 0 && location.offset + location.length <= packSize) {
+                locations.put(ByteBuffer.wrap(key), location);
+            }
+        }
+    }
+
+    /** Returns the number of cached class files. */
+    int size() {
+        return locations.size();
+    }
+
+    /** Returns the class file for {@code key}, or {@code null} if it is not cached. */
+    byte[] get(final byte[] key) throws IOException {
+        Location location = locations.get(ByteBuffer.wrap(key));
+        if (location == null) {
+            return null;
+        }
+        byte[] contents = new byte[location.length];
+        if (location.offset + location.length <= mapped.limit()) {
+            mapped.duplicate().position((int) location.offset).get(contents);
+        } else {
+            readFully(pack, ByteBuffer.wrap(contents), location.offset);
+        }
+        return contents;
+    }
+
+    /** Appends the class file for {@code key}, unless it is already cached. */
+    synchronized void put(final byte[] key, final byte[] contents) throws IOException {
+        if (key.length != KEY_SIZE) {
+            throw new IllegalArgumentException("key size: " + key.length);
+        }
+        ByteBuffer wrappedKey = ByteBuffer.wrap(key.clone());
+        if (locations.containsKey(wrappedKey)) {
+            return;
+        }
+        FileLock lock = index.lock();
+        try {
+            Location location = new Location(pack.size(), contents.length);
+            writeFully(pack, ByteBuffer.wrap(contents), location.offset);
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+            entry.put(key).putLong(location.offset).putInt(location.length).flip();
+            writeFully(index, entry, index.size() - index.size() % ENTRY_SIZE);
+            locations.put(wrappedKey, location);
+        } finally {
+            lock.release();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            pack.close();
+        } finally {
+            index.close();
+        }
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            position += n;
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static final class Location {
+        final long offset;
+        final int length;
+
+        Location(final long offset, final int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -6,32 +6,47 @@ import static java.util.stream.Collectors.toList;
 import java.util.List;
 
 /**
- * Allows to specify additional prefixes that should be excluded in addition to
- * the ones defined in {@link StandardBlacklist}. Currently unused.
+ * Allows to specify include and exclude rules in addition to the prefixes
+ * defined in {@link StandardBlacklist}, which are always excluded. A plain
+ * prefix, like {@code org/example/pkg1/}, excludes the matching classes, and
+ * {@code +org/example/} includes them; if there is at least one include rule,
+ * all other classes are excluded. See {@link PackageRules} for globs, class
+ * loader scopes and how conflicting rules are resolved. The rules are compiled
+ * into a trie, and the decisions are cached per package.
  * 
  * @author Martin Morgenstern
  */
 public class UserDefinedBlacklist extends StandardBlacklist {
-    private final String[] blacklist;
+    private final List<String> rules;
+    private final PackageRules compiled;
 
-    public UserDefinedBlacklist(final String blacklist) {
-        this(stream(blacklist.split(",")).map(String::trim).collect(toList()));
+    /** Creates the blacklist from comma-separated rules. */
+    public UserDefinedBlacklist(final String rules) {
+        this(stream(rules.split(",")).map(String::trim).collect(toList()));
     }
 
-    public UserDefinedBlacklist(final List<String> blacklist) {
-        this.blacklist = blacklist.toArray(new String[0]);
+    public UserDefinedBlacklist(final List<String> rules) {
+        this.rules = List.copyOf(rules);
+        this.compiled = new PackageRules(this.rules, super::isExcluded);
     }
 
     @Override
     public boolean isExcluded(final String name) {
-        if (super.isExcluded(name)) {
-            return true;
-        }
-        for (String prefix : blacklist) {
-            if (name.startsWith(prefix)) {
-                return true;
-            }
-        }
-        return false;
+        return compiled.isExcluded(name, null);
+    }
+
+    @Override
+    public boolean isExcluded(final String name, final ClassLoader loader) {
+        return compiled.isExcluded(name, PackageRules.scopeOf(loader));
+    }
+
+    @Override
+    public boolean isScoped() {
+        return compiled.isScoped();
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + " + " + rules;
     }
 }
@@ -0,0 +1,106 @@
+package rolevm.transform;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static rolevm.transform.ClassFileUtils.loadClassFile;
+
+import java.io.IOException;
+import java.lang.instrument.IllegalClassFormatException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import rolevm.transform.ContextFieldTransformationTest.SubPlayer;
+import rolevm.transform.SelectiveTransformationTest.ClassWithCalls;
+
+public class CachingTransformerTest {
+    private static final String CLASS_NAME = ClassWithCalls.class.getName().replace('.', '/');
+
+    private Path directory;
+    private byte[] classfile;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cache");
+        classfile = loadClassFile(ClassWithCalls.class);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        TransformationCacheTest.deleteRecursively(directory);
+    }
+
+    @Test
+    public void cachedAcrossInstances() throws IOException, IllegalClassFormatException {
+        byte[] expected = new DefaultTransformer(new StandardBlacklist()).transform(null, CLASS_NAME, null, null,
+                classfile);
+        try (CachingTransformer transformer = create(false)) {
+            assertArrayEquals(expected, transformer.transform(null, CLASS_NAME, null, null, classfile));
+            assertEquals(1, transformer.cachedClasses());
+        }
+        try (CachingTransformer transformer = create(false)) {
+            assertEquals(1, transformer.cachedClasses());
+            assertArrayEquals(expected, transformer.transform(null, CLASS_NAME, null, null, classfile));
+            assertEquals(1, transformer.cachedClasses());
+        }
+    }
+
+    @Test
+    public void configurationIsPartOfKey() throws IOException, IllegalClassFormatException {
+        try (CachingTransformer transformer = create(false)) {
+            transformer.transform(null, CLASS_NAME, null, null, classfile);
+        }
+        try (CachingTransformer transformer = create(true)) {
+            assertNotNull(transformer.transform(null, CLASS_NAME, null, null, classfile));
+            assertEquals(2, transformer.cachedClasses());
+            // fields are not added to classes that are redefined
+            assertNotNull(transformer.transform(null, CLASS_NAME, ClassWithCalls.class, null, classfile));
+            assertEquals(3, transformer.cachedClasses());
+        }
+    }
+
+    @Test
+    public void excludedClassesAreNotCached() throws IOException, IllegalClassFormatException {
+        try (CachingTransformer transformer = new CachingTransformer(new UserDefinedBlacklist("rolevm/"), false,
+                null, directory)) {
+            assertNull(transformer.transform(null, CLASS_NAME, null, null, classfile));
+            assertEquals(0, transformer.cachedClasses());
+        }
+    }
+
+    @Test
+    public void scopeOfSuperclassIsPartOfKey() throws IOException, IllegalClassFormatException {
+        // the superclass is excluded for the app class loader only, which decides about the context field
+        UserDefinedBlacklist blacklist = new UserDefinedBlacklist(
+                "rolevm/transform/ContextFieldTransformationTest$Player@app");
+        String name = SubPlayer.class.getName().replace('.', '/');
+        byte[] subclass = loadClassFile(SubPlayer.class);
+        ClassLoader app = ClassLoader.getSystemClassLoader();
+        try (URLClassLoader other = new URLClassLoader("other", new URL[0], null)) {
+            DefaultTransformer uncached = new DefaultTransformer(blacklist, true);
+            byte[] expectedApp = uncached.transform(app, name, null, null, subclass);
+            byte[] expectedOther = uncached.transform(other, name, null, null, subclass);
+            assertFalse(Arrays.equals(expectedApp, expectedOther));
+            for (int i = 0; i < 2; i++) {
+                try (CachingTransformer transformer = new CachingTransformer(blacklist, true, null, directory)) {
+                    assertArrayEquals(expectedApp, transformer.transform(app, name, null, null, subclass));
+                    assertArrayEquals(expectedOther, transformer.transform(other, name, null, null, subclass));
+                    assertEquals(2, transformer.cachedClasses());
+                }
+            }
+        }
+    }
+
+    private CachingTransformer create(final boolean contextField) throws IOException {
+        return new CachingTransformer(new StandardBlacklist(), contextField, null, directory);
+    }
+}
@@ -0,0 +1,112 @@
+package rolevm.transform;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static rolevm.transform.ClassFileUtils.loadClassFile;
+import static rolevm.transform.ConstantPoolScanner.mayContainRewritableCalls;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.instrument.IllegalClassFormatException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import rolevm.api.DispatchContext;
+import rolevm.transform.SelectiveTransformationTest.ClassWithCalls;
+
+public class ConstantPoolScannerTest {
+    @Test
+    public void classesWithoutCalls() {
+        assertFalse(mayContainRewritableCalls(loadClassFile(DataHolder.class), null));
+        assertFalse(mayContainRewritableCalls(loadClassFile(Interface.class), null));
+        assertFalse(mayContainRewritableCalls(loadClassFile(Annotation.class), null));
+    }
+
+    @Test
+    public void classesWithCalls() {
+        assertTrue(mayContainRewritableCalls(loadClassFile(ClassWithCalls.class), null));
+        assertTrue(mayContainRewritableCalls(loadClassFile(Unicode.class), null));
+        // a static method cannot be distinguished from an instance method
+        assertTrue(mayContainRewritableCalls(loadClassFile(StaticCall.class), null));
+    }
+
+    @Test
+    public void withIndex() {
+        RoleMethodIndex index = new RoleMethodIndex();
+        assertFalse(mayContainRewritableCalls(loadClassFile(ClassWithCalls.class), index));
+        assertFalse(mayContainRewritableCalls(loadClassFile(Unicode.class), index));
+        index.addClass(loadClassFile(RoleMethodIndexTest.RoleLike.class));
+        index.addClass(loadClassFile(UnicodeRole.class));
+        assertTrue(mayContainRewritableCalls(loadClassFile(ClassWithCalls.class), index));
+        assertTrue(mayContainRewritableCalls(loadClassFile(Unicode.class), index));
+    }
+
+    @Test
+    public void malformedClassFiles() {
+        assertTrue(mayContainRewritableCalls(new byte[0], null));
+        assertTrue(mayContainRewritableCalls(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11 }, null));
+        byte[] truncated = loadClassFile(DataHolder.class);
+        assertTrue(mayContainRewritableCalls(Arrays.copyOf(truncated, 20), null));
+    }
+
+    @Test
+    public void transformerSkipsClassesWithoutCalls() throws IllegalClassFormatException {
+        String name = DataHolder.class.getName().replace('.', '/');
+        byte[] classfile = loadClassFile(DataHolder.class);
+        assertNull(new DefaultTransformer(new StandardBlacklist()).transform(null, name, null, null, classfile));
+    }
+
+    @Test
+    public void prescanCanBeDisabled() throws IllegalClassFormatException {
+        String name = DataHolder.class.getName().replace('.', '/');
+        byte[] classfile = loadClassFile(DataHolder.class);
+        DefaultTransformer transformer = new DefaultTransformer(new StandardBlacklist(), false, null, false);
+        assertNotNull(transformer.transform(null, name, null, null, classfile));
+    }
+
+    public static class DataHolder {
+        int x;
+        String y = "y";
+        List<String> z;
+
+        public DataHolder(int x) {
+            this.x = x;
+        }
+    }
+
+    public interface Interface {
+        int x();
+    }
+
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Annotation {
+        String value() default "";
+    }
+
+    public static class StaticCall {
+        public static void callee() {
+        }
+
+        public void caller() {
+            callee();
+        }
+    }
+
+    public static class Unicode {
+        public void größe() {
+        }
+
+        public void call() {
+            größe();
+        }
+    }
+
+    public static class UnicodeRole {
+        public void größe(DispatchContext ctx, Unicode base) {
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package rolevm.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static rolevm.transform.ClassFileUtils.defineClass;
+import static rolevm.transform.ClassFileUtils.loadClassFile;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.Test;
+
+import rolevm.api.Compartment;
+import rolevm.api.Role;
+
+/**
+ * Verifies that the {@link ContextFieldAdapter} adds the context field to
+ * player classes only.
+ * 
+ * @author Martin Morgenstern
+ */
+public class ContextFieldTransformationTest {
+    private final DefaultTransformer tfm = new DefaultTransformer(new StandardBlacklist(), true);
+
+    public static class Player {
+    }
+
+    public static class SubPlayer extends Player {
+    }
+
+    /** A player with a call site, which the constant pool scan does not skip. */
+    public static class CallingPlayer {
+        public int length(String s) {
+            return s.length();
+        }
+    }
+
+    public interface PlayerInterface {
+    }
+
+    public static class MyCompartment extends Compartment {
+        public @Role class MyRole {
+        }
+    }
+
+    private byte[] transform(final Class<?> clazz) throws Exception {
+        return tfm.transform(null, clazz.getName().replace('.', '/'), null, null, loadClassFile(clazz));
+    }
+
+    private static Field contextField(final Class<?> clazz) {
+        for (Field field : clazz.getDeclaredFields()) {
+            if (ContextFieldAdapter.FIELD_NAME.equals(field.getName())) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void fieldAdded() throws Exception {
+        Class<?> clazz = defineClass(transform(Player.class));
+        Field field = contextField(clazz);
+        assertEquals(Object.class, field.getType());
+        assertTrue(field.isSynthetic());
+        assertTrue(Modifier.isPrivate(field.getModifiers()));
+        assertTrue(Modifier.isTransient(field.getModifiers()));
+        assertTrue(Modifier.isVolatile(field.getModifiers()));
+        assertFalse(Modifier.isStatic(field.getModifiers()));
+        clazz.getConstructor().newInstance();
+    }
+
+    @Test
+    public void notAddedToSubclass() throws Exception {
+        // the superclass is transformed as well and declares the field
+        assertNull(contextField(defineClass(transform(SubPlayer.class))));
+    }
+
+    @Test
+    public void notAddedToInterface() throws Exception {
+        assertNull(contextField(defineClass(transform(PlayerInterface.class))));
+    }
+
+    @Test
+    public void notAddedToRole() throws Exception {
+        assertNull(contextField(defineClass(transform(MyCompartment.MyRole.class))));
+    }
+
+    @Test
+    public void scopedIncludeOfSuperclass() throws Exception {
+        // the superclass is included for the app class loader, so it declares the field
+        DefaultTransformer scoped = new DefaultTransformer(new UserDefinedBlacklist("+rolevm/transform/@app"), true);
+        assertNull(contextField(defineClass(transformWithAppLoader(scoped, SubPlayer.class))));
+    }
+
+    @Test
+    public void scopedExcludeOfSuperclass() throws Exception {
+        DefaultTransformer scoped = new DefaultTransformer(
+                new UserDefinedBlacklist("rolevm/transform/ContextFieldTransformationTest$Player@app"), true);
+        assertNotNull(contextField(defineClass(transformWithAppLoader(scoped, SubPlayer.class))));
+    }
+
+    @Test
+    public void scopeOfSuperclassInParentLoader() throws Exception {
+        // the superclass is defined by the app class loader, the parent of the plugins loader
+        DefaultTransformer scoped = new DefaultTransformer(
+                new UserDefinedBlacklist("rolevm/transform/ContextFieldTransformationTest$Player@app"), true);
+        ClassLoader app = ClassLoader.getSystemClassLoader();
+        try (URLClassLoader plugins = new URLClassLoader("plugins", new URL[0], app)) {
+            assertNotNull(contextField(defineClass(transformWith(scoped, plugins, SubPlayer.class))));
+            assertSame(app, ContextFieldAdapter.definingLoader("rolevm/transform/ContextFieldTransformationTest$Player",
+                    plugins));
+            assertNull(ContextFieldAdapter.definingLoader("java/lang/Object", plugins));
+            assertSame(plugins, ContextFieldAdapter.definingLoader("org/example/Missing", plugins));
+        }
+    }
+
+    private static byte[] transformWithAppLoader(final DefaultTransformer transformer, final Class<?> clazz)
+            throws Exception {
+        return transformWith(transformer, ClassLoader.getSystemClassLoader(), clazz);
+    }
+
+    private static byte[] transformWith(final DefaultTransformer transformer, final ClassLoader loader,
+            final Class<?> clazz) throws Exception {
+        return transformer.transform(loader, clazz.getName().replace('.', '/'), null, null, loadClassFile(clazz));
+    }
+
+    @Test
+    public void notAddedOnRedefinition() throws Exception {
+        byte[] transformed = tfm.transform(null, "rolevm/transform/ContextFieldTransformationTest$CallingPlayer",
+                CallingPlayer.class, null, loadClassFile(CallingPlayer.class));
+        assertNull(contextField(defineClass(transformed)));
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        byte[] transformed = new DefaultTransformer(new StandardBlacklist()).transform(null,
+                "rolevm/transform/ContextFieldTransformationTest$CallingPlayer", null, null,
+                loadClassFile(CallingPlayer.class));
+        assertNull(contextField(defineClass(transformed)));
+    }
+}
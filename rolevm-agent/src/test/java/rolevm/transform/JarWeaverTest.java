@@ -0,0 +1,104 @@
+package rolevm.transform;
+
+import static org.apache.commons.lang3.StringUtils.countMatches;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.hamcrest.CoreMatchers.is;
+import static rolevm.transform.ClassFileUtils.disassemble;
+import static rolevm.transform.ClassFileUtils.loadClassFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import rolevm.transform.SelectiveTransformationTest.ClassWithCalls;
+
+public class JarWeaverTest {
+    private static final String CLASS_ENTRY = ClassWithCalls.class.getName().replace('.', '/') + ".class";
+    private static final byte[] RESOURCE = "resource".getBytes(StandardCharsets.UTF_8);
+
+    private Path in;
+    private Path out;
+
+    @Before
+    public void setUp() throws IOException {
+        in = Files.createTempFile("in", ".jar");
+        out = Files.createTempFile("out", ".jar");
+        try (OutputStream os = Files.newOutputStream(in); JarOutputStream jar = new JarOutputStream(os)) {
+            put(jar, "META-INF/SIGNER.SF", RESOURCE);
+            put(jar, "data/resource.txt", RESOURCE);
+            put(jar, CLASS_ENTRY, loadClassFile(ClassWithCalls.class));
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(in);
+        Files.delete(out);
+    }
+
+    @Test
+    public void weaveJar() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            JarWeaver weaver = new JarWeaver(new DefaultTransformer(new StandardBlacklist()), pool);
+            assertEquals(1, weaver.weave(in, out));
+        } finally {
+            pool.shutdown();
+        }
+        try (JarFile jar = new JarFile(out.toFile())) {
+            List<String> names = new ArrayList<>();
+            for (JarEntry entry : Collections.list(jar.entries())) {
+                names.add(entry.getName());
+            }
+            assertEquals(List.of("data/resource.txt", CLASS_ENTRY), names);
+            assertNull(jar.getEntry("META-INF/SIGNER.SF"));
+            assertArrayEquals(RESOURCE, read(jar, "data/resource.txt"));
+            String woven = disassemble(read(jar, CLASS_ENTRY));
+            assertThat(countMatches(woven, "INVOKEDYNAMIC"), is(2));
+        }
+    }
+
+    @Test
+    public void excludedClassesAreCopied() throws IOException {
+        StandardBlacklist blacklist = new UserDefinedBlacklist("rolevm/transform/");
+        assertEquals(0, new JarWeaver(new DefaultTransformer(blacklist)).weave(in, out));
+        try (JarFile jar = new JarFile(out.toFile())) {
+            assertArrayEquals(loadClassFile(ClassWithCalls.class), read(jar, CLASS_ENTRY));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sameInputAndOutput() throws IOException {
+        new JarWeaver(new DefaultTransformer(new StandardBlacklist())).weave(in, in);
+    }
+
+    private static void put(final JarOutputStream jar, final String name, final byte[] contents)
+            throws IOException {
+        jar.putNextEntry(new JarEntry(name));
+        jar.write(contents);
+        jar.closeEntry();
+    }
+
+    private static byte[] read(final JarFile jar, final String name) throws IOException {
+        try (InputStream in = jar.getInputStream(jar.getEntry(name))) {
+            return in.readAllBytes();
+        }
+    }
+}
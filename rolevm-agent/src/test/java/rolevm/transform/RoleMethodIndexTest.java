@@ -0,0 +1,77 @@
+package rolevm.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import rolevm.api.DispatchContext;
+
+public class RoleMethodIndexTest {
+    private RoleMethodIndex index;
+
+    @Before
+    public void setUp() {
+        index = new RoleMethodIndex();
+        index.addClass(ClassFileUtils.loadClassFile(RoleLike.class));
+    }
+
+    @Test
+    public void containsBaseMethods() {
+        assertTrue(index.contains("length", "()I"));
+        assertTrue(index.contains("method", "(ILjava/lang/String;)V"));
+        assertFalse(index.contains("method", "(I)V"));
+        assertFalse(index.contains("staticMethod", "()V"));
+        assertFalse(index.contains("helper", "()V"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        StringWriter out = new StringWriter();
+        index.write(out);
+        assertEquals("length ()I\nmethod (ILjava/lang/String;)V\n", out.toString());
+        Path file = Files.createTempFile("roles", ".idx");
+        try {
+            Files.write(file, List.of("# comment", "", out.toString()));
+            RoleMethodIndex read = RoleMethodIndex.read(file);
+            assertEquals(2, read.size());
+            assertTrue(read.contains("method", "(ILjava/lang/String;)V"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void scanDirectory() throws IOException {
+        Path testClasses = Paths.get("target", "test-classes");
+        RoleMethodIndex scanned = RoleMethodIndex.scan(List.of(testClasses, Paths.get("no-such-entry")));
+        assertTrue(scanned.contains("length", "()I"));
+        assertTrue(scanned.contains("method", "(ILjava/lang/String;)V"));
+    }
+
+    /** Looks like a role, i.e., has role methods. */
+    public static class RoleLike {
+        public int length(DispatchContext ctx, String base) {
+            return 0;
+        }
+
+        public void method(DispatchContext ctx, Object base, int x, String y) {
+        }
+
+        public static void staticMethod(DispatchContext ctx, Object base) {
+        }
+
+        public void helper(DispatchContext ctx) {
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package rolevm.transform;
+
+import static org.apache.commons.lang3.StringUtils.countMatches;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static rolevm.transform.ClassFileUtils.methodDescriptor;
+
+import java.io.PrintStream;
+
+import org.junit.Test;
+
+/**
+ * Verifies that only the call sites in the {@link RoleMethodIndex} are
+ * rewritten to <code>invokedynamic</code> calls.
+ * 
+ * @author Martin Morgenstern
+ */
+public class SelectiveTransformationTest extends TransformationTestBase {
+    @Override
+    protected Class<?> classUnderTest() {
+        return ClassWithCalls.class;
+    }
+
+    @Override
+    protected DefaultTransformer createTransformer() {
+        RoleMethodIndex index = new RoleMethodIndex();
+        index.addClass(ClassFileUtils.loadClassFile(RoleMethodIndexTest.RoleLike.class));
+        return new DefaultTransformer(new StandardBlacklist(), false, index);
+    }
+
+    @Test
+    public void onlyIndexedCallsAreReplaced() {
+        assertThat(countMatches(original, "INVOKEVIRTUAL"), is(2));
+        assertThat(countMatches(transformed, "INVOKEVIRTUAL"), is(1));
+        assertThat(countMatches(transformed, "INVOKEDYNAMIC"), is(1));
+        assertThat(transformed, containsString("INVOKEVIRTUAL java/io/PrintStream.println"));
+        assertThat(transformed, containsString("INVOKEDYNAMIC length" + methodDescriptor(int.class, String.class)));
+    }
+
+    /** The class to be transformed in this test. */
+    public static class ClassWithCalls {
+        public int B(String s) {
+            System.out.println(s);
+            return s.length();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package rolevm.transform;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransformationCacheTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(directory);
+    }
+
+    @Test
+    public void putAndGet() throws IOException {
+        try (TransformationCache cache = new TransformationCache(directory)) {
+            assertNull(cache.get(key(1)));
+            cache.put(key(1), new byte[] { 1, 2, 3 });
+            cache.put(key(1), new byte[] { 4 });
+            cache.put(key(2), new byte[0]);
+            assertArrayEquals(new byte[] { 1, 2, 3 }, cache.get(key(1)));
+            assertArrayEquals(new byte[0], cache.get(key(2)));
+            assertEquals(2, cache.size());
+        }
+    }
+
+    @Test
+    public void reopen() throws IOException {
+        try (TransformationCache cache = new TransformationCache(directory)) {
+            cache.put(key(1), new byte[] { 1, 2, 3 });
+        }
+        try (TransformationCache cache = new TransformationCache(directory)) {
+            assertArrayEquals(new byte[] { 1, 2, 3 }, cache.get(key(1)));
+            cache.put(key(2), new byte[] { 4, 5 });
+            assertArrayEquals(new byte[] { 4, 5 }, cache.get(key(2)));
+        }
+        try (TransformationCache cache = new TransformationCache(directory)) {
+            assertEquals(2, cache.size());
+            assertArrayEquals(new byte[] { 4, 5 }, cache.get(key(2)));
+        }
+    }
+
+    @Test
+    public void incompleteEntriesAreIgnored() throws IOException {
+        try (TransformationCache cache = new TransformationCache(directory)) {
+            cache.put(key(1), new byte[] { 1, 2, 3 });
+            cache.put(key(2), new byte[] { 4, 5 });
+        }
+        // as if the last entry was not written completely
+        truncate(directory.resolve("classes.pack"), 4);
+        truncate(directory.resolve("classes.idx"), 50);
+        try (TransformationCache cache = new TransformationCache(directory)) {
+            assertEquals(1, cache.size());
+            assertNull(cache.get(key(2)));
+            cache.put(key(3), new byte[] { 6 });
+        }
+        try (TransformationCache cache = new TransformationCache(directory)) {
+            assertArrayEquals(new byte[] { 1, 2, 3 }, cache.get(key(1)));
+            assertArrayEquals(new byte[] { 6 }, cache.get(key(3)));
+        }
+    }
+
+    private static byte[] key(final int n) {
+        byte[] key = new byte[TransformationCache.KEY_SIZE];
+        Arrays.fill(key, (byte) n);
+        return key;
+    }
+
+    private static void truncate(final Path file, final long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    static void deleteRecursively(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
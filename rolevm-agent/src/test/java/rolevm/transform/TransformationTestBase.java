@@ -20,7 +20,7 @@ import org.junit.Test;
 public abstract class TransformationTestBase {
     /** Pattern used to check the emitted {@code invokedynamic} bytecodes. */
     protected static final Pattern PATTERN = Pattern.compile("INVOKEDYNAMIC (.*?) \\[(.*?)\\]\\n", Pattern.DOTALL);
-    protected final DefaultTransformer tfm = new DefaultTransformer(new StandardBlacklist());
+    protected final DefaultTransformer tfm = createTransformer();
 
     protected byte[] transformedClass;
     protected String original;
@@ -42,4 +42,9 @@ public abstract class TransformationTestBase {
     }
 
     protected abstract Class<?> classUnderTest();
+
+    /** Creates the transformer under test. */
+    protected DefaultTransformer createTransformer() {
+        return new DefaultTransformer(new StandardBlacklist());
+    }
 }
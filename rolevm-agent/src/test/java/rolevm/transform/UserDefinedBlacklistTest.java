@@ -0,0 +1,111 @@
+package rolevm.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Verifies the include and exclude rules of {@link UserDefinedBlacklist}.
+ *
+ * @author Martin Morgenstern
+ */
+public class UserDefinedBlacklistTest {
+    @Test
+    public void plainPrefixesAreExcluded() {
+        UserDefinedBlacklist blacklist = new UserDefinedBlacklist("org/example/pkg1/, org/example/Foo");
+        assertTrue(blacklist.isExcluded("org/example/pkg1/A"));
+        assertTrue(blacklist.isExcluded("org/example/pkg1/sub/A"));
+        assertTrue(blacklist.isExcluded("org/example/Foo"));
+        assertTrue(blacklist.isExcluded("org/example/FooBar"));
+        assertTrue(blacklist.isExcluded("org/example/Foo/Bar"));
+        assertFalse(blacklist.isExcluded("org/example/pkg10/A"));
+        assertFalse(blacklist.isExcluded("org/example/Bar"));
+        assertFalse(blacklist.isExcluded("org/example/A"));
+        assertFalse(blacklist.isExcluded("A"));
+    }
+
+    @Test
+    public void standardPrefixesAreAlwaysExcluded() {
+        UserDefinedBlacklist blacklist = new UserDefinedBlacklist("+java/, +rolevm/");
+        assertTrue(blacklist.isExcluded("java/lang/String"));
+        assertTrue(blacklist.isExcluded("rolevm/runtime/Bootstrap"));
+        assertFalse(blacklist.isExcluded("rolevm/examples/Bank"));
+        assertTrue(new UserDefinedBlacklist(List.of()).isExcluded("jdk/internal/misc/Unsafe"));
+    }
+
+    @Test
+    public void includeRulesExcludeAllOtherClasses() {
+        UserDefinedBlacklist blacklist = new UserDefinedBlacklist("+org/example/, -org/example/internal/");
+        assertFalse(blacklist.isExcluded("org/example/A"));
+        assertFalse(blacklist.isExcluded("org/example/sub/A"));
+        assertTrue(blacklist.isExcluded("org/example/internal/A"));
+        assertTrue(blacklist.isExcluded("org/other/A"));
+        assertTrue(blacklist.isExcluded("A"));
+    }
+
+    @Test
+    public void mostSpecificRuleWins() {
+        UserDefinedBlacklist blacklist = new UserDefinedBlacklist(
+                "org/example/, +org/example/api/, org/example/api/Impl");
+        assertTrue(blacklist.isExcluded("org/example/A"));
+        assertFalse(blacklist.isExcluded("org/example/api/A"));
+        assertTrue(blacklist.isExcluded("org/example/api/ImplA"));
+        assertTrue(new UserDefinedBlacklist("+org/example/, org/example/").isExcluded("org/example/A"));
+        assertFalse(new UserDefinedBlacklist("org/example/, +org/example/").isExcluded("org/example/A"));
+    }
+
+    @Test
+    public void globs() {
+        UserDefinedBlacklist blacklist = new UserDefinedBlacklist("org/*/internal/, **/generated/, org/example/*Test");
+        assertTrue(blacklist.isExcluded("org/example/internal/A"));
+        assertFalse(blacklist.isExcluded("org/example/sub/internal/A"));
+        assertTrue(blacklist.isExcluded("generated/A"));
+        assertTrue(blacklist.isExcluded("com/example/deep/generated/A"));
+        assertTrue(blacklist.isExcluded("org/example/FooTest"));
+        assertTrue(blacklist.isExcluded("org/example/FooTestCase"));
+        assertFalse(blacklist.isExcluded("org/example/Foo"));
+        assertFalse(blacklist.isExcluded("org/example/generator/A"));
+    }
+
+    @Test
+    public void scopedRules() throws Exception {
+        ClassLoader app = ClassLoader.getSystemClassLoader();
+        try (URLClassLoader plugins = new URLClassLoader("plugins", new URL[0], app)) {
+            UserDefinedBlacklist blacklist = new UserDefinedBlacklist("org/example/@app");
+            assertTrue(blacklist.isExcluded("org/example/A", app));
+            assertFalse(blacklist.isExcluded("org/example/A", plugins));
+            assertFalse(blacklist.isExcluded("org/example/A", null));
+            // without a class loader, scoped rules do not apply
+            assertFalse(blacklist.isExcluded("org/example/A"));
+
+            blacklist = new UserDefinedBlacklist("+org/example/@plugins, +org/example/@boot");
+            assertFalse(blacklist.isExcluded("org/example/A", plugins));
+            assertFalse(blacklist.isExcluded("org/example/A", null));
+            assertTrue(blacklist.isExcluded("org/example/A", app));
+            assertTrue(blacklist.isExcluded("org/other/A", plugins));
+        }
+    }
+
+    @Test
+    public void cachedDecisionsAreConsistent() {
+        UserDefinedBlacklist blacklist = new UserDefinedBlacklist("org/example/Foo, +org/example/FooBar");
+        for (int i = 0; i < 2; i++) {
+            assertTrue(blacklist.isExcluded("org/example/Foo"));
+            assertTrue(blacklist.isExcluded("org/example/A"));
+            assertFalse(blacklist.isExcluded("org/example/FooBar"));
+            assertTrue(blacklist.isExcluded("org/other/A"));
+        }
+    }
+
+    @Test
+    public void describesRules() {
+        assertEquals("StandardBlacklist + [org/example/, +org/example/api/]",
+                new UserDefinedBlacklist("org/example/, +org/example/api/").toString());
+    }
+}
@@ -0,0 +1,38 @@
+package rolevm.api;
+
+/**
+ * Collects binding operations that are applied together by
+ * {@link Compartment#batch(java.util.function.Consumer)}. A transaction can only
+ * be used within the scope of the {@code batch} call that created it.
+ * 
+ * @author Martin Morgenstern
+ */
+public interface BindingTransaction {
+    /**
+     * Schedules binding {@code role} to {@code player}, and returns {@code role}.
+     * The arguments are validated right away, as described in
+     * {@link Compartment#bind(Object, Object)}.
+     * 
+     * @param <T>
+     *            the role type
+     * @throws IllegalStateException
+     *             if the transaction has already been applied
+     * @return the given {@code role}
+     */
+    <T> T bind(Object player, T role);
+
+    /**
+     * Schedules unbinding {@code role} from {@code player}, and returns
+     * {@code role}. Bindings that have been scheduled earlier in the same
+     * transaction are taken into account.
+     * 
+     * @param <T>
+     *            the role type
+     * @throws NullPointerException
+     *             if any of the arguments is <code>null</code>
+     * @throws IllegalStateException
+     *             if the transaction has already been applied
+     * @return the given {@code role}
+     */
+    <T> T unbind(Object player, T role);
+}
@@ -1,13 +1,21 @@
 package rolevm.api;
 
+import java.lang.invoke.SwitchPoint;
 import java.util.ServiceLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 import rolevm.api.service.BindingService;
 import rolevm.api.service.BindingServiceFactory;
 
 /**
  * Provides a scope for role types and basic binding operations for role-based
- * programming.
+ * programming. A compartment is initially active. While it is inactive, the
+ * roles that have been bound through it stay bound, but are skipped when
+ * methods of their players are dispatched. An inactive compartment can also be
+ * activated for the dynamic scope of an action in the current thread only, see
+ * {@link #runActivated(Runnable)}.
  * 
  * @see Role
  * @author Martin Morgenstern
@@ -26,13 +34,178 @@ public class Compartment {
         return factory.getBindingService();
     }
 
-    // TODO: implement the usual compartment stuff (activate, deactivate, ...)
+    /** The compartments that are activated for the current thread. */
+    private static final ThreadLocal<ActiveScope> SCOPE = new ThreadLocal<>();
+
+    /** Serializes {@link #activate()} and {@link #deactivate()}. */
+    private final ReentrantLock activationLock = new ReentrantLock();
+
+    /** Whether the roles of this compartment take part in dispatch. */
+    private volatile boolean active = true;
+
+    /** Whether this compartment has ever been activated for a scope. */
+    private volatile boolean scoped;
+
+    /** Invalidated whenever {@link #active} or {@link #scoped} changes. */
+    private volatile SwitchPoint activationSwitchpoint = new SwitchPoint();
+
+    /**
+     * Activates this compartment, if it is inactive. This is a constant time
+     * operation, regardless of the number of bound roles.
+     */
+    public final void activate() {
+        setActive(true);
+    }
+
+    /**
+     * Deactivates this compartment, if it is active. This is a constant time
+     * operation, regardless of the number of bound roles.
+     */
+    public final void deactivate() {
+        setActive(false);
+    }
+
+    /**
+     * Returns {@code true} if this compartment is active, or if it has been
+     * activated for the current thread.
+     */
+    public final boolean isActive() {
+        return active || scoped && ActiveScope.contains(SCOPE.get(), this);
+    }
+
+    /**
+     * Runs {@code action} in the current thread, while this compartment is
+     * activated for the current thread only. Scopes of different compartments
+     * can be nested. This has no effect if this compartment is already active.
+     */
+    public final void runActivated(final Runnable action) {
+        final ActiveScope outer = enterScope();
+        try {
+            action.run();
+        } finally {
+            exitScope(outer);
+        }
+    }
+
+    /**
+     * Like {@link #runActivated(Runnable)}, but returns the result of
+     * {@code action}.
+     * 
+     * @throws Exception
+     *             if {@code action} throws an exception
+     */
+    public final <T> T callActivated(final Callable<T> action) throws Exception {
+        final ActiveScope outer = enterScope();
+        try {
+            return action.call();
+        } finally {
+            exitScope(outer);
+        }
+    }
+
+    /**
+     * Returns {@code true} if the roles of this compartment are skipped in every
+     * thread (internal use only).
+     */
+    final boolean isInactiveInAllThreads() {
+        return !active && !scoped;
+    }
+
+    /**
+     * Returns {@code true} if {@link #isActive()} depends on the current thread
+     * (internal use only).
+     */
+    final boolean isThreadDependent() {
+        return !active && scoped;
+    }
+
+    private ActiveScope enterScope() {
+        if (!scoped) {
+            activationLock.lock();
+            try {
+                if (!scoped) {
+                    scoped = true;
+                    replaceActivationSwitchpoint(false);
+                }
+            } finally {
+                activationLock.unlock();
+            }
+        }
+        final ActiveScope outer = SCOPE.get();
+        SCOPE.set(new ActiveScope(this, outer));
+        return outer;
+    }
+
+    private static void exitScope(final ActiveScope outer) {
+        if (outer == null) {
+            SCOPE.remove();
+        } else {
+            SCOPE.set(outer);
+        }
+    }
+
+    /** Immutable stack of compartments that are activated for a thread. */
+    private static final class ActiveScope {
+        final Compartment compartment;
+        final ActiveScope outer;
+
+        ActiveScope(final Compartment compartment, final ActiveScope outer) {
+            this.compartment = compartment;
+            this.outer = outer;
+        }
+
+        static boolean contains(ActiveScope scope, final Compartment compartment) {
+            for (; scope != null; scope = scope.outer) {
+                if (scope.compartment == compartment) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Returns a switchpoint that is invalidated when this compartment is activated
+     * or deactivated, or when it is activated for a scope for the first time
+     * (internal use only). It must be obtained <em>before</em> the state of this
+     * compartment is queried.
+     */
+    public final SwitchPoint getActivationSwitchpoint() {
+        return activationSwitchpoint;
+    }
+
+    private void setActive(final boolean value) {
+        activationLock.lock();
+        try {
+            if (active != value) {
+                active = value;
+                replaceActivationSwitchpoint(!value);
+            }
+        } finally {
+            activationLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the {@link #activationLock} held, after the state has
+     * been changed.
+     */
+    private void replaceActivationSwitchpoint(final boolean deactivated) {
+        final SwitchPoint old = activationSwitchpoint;
+        activationSwitchpoint = new SwitchPoint();
+        if (!deactivated || DispatchContext.ALL_ACTIVE_SWITCHPOINT.hasBeenInvalidated()) {
+            SwitchPoint.invalidateAll(new SwitchPoint[] { old });
+        } else {
+            SwitchPoint.invalidateAll(new SwitchPoint[] { old, DispatchContext.ALL_ACTIVE_SWITCHPOINT });
+        }
+    }
 
     /**
      * Binds {@code role} to {@code player}, and returns {@code role}. Both
      * arguments must be distinct, non-null objects. Furthermore, the class of
      * {@code role} must be a valid role type, and player must not be a role type
-     * (i.e., <em>deep roles</em> are not possible).
+     * (i.e., <em>deep roles</em> are not possible). The binding is only effective
+     * while this compartment is active.
      * 
      * @param <T>
      *            the role type
@@ -46,7 +219,7 @@ public class Compartment {
      * @return the given {@code role}
      */
     public final <T> T bind(final Object player, final T role) {
-        BINDER.bind(player, role);
+        BINDER.bind(this, player, role);
         return role;
     }
 
@@ -65,4 +238,19 @@ public class Compartment {
         BINDER.unbind(player, role);
         return role;
     }
+
+    /**
+     * Passes a new {@link BindingTransaction} to {@code changes}, and applies all
+     * bind and unbind operations scheduled on it at once. Compared to a sequence
+     * of {@link #bind(Object, Object)} and {@link #unbind(Object, Object)} calls,
+     * each player's dispatch context is rebuilt only once, and dependent call
+     * sites are invalidated only once for the whole batch. If {@code changes}
+     * throws an exception, none of the operations are applied.
+     * 
+     * @throws NullPointerException
+     *             if {@code changes} is <code>null</code>
+     */
+    public final void batch(final Consumer<? super BindingTransaction> changes) {
+        BINDER.batch(this, changes);
+    }
 }
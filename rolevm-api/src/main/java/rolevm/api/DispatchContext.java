@@ -2,9 +2,17 @@ package rolevm.api;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.SwitchPoint;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 import jdk.dynalink.linker.support.Lookup;
 
@@ -15,6 +23,10 @@ import jdk.dynalink.linker.support.Lookup;
  * which a particular method call must be delegated. Inside a role method body,
  * {@link #proceed()} can be used to specify a signature-polymorphic proceed
  * call to the next role, if any, in this chain.
+ * <p>
+ * Each role in the chain may be associated with the {@link Compartment} through
+ * which it has been bound. Roles of inactive compartments are skipped during
+ * dispatch (see {@link #skipInactive()}).
  * 
  * @author Martin Morgenstern
  */
@@ -24,6 +36,18 @@ public final class DispatchContext {
 
     private static final Lookup lookup = new Lookup(MethodHandles.lookup());
 
+    /**
+     * Number of chains that {@link #filter(Object, Predicate)} caches in an
+     * array; further chains are cached in a map.
+     */
+    private static final int MAX_LINEAR = 8;
+
+    /** Initial, empty cache for {@link #filter(Object, Predicate)}. */
+    private static final Object[] NOT_FILTERED = {};
+
+    /** Handle to the {@link #moreFiltered} field, which is set once. */
+    private static final VarHandle MORE_FILTERED;
+
     /**
      * Direct handle to the {@link DispatchContext#next} field (internal use only).
      */
@@ -35,10 +59,29 @@ public final class DispatchContext {
      */
     public static final MethodHandle TARGET_HANDLE;
 
+    /**
+     * Direct handle to the {@link DispatchContext#skipInactive()} method
+     * (internal use only).
+     */
+    public static final MethodHandle SKIP_INACTIVE_HANDLE;
+
+    /**
+     * Switchpoint that remains valid until the first compartment is deactivated,
+     * which allows to omit {@link #skipInactive()} until then (internal use
+     * only).
+     */
+    public static final SwitchPoint ALL_ACTIVE_SWITCHPOINT = new SwitchPoint();
+
     static {
         Class<?> myself = DispatchContext.class;
         NEXT_HANDLE = lookup.findGetter(myself, "next", myself);
         TARGET_HANDLE = lookup.findGetter(myself, "target", Object.class);
+        SKIP_INACTIVE_HANDLE = lookup.findVirtual(myself, "skipInactive", MethodType.methodType(myself));
+        try {
+            MORE_FILTERED = MethodHandles.lookup().findVarHandle(myself, "moreFiltered", Map.class);
+        } catch (ReflectiveOperationException e) {
+            throw (AssertionError) new AssertionError().initCause(e);
+        }
     }
 
     /** The next context in the chain (may be <code>null</code>). */
@@ -47,12 +90,50 @@ public final class DispatchContext {
     /** The target of this context (may be <code>null</code>). */
     private final Object target;
 
-    /** Builds a chain of {@link DispatchContext}s using the given list of roles. */
+    /**
+     * The compartment of the target, or <code>null</code> if the target is not
+     * associated with a compartment (and hence always active).
+     */
+    private final Compartment compartment;
+
+    /** The interned shape of the role types of this chain. */
+    private final Shape shape;
+
+    /**
+     * Chains computed by {@link #filter(Object, Predicate)}, stored as an array of
+     * alternating keys and chains, which is replaced (not modified) on update.
+     */
+    private volatile Object[] filtered = NOT_FILTERED;
+
+    /** Chains computed by {@link #filter(Object, Predicate)} once the array is full. */
+    private volatile Map<Object, DispatchContext> moreFiltered;
+
+    /**
+     * Builds a chain of {@link DispatchContext}s using the given list of roles,
+     * which are not associated with a compartment.
+     */
     public static DispatchContext of(List<Object> roles) {
         DispatchContext ctx = END;
         ListIterator<Object> iter = roles.listIterator(roles.size());
         while (iter.hasPrevious()) {
-            ctx = new DispatchContext(iter.previous(), ctx);
+            ctx = new DispatchContext(iter.previous(), null, ctx);
+        }
+        return ctx;
+    }
+
+    /**
+     * Builds a chain of {@link DispatchContext}s using the given list of roles,
+     * where each role is associated with the compartment at the same index in
+     * {@code compartments}, which may contain <code>null</code> elements
+     * (internal use only).
+     */
+    public static DispatchContext of(List<Object> roles, List<Compartment> compartments) {
+        if (roles.size() != compartments.size()) {
+            throw new IllegalArgumentException("roles and compartments must have the same size");
+        }
+        DispatchContext ctx = END;
+        for (int i = roles.size() - 1; i >= 0; i--) {
+            ctx = new DispatchContext(roles.get(i), compartments.get(i), ctx);
         }
         return ctx;
     }
@@ -66,9 +147,11 @@ public final class DispatchContext {
      * Private constructor used by {@link DispatchContext#of(List)}. The given
      * target and next must not be <code>null</code>.
      */
-    private DispatchContext(Object target, DispatchContext next) {
+    private DispatchContext(Object target, Compartment compartment, DispatchContext next) {
         this.target = Objects.requireNonNull(target);
+        this.compartment = compartment;
         this.next = Objects.requireNonNull(next);
+        this.shape = Shape.of(target.getClass(), next.shape);
     }
 
     /**
@@ -76,7 +159,156 @@ public final class DispatchContext {
      */
     private DispatchContext() {
         this.target = null;
+        this.compartment = null;
         this.next = null;
+        this.shape = Shape.EMPTY;
+    }
+
+    /**
+     * Returns a new chain with the roles of this chain, followed by {@code role}
+     * of the given compartment, which may be <code>null</code> (internal use
+     * only).
+     */
+    public DispatchContext append(Object role, Compartment compartment) {
+        List<DispatchContext> nodes = nodes();
+        DispatchContext ctx = new DispatchContext(role, compartment, END);
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            ctx = nodes.get(i).copy(ctx);
+        }
+        return ctx;
+    }
+
+    /**
+     * Returns a new chain without the first role that is equal to {@code role},
+     * or this chain if there is no such role (internal use only).
+     */
+    public DispatchContext remove(Object role) {
+        List<DispatchContext> nodes = nodes();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (role.equals(nodes.get(i).target)) {
+                DispatchContext ctx = nodes.get(i).next;
+                for (int j = i - 1; j >= 0; j--) {
+                    ctx = nodes.get(j).copy(ctx);
+                }
+                return ctx;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns a chain without the roles of compartments that are inactive in all
+     * threads, which is this chain if there are no such roles (internal use
+     * only).
+     */
+    public DispatchContext activeOnly() {
+        List<DispatchContext> nodes = nodes();
+        DispatchContext ctx = END;
+        boolean changed = false;
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            DispatchContext node = nodes.get(i);
+            if (node.compartment == null || !node.compartment.isInactiveInAllThreads()) {
+                ctx = changed ? node.copy(ctx) : node;
+            } else {
+                changed = true;
+            }
+        }
+        return ctx;
+    }
+
+    /**
+     * Returns a chain with only the roles that match {@code predicate}, which is
+     * this chain if all roles match. The result is cached under the given key,
+     * so that the predicate should only depend on the key (internal use only).
+     * The cache is not bounded, since there are only as many keys as distinct
+     * methods that are called on the player.
+     * 
+     * @implNote The first keys are searched linearly in an array, further keys
+     *           are looked up in a map. Concurrent updates of the array may get
+     *           lost, which is harmless, because the result is recomputed (and
+     *           stored) on the next call.
+     */
+    public DispatchContext filter(Object key, Predicate<Object> predicate) {
+        if (this == END) {
+            return END;
+        }
+        Object[] cache = filtered;
+        for (int i = 0; i < cache.length; i += 2) {
+            if (cache[i] == key || cache[i].equals(key)) {
+                return (DispatchContext) cache[i + 1];
+            }
+        }
+        Map<Object, DispatchContext> more = moreFiltered;
+        if (more != null) {
+            DispatchContext cached = more.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<DispatchContext> nodes = nodes();
+        DispatchContext ctx = END;
+        boolean changed = false;
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            DispatchContext node = nodes.get(i);
+            if (predicate.test(node.target)) {
+                ctx = changed ? node.copy(ctx) : node;
+            } else {
+                changed = true;
+            }
+        }
+        if (cache.length < 2 * MAX_LINEAR) {
+            Object[] updated = Arrays.copyOf(cache, cache.length + 2);
+            updated[cache.length] = key;
+            updated[cache.length + 1] = ctx;
+            filtered = updated;
+        } else {
+            if (more == null) {
+                MORE_FILTERED.compareAndSet(this, null, new ConcurrentHashMap<>());
+                more = moreFiltered;
+            }
+            more.putIfAbsent(key, ctx);
+        }
+        return ctx;
+    }
+
+    /**
+     * Returns {@code true} if a role in this chain belongs to a compartment that is
+     * only activated for some threads, so that {@link #skipInactive()} must be
+     * applied on each dispatch (internal use only).
+     */
+    public boolean isThreadDependent() {
+        for (DispatchContext ctx = this; ctx != END; ctx = ctx.next) {
+            if (ctx.compartment != null && ctx.compartment.isThreadDependent()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the first context in this chain whose role is active in the
+     * current thread, or {@link #END} (internal use only).
+     */
+    public DispatchContext skipInactive() {
+        DispatchContext ctx = this;
+        while (!ctx.isActive()) {
+            ctx = ctx.next;
+        }
+        return ctx;
+    }
+
+    /** Returns the nodes of this chain, excluding {@link #END}. */
+    private List<DispatchContext> nodes() {
+        List<DispatchContext> nodes = new ArrayList<>();
+        for (DispatchContext ctx = this; ctx != END; ctx = ctx.next) {
+            nodes.add(ctx);
+        }
+        return nodes;
+    }
+
+    /** Returns a copy of this context with a different {@code next}. */
+    private DispatchContext copy(DispatchContext next) {
+        return new DispatchContext(target, compartment, next);
     }
 
     /**
@@ -95,6 +327,31 @@ public final class DispatchContext {
         return target;
     }
 
+    /**
+     * Returns the compartment of the role of this dispatch context, or
+     * <code>null</code> if it has none (internal use only).
+     */
+    public Compartment compartment() {
+        return compartment;
+    }
+
+    /**
+     * Returns a token that represents the sequence of role types in this chain,
+     * which is identical for all chains whose roles have the same classes in the
+     * same order (internal use only).
+     */
+    public Object shape() {
+        return shape;
+    }
+
+    /**
+     * Returns {@code false} if the role of this dispatch context belongs to an
+     * inactive compartment (internal use only).
+     */
+    public boolean isActive() {
+        return compartment == null || compartment.isActive();
+    }
+
     /**
      * A marker method that can be used to specify a signature-polymorphic proceed
      * call to the next role, if any, or to the core object of this dispatch
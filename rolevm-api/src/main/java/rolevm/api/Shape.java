@@ -0,0 +1,50 @@
+package rolevm.api;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical representation of the sequence of role types in a
+ * {@link DispatchContext} chain. Shapes are interned, i.e., two chains whose
+ * roles have the same classes in the same order have the identical shape, so
+ * that call sites can cheaply compare shapes by reference.
+ * 
+ * @implNote The shapes that extend a given shape by a role type are stored in
+ *           a {@link ClassValue} of the role type instead of a global table, so
+ *           that shapes do not prevent role classes from being unloaded.
+ * @author Martin Morgenstern
+ */
+final class Shape {
+    /** The shape of {@link DispatchContext#END}. */
+    static final Shape EMPTY = new Shape(null, null);
+
+    /** Maps each role type to the shapes that start with that type. */
+    private static final ClassValue<Map<Shape, Shape>> PREFIXED = new ClassValue<>() {
+        @Override
+        protected Map<Shape, Shape> computeValue(final Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Class<?> roleType;
+    private final Shape next;
+
+    private Shape(final Class<?> roleType, final Shape next) {
+        this.roleType = roleType;
+        this.next = next;
+    }
+
+    /** Returns the shape of a chain whose first role is of type {@code roleType}. */
+    static Shape of(final Class<?> roleType, final Shape next) {
+        return PREFIXED.get(roleType).computeIfAbsent(next, n -> new Shape(roleType, n));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Shape[");
+        for (Shape shape = this; shape != EMPTY; shape = shape.next) {
+            sb.append(shape.roleType.getName()).append(" -> ");
+        }
+        return sb.append("END]").toString();
+    }
+}
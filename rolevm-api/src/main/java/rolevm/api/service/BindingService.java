@@ -1,5 +1,10 @@
 package rolevm.api.service;
 
+import java.util.function.Consumer;
+
+import rolevm.api.BindingTransaction;
+import rolevm.api.Compartment;
+
 /**
  * Minimal service interface for communication with the RoleVM runtime.
  * 
@@ -7,11 +12,23 @@ package rolevm.api.service;
  */
 public interface BindingService {
     /**
-     * Binds {@code role} to {@code player}.
+     * Binds {@code role} to {@code player}, without associating the binding with
+     * a compartment.
+     * 
+     * @see rolevm.api.Compartment#bind(Object, Object)
+     */
+    default void bind(Object player, Object role) {
+        bind(null, player, role);
+    }
+
+    /**
+     * Binds {@code role} to {@code player}, such that the binding is only
+     * effective while {@code compartment} is active. If {@code compartment} is
+     * <code>null</code>, the binding is always effective.
      * 
      * @see rolevm.api.Compartment#bind(Object, Object)
      */
-    void bind(Object player, Object role);
+    void bind(Compartment compartment, Object player, Object role);
 
     /**
      * Unbinds {@code role} from {@code player}, if such a binding exists.
@@ -19,4 +36,23 @@ public interface BindingService {
      * @see rolevm.api.Compartment#unbind(Object, Object)
      */
     void unbind(Object player, Object role);
+
+    /**
+     * Applies all binding operations that {@code changes} schedules on a new
+     * transaction at once, without associating the bindings with a compartment.
+     * 
+     * @see rolevm.api.Compartment#batch(Consumer)
+     */
+    default void batch(Consumer<? super BindingTransaction> changes) {
+        batch(null, changes);
+    }
+
+    /**
+     * Applies all binding operations that {@code changes} schedules on a new
+     * transaction at once, associating new bindings with {@code compartment},
+     * which may be <code>null</code>.
+     * 
+     * @see rolevm.api.Compartment#batch(Consumer)
+     */
+    void batch(Compartment compartment, Consumer<? super BindingTransaction> changes);
 }
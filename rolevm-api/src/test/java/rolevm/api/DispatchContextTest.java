@@ -1,9 +1,12 @@
 package rolevm.api;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 
 import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -45,4 +48,67 @@ public class DispatchContextTest {
         DispatchContext ctx = DispatchContext.ofRoles(1, 2, 3);
         assertEquals("DispatchContext[1 -> 2 -> 3 -> END]", ctx.toString());
     }
+
+    @Test
+    public void append() {
+        DispatchContext ctx = DispatchContext.ofRoles(1, 2);
+        DispatchContext appended = ctx.append(3, null);
+        assertEquals("DispatchContext[1 -> 2 -> 3 -> END]", appended.toString());
+        assertEquals("DispatchContext[1 -> 2 -> END]", ctx.toString());
+        assertEquals("DispatchContext[1 -> END]", DispatchContext.END.append(1, null).toString());
+    }
+
+    @Test
+    public void remove() {
+        DispatchContext ctx = DispatchContext.ofRoles(1, 2, 3, 2);
+        assertEquals("DispatchContext[1 -> 3 -> 2 -> END]", ctx.remove(2).toString());
+        assertSame(ctx.next().next(), ctx.remove(1).remove(2));
+        assertSame(ctx, ctx.remove(4));
+    }
+
+    @Test
+    public void shapes() {
+        DispatchContext ctx = DispatchContext.ofRoles(1, "a");
+        assertSame(ctx.shape(), DispatchContext.ofRoles(2, "b").shape());
+        assertSame(ctx.shape(), DispatchContext.ofRoles(3).append("c", null).shape());
+        assertSame(ctx.next().shape(), DispatchContext.ofRoles("d").shape());
+        assertNotSame(ctx.shape(), DispatchContext.ofRoles("a", 1).shape());
+        assertNotSame(ctx.shape(), DispatchContext.ofRoles(1, "a", 2).shape());
+        assertSame(DispatchContext.END.shape(), ctx.next().next().shape());
+        assertEquals("Shape[java.lang.Integer -> java.lang.String -> END]", ctx.shape().toString());
+    }
+
+    @Test
+    public void filter() {
+        DispatchContext ctx = DispatchContext.ofRoles(1, "a", 2, "b");
+        DispatchContext strings = ctx.filter("strings", String.class::isInstance);
+        assertEquals("DispatchContext[a -> b -> END]", strings.toString());
+        assertSame(strings, ctx.filter("strings", role -> false));
+        assertSame(ctx.next().next().next(), strings.next());
+        assertSame(ctx, ctx.filter("all", role -> true));
+        assertSame(DispatchContext.END, ctx.filter("none", role -> false));
+        assertSame(DispatchContext.END, DispatchContext.END.filter("all", role -> true));
+    }
+
+    @Test
+    public void filterCachesManyKeys() {
+        DispatchContext ctx = DispatchContext.ofRoles(1, "a", 2, "b");
+        List<DispatchContext> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(ctx.filter("key" + i, String.class::isInstance));
+        }
+        for (int i = 0; i < 20; i++) {
+            DispatchContext cached = ctx.filter("key" + i, role -> false);
+            assertSame(results.get(i), cached);
+            assertEquals("DispatchContext[a -> b -> END]", cached.toString());
+        }
+    }
+
+    @Test
+    public void allActiveWithoutCompartments() {
+        DispatchContext ctx = DispatchContext.ofRoles(1, 2);
+        assertSame(ctx, ctx.activeOnly());
+        assertSame(ctx, ctx.skipInactive());
+        assertSame(DispatchContext.END, DispatchContext.END.skipInactive());
+    }
 }
@@ -2,31 +2,45 @@ package rolevm.bench;
 
 import static java.lang.invoke.MethodType.methodType;
 
-import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
 
+/**
+ * Compares the map implementations that can be selected with the
+ * {@code rolevm.map} property. The {@code contended_*} benchmarks access a
+ * shared, populated map from several threads; run them with {@code -prof gc}
+ * to compare the allocation rates of lookups.
+ */
 @OutputTimeUnit(TimeUnit.NANOSECONDS)
 public class MapBenchmark extends DefaultBenchmark {
-    private static final String CUSTOM_MAP_CLASSNAME = "rolevm.runtime.binder.ConcurrentWeakHashMap";
-    private static final MethodHandle CUSTOM_MAP_CONSTRUCTOR = customMapConstructor();
+    private static final String CUSTOM_MAP_PACKAGE = "rolevm.runtime.binder.";
+    private static final int KEYS = 1024;
 
     // the Maven project setup currently requires this, will be fixed soon
-    private static MethodHandle customMapConstructor() {
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> newMap(final String implementation) {
+        if ("IdentityHashMap".equals(implementation)) {
+            return new IdentityHashMap<>();
+        }
         try {
-            Class<?> customMapClass = Class.forName(CUSTOM_MAP_CLASSNAME);
-            return MethodHandles.lookup().findConstructor(customMapClass, methodType(void.class));
-        } catch (ReflectiveOperationException e) {
-            throw new AssertionError();
+            Class<?> customMapClass = Class.forName(CUSTOM_MAP_PACKAGE + implementation);
+            return (Map<Object, Object>) MethodHandles.lookup().findConstructor(customMapClass, methodType(void.class))
+                    .invoke();
+        } catch (Throwable e) {
+            throw new AssertionError(e);
         }
     }
 
@@ -37,7 +51,7 @@ public class MapBenchmark extends DefaultBenchmark {
 
         @Setup(Level.Iteration)
         public void setUp() {
-            map = new IdentityHashMap<>();
+            map = newMap("IdentityHashMap");
             defaultValue = new Object();
             key = new Object();
         }
@@ -49,13 +63,97 @@ public class MapBenchmark extends DefaultBenchmark {
         Object defaultValue, key;
 
         @Setup(Level.Iteration)
-        public void setUp() throws Throwable {
-            map = (Map<Object, Object>) CUSTOM_MAP_CONSTRUCTOR.invoke();
+        public void setUp() {
+            map = newMap("ConcurrentWeakHashMap");
+            defaultValue = new Object();
+            key = new Object();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class IWHM {
+        Map<Object, Object> map;
+        Object defaultValue, key;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            map = newMap("IdentityWeakHashMap");
             defaultValue = new Object();
             key = new Object();
         }
     }
 
+    @State(Scope.Benchmark)
+    public static class CIWHM {
+        Map<Object, Object> map;
+        Object defaultValue, key;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            map = newMap("ConcurrentIdentityWeakHashMap");
+            defaultValue = new Object();
+            key = new Object();
+        }
+    }
+
+    /** A populated map that is shared by all threads. */
+    @State(Scope.Benchmark)
+    public static class Shared {
+        @Param({ "IdentityHashMap", "IdentityWeakHashMap", "ConcurrentWeakHashMap", "ConcurrentIdentityWeakHashMap" })
+        String implementation;
+
+        Map<Object, Object> map;
+        Object defaultValue = new Object();
+        Object[] keys = newKeys();
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            map = newMap(implementation);
+            populate(map, keys);
+        }
+    }
+
+    /** Like {@link Shared}, but restricted to thread-safe implementations. */
+    @State(Scope.Benchmark)
+    public static class SharedConcurrent {
+        @Param({ "ConcurrentWeakHashMap", "ConcurrentIdentityWeakHashMap" })
+        String implementation;
+
+        Map<Object, Object> map;
+        Object defaultValue = new Object();
+        Object[] keys = newKeys();
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            map = newMap(implementation);
+            populate(map, keys);
+        }
+    }
+
+    private static Object[] newKeys() {
+        Object[] keys = new Object[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = new Object();
+        }
+        return keys;
+    }
+
+    /** Maps every other key, so that half of the lookups are misses. */
+    private static void populate(final Map<Object, Object> map, final Object[] keys) {
+        for (int i = 0; i < keys.length; i += 2) {
+            map.put(keys[i], new Object());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        Object nextKey(final Object[] keys) {
+            return keys[next++ & (KEYS - 1)];
+        }
+    }
+
     @Benchmark
     public Object identityhashmap_get(IHM state) {
         return state.map.get(state.key);
@@ -66,6 +164,16 @@ public class MapBenchmark extends DefaultBenchmark {
         return state.map.get(state.key);
     }
 
+    @Benchmark
+    public Object identityweakhashmap_get(IWHM state) {
+        return state.map.get(state.key);
+    }
+
+    @Benchmark
+    public Object concurrentidentityweakhashmap_get(CIWHM state) {
+        return state.map.get(state.key);
+    }
+
     @Benchmark
     public Object identityhashmap_getdefault(IHM state) {
         return state.map.getOrDefault(state.key, state.defaultValue);
@@ -75,4 +183,36 @@ public class MapBenchmark extends DefaultBenchmark {
     public Object concurrentweakhashmap_getdefault(CWHM state) {
         return state.map.getOrDefault(state.key, state.defaultValue);
     }
+
+    @Benchmark
+    public Object identityweakhashmap_getdefault(IWHM state) {
+        return state.map.getOrDefault(state.key, state.defaultValue);
+    }
+
+    @Benchmark
+    public Object concurrentidentityweakhashmap_getdefault(CIWHM state) {
+        return state.map.getOrDefault(state.key, state.defaultValue);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object contended_getdefault(Shared shared, Cursor cursor) {
+        return shared.map.getOrDefault(cursor.nextKey(shared.keys), shared.defaultValue);
+    }
+
+    @Benchmark
+    @Group("contended_readwrite")
+    @GroupThreads(3)
+    public Object contended_readwrite_reader(SharedConcurrent shared, Cursor cursor) {
+        return shared.map.getOrDefault(cursor.nextKey(shared.keys), shared.defaultValue);
+    }
+
+    @Benchmark
+    @Group("contended_readwrite")
+    @GroupThreads(1)
+    public Object contended_readwrite_writer(SharedConcurrent shared) {
+        Object key = new Object();
+        shared.map.put(key, key);
+        return shared.map.remove(key);
+    }
 }
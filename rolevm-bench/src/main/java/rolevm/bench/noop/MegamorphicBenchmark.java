@@ -0,0 +1,65 @@
+package rolevm.bench.noop;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import rolevm.bench.DefaultBenchmark;
+import rolevm.examples.noop.BaseType;
+import rolevm.examples.noop.BenchmarkHelper;
+import rolevm.examples.noop.ShapesCompartment;
+
+/**
+ * Measures base calls on 64 players through a single call site,
+ * where the players have up to 64 different role shapes: each player plays
+ * three roles of the four role types in {@link ShapesCompartment}, whose order
+ * encodes the index of its shape. All roles have a role method for the called
+ * method.
+ * 
+ * @author Martin Morgenstern
+ */
+@Fork(jvmArgsAppend = { "@rolevm-bench/jvm.options" })
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class MegamorphicBenchmark extends DefaultBenchmark {
+    private static final int PLAYERS = 64;
+    private static final int ROLES_PER_PLAYER = 3;
+
+    @Param({ "1", "8", "64" })
+    int shapes;
+
+    BaseType[] players;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        ShapesCompartment c = new ShapesCompartment();
+        players = new BaseType[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = new BaseType();
+            int shape = i % shapes;
+            for (int r = 0; r < ROLES_PER_PLAYER; r++) {
+                c.bind(players[i], c.newRole(shape >> (2 * r)));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PLAYERS)
+    public void basecall_noargs(Blackhole bh) {
+        for (BaseType b : players) {
+            bh.consume(BenchmarkHelper.performTest1(b));
+        }
+    }
+}
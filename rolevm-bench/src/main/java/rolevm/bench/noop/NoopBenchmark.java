@@ -23,7 +23,7 @@ import rolevm.examples.noop.NoopCompartment;
 public class NoopBenchmark extends DefaultBenchmark {
     @State(Scope.Benchmark)
     public static class BenchState {
-        @Param({ "1", "2", "3" })
+        @Param({ "0", "1", "2", "3" })
         int numRoles;
 
         /**
@@ -0,0 +1,60 @@
+package rolevm.bench.noop;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import rolevm.bench.DefaultBenchmark;
+import rolevm.examples.noop.BenchmarkHelper;
+import rolevm.examples.noop.NoopCompartment;
+
+/**
+ * Measures interface calls on a pure receiver class ({@link ArrayList}) at a
+ * call site whose static receiver type ({@link List}) is impure, because a
+ * role has been bound to another list. The baseline is the same loop in this
+ * (not transformed) class.
+ * 
+ * @author Martin Morgenstern
+ */
+@Fork(jvmArgsAppend = { "@rolevm-bench/jvm.options" })
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class PureClassBenchmark extends DefaultBenchmark {
+    private final List<Integer> list = new ArrayList<>();
+    private final List<Object> player = new LinkedList<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        for (int i = 0; i < 100; i++) {
+            list.add(i);
+        }
+        NoopCompartment c = new NoopCompartment();
+        c.bind(player, c.new NoopRole());
+    }
+
+    @Benchmark
+    public int list_sum() {
+        return BenchmarkHelper.sum(list);
+    }
+
+    @Benchmark
+    public int list_sum_baseline() {
+        int sum = 0;
+        for (int i = 0; i < list.size(); i++) {
+            sum += list.get(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,99 @@
+package rolevm.bench.noop;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import rolevm.bench.DefaultBenchmark;
+import rolevm.examples.noop.BaseType;
+import rolevm.examples.noop.BenchmarkHelper;
+import rolevm.examples.noop.NoopCompartment;
+import rolevm.examples.noop.NoopCompartment.NoopRole;
+
+/**
+ * Measures the throughput of base calls on several pure receivers of the same
+ * type: when the type has never been played, after the only player of the type
+ * has been unbound again, and while some other object of the type is still
+ * playing a role. After an unbind, the call sites should get relinked onto the
+ * fast path, i.e., the throughput should recover to that of a never played
+ * type.
+ * 
+ * @author Martin Morgenstern
+ */
+@Fork(jvmArgsAppend = { "@rolevm-bench/jvm.options" })
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RevalidationBenchmark extends DefaultBenchmark {
+    @State(Scope.Benchmark)
+    public static class Receivers {
+        @Param("16")
+        int numReceivers;
+
+        BaseType[] receivers;
+        NoopCompartment c;
+
+        @Setup(Level.Trial)
+        public void setupReceivers() {
+            c = new NoopCompartment();
+            receivers = new BaseType[numReceivers];
+            for (int i = 0; i < numReceivers; ++i) {
+                receivers[i] = new BaseType();
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Unbound {
+        @Setup(Level.Trial)
+        public void setup(Receivers r) {
+            BaseType player = r.receivers[0];
+            NoopRole role = r.c.bind(player, r.c.new NoopRole());
+            // link the call site while the type is impure
+            BenchmarkHelper.performTest1(player);
+            r.c.unbind(player, role);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class StillBound {
+        BaseType player;
+
+        @Setup(Level.Trial)
+        public void setup(Receivers r) {
+            player = new BaseType();
+            r.c.bind(player, r.c.new NoopRole());
+            BenchmarkHelper.performTest1(player);
+        }
+    }
+
+    private static void callAll(Receivers r, Blackhole bh) {
+        for (BaseType b : r.receivers) {
+            bh.consume(BenchmarkHelper.performTest1(b));
+        }
+    }
+
+    @Benchmark
+    public void basecall_never_bound(Receivers r, Blackhole bh) {
+        callAll(r, bh);
+    }
+
+    @Benchmark
+    public void basecall_after_unbind(Receivers r, Unbound state, Blackhole bh) {
+        callAll(r, bh);
+    }
+
+    @Benchmark
+    public void basecall_still_bound(Receivers r, StillBound state, Blackhole bh) {
+        callAll(r, bh);
+    }
+}
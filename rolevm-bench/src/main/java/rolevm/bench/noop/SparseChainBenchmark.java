@@ -0,0 +1,88 @@
+package rolevm.bench.noop;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import rolevm.bench.DefaultBenchmark;
+import rolevm.examples.noop.BaseType;
+import rolevm.examples.noop.BenchmarkHelper;
+import rolevm.examples.noop.NoopCompartment;
+import rolevm.examples.noop.WideCompartment;
+import rolevm.examples.noop.WideType;
+
+/**
+ * Measures base calls on players with a growing number of bound roles, where
+ * only a single role (the last one) has a role method for the called method.
+ * Since dispatch only visits roles with a matching role method, the cost should
+ * not depend on the number of roles.
+ * <p>
+ * The {@code wide} benchmarks alternate between two players of a
+ * {@link WideType} and call 4 or all 12 of its methods in turn, which are all
+ * overridden by the last role. With two receivers, the call sites dispatch on
+ * the role shape and filter the chain of the receiver on each call. The filtered
+ * chains are cached per method in the chain, so the cost per call should not
+ * depend on the number of distinct methods.
+ * 
+ * @author Martin Morgenstern
+ */
+@Fork(jvmArgsAppend = { "@rolevm-bench/jvm.options" })
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class SparseChainBenchmark extends DefaultBenchmark {
+    @Param({ "1", "2", "4", "8", "16", "32" })
+    int depth;
+
+    BaseType b;
+    WideType[] wide = new WideType[2];
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        NoopCompartment c = new NoopCompartment();
+        b = new BaseType();
+        for (int i = 1; i < depth; ++i) {
+            c.bind(b, c.new PassiveRole());
+        }
+        c.bind(b, c.new NoopRole());
+        WideCompartment w = new WideCompartment();
+        for (int p = 0; p < wide.length; p++) {
+            wide[p] = new WideType();
+            for (int i = 1; i < depth; ++i) {
+                w.bind(wide[p], w.new PassiveRole());
+            }
+            w.bind(wide[p], w.new WideRole());
+        }
+    }
+
+    @Benchmark
+    public Object basecall_noargs() {
+        return BenchmarkHelper.performTest1(b);
+    }
+
+    @Benchmark
+    public int basecall_wide4() {
+        return callWide(4);
+    }
+
+    @Benchmark
+    public int basecall_wide12() {
+        return callWide(WideType.METHODS);
+    }
+
+    private int callWide(final int methods) {
+        int i = next;
+        next = i + 1 == 2 * methods ? 0 : i + 1;
+        return BenchmarkHelper.performWide(wide[i & 1], i >> 1, i);
+    }
+}
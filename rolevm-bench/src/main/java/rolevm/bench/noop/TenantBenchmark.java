@@ -0,0 +1,75 @@
+package rolevm.bench.noop;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import rolevm.bench.DefaultBenchmark;
+import rolevm.examples.noop.BaseType;
+import rolevm.examples.noop.BenchmarkHelper;
+import rolevm.examples.noop.NoopCompartment;
+
+/**
+ * Measures base calls on a player that is shared by several tenants, each of
+ * which has bound a role in its own compartment. All tenant compartments are
+ * inactive, and each thread activates the compartment of its tenant for the
+ * scope of each call, so that it only sees the role of its own tenant. The
+ * baseline is a call on a player with a single role of a globally active
+ * compartment.
+ * 
+ * @author Martin Morgenstern
+ */
+@Fork(jvmArgsAppend = { "@rolevm-bench/jvm.options" })
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(8)
+public class TenantBenchmark extends DefaultBenchmark {
+    @State(Scope.Benchmark)
+    public static class Shared {
+        BaseType tenantPlayer;
+        BaseType globalPlayer;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            tenantPlayer = new BaseType();
+            globalPlayer = new BaseType();
+            NoopCompartment global = new NoopCompartment();
+            global.bind(globalPlayer, global.new NoopRole());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Tenant {
+        NoopCompartment compartment;
+        Callable<Object> request;
+
+        @Setup(Level.Trial)
+        public void setup(Shared shared) {
+            compartment = new NoopCompartment();
+            compartment.deactivate();
+            compartment.bind(shared.tenantPlayer, compartment.new NoopRole());
+            final BaseType player = shared.tenantPlayer;
+            request = () -> BenchmarkHelper.performTest1(player);
+        }
+    }
+
+    @Benchmark
+    public Object scoped_tenant(Tenant tenant) throws Exception {
+        return tenant.compartment.callActivated(tenant.request);
+    }
+
+    @Benchmark
+    public Object global_compartment(Shared shared) {
+        return BenchmarkHelper.performTest1(shared.globalPlayer);
+    }
+}
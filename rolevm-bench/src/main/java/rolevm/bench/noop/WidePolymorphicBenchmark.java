@@ -0,0 +1,85 @@
+package rolevm.bench.noop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Stack;
+import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import rolevm.bench.DefaultBenchmark;
+import rolevm.examples.noop.BenchmarkHelper;
+import rolevm.examples.noop.NoopCompartment;
+
+/**
+ * Like {@link PureClassBenchmark}, but the call sites see a stable set of
+ * {@code receivers} pure list classes, i.e., they stay polymorphic as long as
+ * the depth of their inline caches ({@code rolevm.picDepth}) is not exceeded.
+ * The baseline is the same loop in this (not transformed) class.
+ *
+ * @author Martin Morgenstern
+ */
+@Fork(jvmArgsAppend = { "@rolevm-bench/jvm.options" })
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class WidePolymorphicBenchmark extends DefaultBenchmark {
+    @Param({ "1", "4", "8", "12" })
+    private int receivers;
+
+    private List<List<Integer>> lists;
+    private final List<Object> player = new LinkedList<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<Integer> elements = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            elements.add(i);
+        }
+        Stack<Integer> stack = new Stack<>();
+        stack.addAll(elements);
+        List<List<Integer>> all = List.of(new ArrayList<>(elements), new Vector<>(elements), stack,
+                new CopyOnWriteArrayList<>(elements), Arrays.asList(elements.toArray(new Integer[0])),
+                List.copyOf(elements), Collections.unmodifiableList(elements),
+                Collections.unmodifiableList(new LinkedList<>(elements)), Collections.synchronizedList(elements),
+                Collections.checkedList(elements, Integer.class), new ArrayList<>(elements).subList(0, 10),
+                List.copyOf(elements).subList(0, 10));
+        lists = all.subList(0, receivers);
+        NoopCompartment c = new NoopCompartment();
+        c.bind(player, c.new NoopRole());
+    }
+
+    @Benchmark
+    public int list_sum() {
+        int sum = 0;
+        for (List<Integer> list : lists) {
+            sum += BenchmarkHelper.sum(list);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int list_sum_baseline() {
+        int sum = 0;
+        for (List<Integer> list : lists) {
+            for (int i = 0; i < list.size(); i++) {
+                sum += list.get(i);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,86 @@
+package rolevm.bench.ops;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import rolevm.bench.DefaultBenchmark;
+import rolevm.transform.StandardBlacklist;
+import rolevm.transform.UserDefinedBlacklist;
+
+/**
+ * Measures the time to decide whether a class is excluded from transformation,
+ * per class of Guava, with a number of exclusion rules that do not match, so
+ * that all of them have to be considered. {@code linear} checks the rules as
+ * plain prefixes one after another, {@code compiled} uses the
+ * {@link UserDefinedBlacklist}, and {@code standard} only checks the
+ * {@link StandardBlacklist}.
+ *
+ * @author Martin Morgenstern
+ */
+@Fork(jvmArgsAppend = { "@rolevm-bench/jvm.options" })
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BlacklistBenchmark extends DefaultBenchmark {
+    /** The number of exclusion rules. */
+    @Param({ "10", "300" })
+    int rules;
+
+    StandardBlacklist standard = new StandardBlacklist();
+    UserDefinedBlacklist compiled;
+    String[] prefixes;
+    List<String> names = new ArrayList<>();
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, URISyntaxException {
+        WeavingBenchmark.loadCorpus("com/google/common/", names, new ArrayList<>());
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < rules; i++) {
+            list.add((i % 2 == 0 ? "com/google/common/excluded" : "org/example/pkg") + i + "/");
+        }
+        prefixes = list.toArray(new String[0]);
+        compiled = new UserDefinedBlacklist(list);
+    }
+
+    @Benchmark
+    public boolean linear() {
+        String name = nextName();
+        if (standard.isExcluded(name)) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        return compiled.isExcluded(nextName());
+    }
+
+    @Benchmark
+    public boolean standard() {
+        return standard.isExcluded(nextName());
+    }
+
+    private String nextName() {
+        int i = next;
+        next = i + 1 == names.size() ? 0 : i + 1;
+        return names.get(i);
+    }
+}
@@ -0,0 +1,74 @@
+package rolevm.bench.ops;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import rolevm.examples.noop.BaseType;
+import rolevm.examples.noop.NoopCompartment;
+import rolevm.examples.noop.NoopCompartment.NoopRole;
+
+/**
+ * Compares the setup of a domain with {@code N} players and three roles per
+ * player, using one {@code bind} call per role versus a single batch.
+ * 
+ * @author Martin Morgenstern
+ */
+@Fork(value = 5, jvmArgsAppend = { "@rolevm-bench/jvm.options" })
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class BulkBindingBenchmark {
+    private static final int ROLES_PER_PLAYER = 3;
+
+    @Param({ "1000", "100000" })
+    int N;
+
+    NoopCompartment noop;
+    BaseType[] players;
+    NoopRole[] roles;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        noop = new NoopCompartment();
+        players = new BaseType[N];
+        roles = new NoopRole[N * ROLES_PER_PLAYER];
+        for (int i = 0; i < N; i++) {
+            players[i] = new BaseType();
+        }
+        for (int i = 0; i < roles.length; i++) {
+            roles[i] = noop.new NoopRole();
+        }
+    }
+
+    @Benchmark
+    public NoopCompartment bind_individually() {
+        for (int i = 0; i < roles.length; i++) {
+            noop.bind(players[i / ROLES_PER_PLAYER], roles[i]);
+        }
+        return noop;
+    }
+
+    @Benchmark
+    public NoopCompartment bind_batch() {
+        noop.batch(tx -> {
+            for (int i = 0; i < roles.length; i++) {
+                tx.bind(players[i / ROLES_PER_PLAYER], roles[i]);
+            }
+        });
+        return noop;
+    }
+}
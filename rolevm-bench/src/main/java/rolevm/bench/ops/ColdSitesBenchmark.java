@@ -0,0 +1,89 @@
+package rolevm.bench.ops;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import rolevm.examples.noop.BaseType;
+import rolevm.examples.noop.NoopCompartment;
+
+/**
+ * Like {@link LinkingLatencyBenchmark}, but each of the {@code N} cold call
+ * sites is invoked {@code calls} times, alternately with a player and a pure
+ * object, which resembles the startup of a large application. The
+ * {@code tiered} variant dispatches cold call sites generically instead of
+ * linking them (see the {@code rolevm.tieredThreshold} property).
+ * 
+ * @author Martin Morgenstern
+ */
+@Fork(value = 5, jvmArgsAppend = { "@rolevm-bench/jvm.options" })
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class ColdSitesBenchmark {
+    private static final MethodType SITE_TYPE = methodType(Object.class, BaseType.class);
+
+    @Param({ "20000" })
+    int N;
+
+    @Param({ "1", "10" })
+    int calls;
+
+    MethodHandle bootstrap;
+    BaseType[] receivers;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        Class<?> bootstrapClass = Class.forName("rolevm.runtime.Bootstrap");
+        bootstrap = MethodHandles.publicLookup().findStatic(bootstrapClass, "defaultcall",
+                methodType(CallSite.class, Lookup.class, String.class, MethodType.class));
+        BaseType player = new BaseType();
+        NoopCompartment c = new NoopCompartment();
+        c.bind(player, c.new PassiveRole());
+        c.bind(player, c.new NoopRole());
+        receivers = new BaseType[] { player, new BaseType() };
+    }
+
+    @Benchmark
+    public void cold_sites(Blackhole bh) throws Throwable {
+        run(bh);
+    }
+
+    @Benchmark
+    @Fork(value = 5, jvmArgsAppend = { "@rolevm-bench/jvm.options", "-Drolevm.tieredThreshold=1000" })
+    public void cold_sites_tiered(Blackhole bh) throws Throwable {
+        run(bh);
+    }
+
+    private void run(Blackhole bh) throws Throwable {
+        Lookup lookup = MethodHandles.lookup();
+        for (int i = 0; i < N; i++) {
+            CallSite site = (CallSite) bootstrap.invokeExact(lookup, "noArgs", SITE_TYPE);
+            MethodHandle invoker = site.dynamicInvoker();
+            for (int j = 0; j < calls; j++) {
+                bh.consume((Object) invoker.invokeExact(receivers[j & 1]));
+            }
+        }
+    }
+}
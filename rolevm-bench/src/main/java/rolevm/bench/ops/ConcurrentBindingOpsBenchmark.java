@@ -0,0 +1,91 @@
+package rolevm.bench.ops;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+import rolevm.bench.DefaultBenchmark;
+import rolevm.examples.noop.BaseType;
+import rolevm.examples.noop.NoopCompartment;
+import rolevm.examples.noop.NoopCompartment.NoopRole;
+
+/**
+ * Measures the throughput of bind/unbind operations on thread-local players
+ * with an increasing number of threads. With a striped binder, the throughput
+ * should scale with the number of cores. Run with
+ * {@code -jvmArgsAppend -Drolevm.binderStripes=1} to compare with a binder that
+ * serializes all operations.
+ *
+ * @author Martin Morgenstern
+ */
+@Fork(jvmArgsAppend = { "@rolevm-bench/jvm.options" })
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConcurrentBindingOpsBenchmark extends DefaultBenchmark {
+    @State(Scope.Benchmark)
+    public static class SharedCompartment {
+        NoopCompartment noop;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            noop = new NoopCompartment();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadLocalPlayer {
+        BaseType base;
+        NoopRole role;
+
+        @Setup(Level.Iteration)
+        public void setup(SharedCompartment shared) {
+            base = new BaseType();
+            role = shared.noop.new NoopRole();
+        }
+    }
+
+    private static void bindUnbind(SharedCompartment shared, ThreadLocalPlayer local, Blackhole bh) {
+        bh.consume(shared.noop.bind(local.base, local.role));
+        bh.consume(shared.noop.unbind(local.base, local.role));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void bind_unbind_1_thread(SharedCompartment shared, ThreadLocalPlayer local, Blackhole bh) {
+        bindUnbind(shared, local, bh);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void bind_unbind_2_threads(SharedCompartment shared, ThreadLocalPlayer local, Blackhole bh) {
+        bindUnbind(shared, local, bh);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void bind_unbind_4_threads(SharedCompartment shared, ThreadLocalPlayer local, Blackhole bh) {
+        bindUnbind(shared, local, bh);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void bind_unbind_8_threads(SharedCompartment shared, ThreadLocalPlayer local, Blackhole bh) {
+        bindUnbind(shared, local, bh);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void bind_unbind_max_threads(SharedCompartment shared, ThreadLocalPlayer local, Blackhole bh) {
+        bindUnbind(shared, local, bh);
+    }
+}
@@ -0,0 +1,91 @@
+package rolevm.bench.ops;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import rolevm.examples.noop.BaseType;
+import rolevm.examples.noop.NoopCompartment;
+import rolevm.examples.noop.NoopCompartment.NoopRole;
+
+/**
+ * Measures the retained heap size of the binder per bound player, i.e., the
+ * heap growth caused by binding a single (shared) role to {@code N} distinct
+ * players, divided by {@code N}. The result is reported by the
+ * {@code bytesPerPlayer} counter; the time score is irrelevant. Since the
+ * binder is a global singleton whose maps never shrink, there is exactly one
+ * measured invocation per fork.
+ * 
+ * @author Martin Morgenstern
+ */
+@Fork(value = 1, jvmArgsAppend = { "@rolevm-bench/jvm.options", "-Xms8g", "-Xmx8g" })
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1, time = 1, timeUnit = TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class FootprintBenchmark {
+    @Param({ "100000", "1000000", "10000000" })
+    int N;
+
+    BaseType[] players;
+    NoopCompartment noop;
+    NoopRole role;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double bytesPerPlayer;
+    }
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        noop = new NoopCompartment();
+        role = noop.new NoopRole();
+        players = new BaseType[N];
+        for (int i = 0; i < N; i++) {
+            players[i] = new BaseType();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void teardown() {
+        for (int i = 0; i < N; i++) {
+            noop.unbind(players[i], role);
+        }
+        players = null;
+    }
+
+    @Benchmark
+    public void bind_N_players(Footprint footprint) {
+        final long before = usedHeap();
+        for (int i = 0; i < N; i++) {
+            noop.bind(players[i], role);
+        }
+        final long after = usedHeap();
+        footprint.bytesPerPlayer = (after - before) / (double) N;
+    }
+
+    private static long usedHeap() {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
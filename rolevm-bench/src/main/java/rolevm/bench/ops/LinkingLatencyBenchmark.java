@@ -0,0 +1,73 @@
+package rolevm.bench.ops;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import rolevm.examples.noop.BaseType;
+import rolevm.examples.noop.NoopCompartment;
+
+/**
+ * Measures the time-to-first-call of {@code N} distinct default call sites,
+ * i.e., the time to bootstrap, link and invoke each call site once, for a
+ * player with a role that has a role method for the called method and a role
+ * that does not. Call sites are created by calling the bootstrap method
+ * directly (via reflection, since the runtime is not on the compile-time
+ * classpath).
+ * 
+ * @author Martin Morgenstern
+ */
+@Fork(value = 5, jvmArgsAppend = { "@rolevm-bench/jvm.options" })
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class LinkingLatencyBenchmark {
+    private static final MethodType SITE_TYPE = methodType(Object.class, BaseType.class);
+
+    @Param({ "10000" })
+    int N;
+
+    MethodHandle bootstrap;
+    BaseType player;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        Class<?> bootstrapClass = Class.forName("rolevm.runtime.Bootstrap");
+        bootstrap = MethodHandles.publicLookup().findStatic(bootstrapClass, "defaultcall",
+                methodType(CallSite.class, Lookup.class, String.class, MethodType.class));
+        player = new BaseType();
+        NoopCompartment c = new NoopCompartment();
+        c.bind(player, c.new PassiveRole());
+        c.bind(player, c.new NoopRole());
+    }
+
+    @Benchmark
+    public void first_calls(Blackhole bh) throws Throwable {
+        Lookup lookup = MethodHandles.lookup();
+        for (int i = 0; i < N; i++) {
+            CallSite site = (CallSite) bootstrap.invokeExact(lookup, "noArgs", SITE_TYPE);
+            bh.consume((Object) site.dynamicInvoker().invokeExact(player));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package rolevm.bench.ops;
+
+import java.io.IOException;
+import java.lang.instrument.IllegalClassFormatException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import rolevm.transform.CachingTransformer;
+import rolevm.transform.DefaultTransformer;
+import rolevm.transform.StandardBlacklist;
+
+/**
+ * Measures the time to transform a large corpus of classes (all Guava classes),
+ * as during the startup of an application, without a cache, with an empty
+ * ({@code cold}) and with a populated ({@code warm}) {@link CachingTransformer}
+ * cache. The time to open the cache is included.
+ *
+ * @author Martin Morgenstern
+ */
+@Fork(value = 2, jvmArgsAppend = { "@rolevm-bench/jvm.options" })
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@State(Scope.Benchmark)
+public class TransformationCacheBenchmark {
+    /** Prefix of the classes in the jar file of Guava that are transformed. */
+    @Param({ "com/google/common/" })
+    String corpus;
+
+    List<String> classNames = new ArrayList<>();
+    List<byte[]> classFiles = new ArrayList<>();
+    Path warmDirectory;
+    Path coldDirectory;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, URISyntaxException, IllegalClassFormatException {
+        WeavingBenchmark.loadCorpus(corpus, classNames, classFiles);
+        warmDirectory = Files.createTempDirectory("rolevm-warm");
+        try (CachingTransformer transformer = createTransformer(warmDirectory)) {
+            transformAll(transformer, null);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createColdDirectory() throws IOException {
+        coldDirectory = Files.createTempDirectory("rolevm-cold");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteColdDirectory() throws IOException {
+        deleteRecursively(coldDirectory);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteWarmDirectory() throws IOException {
+        deleteRecursively(warmDirectory);
+    }
+
+    @Benchmark
+    public void uncached(Blackhole bh) throws IllegalClassFormatException {
+        transformAll(new DefaultTransformer(new StandardBlacklist()), bh);
+    }
+
+    @Benchmark
+    public void cold(Blackhole bh) throws IOException, IllegalClassFormatException {
+        try (CachingTransformer transformer = createTransformer(coldDirectory)) {
+            transformAll(transformer, bh);
+        }
+    }
+
+    @Benchmark
+    public void warm(Blackhole bh) throws IOException, IllegalClassFormatException {
+        try (CachingTransformer transformer = createTransformer(warmDirectory)) {
+            transformAll(transformer, bh);
+        }
+    }
+
+    private static CachingTransformer createTransformer(final Path directory) throws IOException {
+        return new CachingTransformer(new StandardBlacklist(), false, null, directory);
+    }
+
+    private void transformAll(final DefaultTransformer transformer, final Blackhole bh)
+            throws IllegalClassFormatException {
+        for (int i = 0; i < classFiles.size(); i++) {
+            byte[] result = transformer.transform(null, classNames.get(i), null, null, classFiles.get(i));
+            if (bh != null) {
+                bh.consume(result);
+            }
+        }
+    }
+
+    private static void deleteRecursively(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}
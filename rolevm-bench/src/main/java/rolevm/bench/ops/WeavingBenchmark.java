@@ -5,29 +5,58 @@ import static java.lang.ClassLoader.getSystemResourceAsStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.instrument.IllegalClassFormatException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 
+import com.google.common.collect.ImmutableList;
+
 import rolevm.bench.DefaultBenchmark;
 import rolevm.examples.bank.Bank;
 import rolevm.transform.DefaultTransformer;
 import rolevm.transform.StandardBlacklist;
 
+/**
+ * Measures the time to transform a single class ({@code transform_class}) and,
+ * per class, a realistic mix of classes ({@code transform_mix}), i.e., all
+ * classes of Guava, including interfaces, annotations, enums and data holders.
+ * The {@code no_prescan} variant parses all of them with ASM, instead of
+ * skipping the ones without call sites to rewrite after scanning their
+ * constant pool (see the {@code prescan} option of {@link DefaultTransformer}).
+ *
+ * @author Martin Morgenstern
+ */
 @Fork(jvmArgsAppend = { "@rolevm-bench/jvm.options" })
 @State(Scope.Benchmark)
 @OutputTimeUnit(TimeUnit.MICROSECONDS)
 public class WeavingBenchmark extends DefaultBenchmark {
+    /** Prefix of the classes in the jar file of Guava that are transformed. */
+    @Param({ "com/google/common/" })
+    String corpus;
+
     DefaultTransformer transformer = new DefaultTransformer(new StandardBlacklist());
+    DefaultTransformer unscanned = new DefaultTransformer(new StandardBlacklist(), false, null, false);
     Class<?> clazz;
     String className;
     byte[] classFile;
+    List<String> mixNames = new ArrayList<>();
+    List<byte[]> mixFiles = new ArrayList<>();
+    int next;
 
     @Setup(Level.Iteration)
     public void setup() throws IOException {
@@ -38,8 +67,50 @@ public class WeavingBenchmark extends DefaultBenchmark {
         }
     }
 
+    @Setup(Level.Trial)
+    public void loadMix() throws IOException, URISyntaxException {
+        loadCorpus(corpus, mixNames, mixFiles);
+    }
+
     @Benchmark
     public byte[] transform_class() throws IllegalClassFormatException {
         return transformer.transform(null, className, clazz, null, classFile);
     }
+
+    @Benchmark
+    public byte[] transform_mix() throws IllegalClassFormatException {
+        return transformNext(transformer);
+    }
+
+    @Benchmark
+    public byte[] transform_mix_no_prescan() throws IllegalClassFormatException {
+        return transformNext(unscanned);
+    }
+
+    private byte[] transformNext(final DefaultTransformer tfm) throws IllegalClassFormatException {
+        int i = next;
+        next = i + 1 == mixFiles.size() ? 0 : i + 1;
+        return tfm.transform(null, mixNames.get(i), null, null, mixFiles.get(i));
+    }
+
+    /**
+     * Loads the names and contents of the classes in the jar file of Guava whose
+     * names start with {@code prefix}.
+     */
+    static void loadCorpus(final String prefix, final List<String> names, final List<byte[]> files)
+            throws IOException, URISyntaxException {
+        Path jar = Paths.get(ImmutableList.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        try (JarFile file = new JarFile(jar.toFile())) {
+            for (Enumeration<JarEntry> entries = file.entries(); entries.hasMoreElements();) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (name.startsWith(prefix) && name.endsWith(".class")) {
+                    try (InputStream in = file.getInputStream(entry)) {
+                        names.add(name.substring(0, name.length() - ".class".length()));
+                        files.add(in.readAllBytes());
+                    }
+                }
+            }
+        }
+    }
 }
@@ -1,5 +1,7 @@
 package rolevm.examples.noop;
 
+import java.util.List;
+
 /**
  * Another level of indirection is needed because we exempt package rolevm.bench
  * from transformation.
@@ -18,4 +20,42 @@ public class BenchmarkHelper {
     public static int performTest3(BaseType b, int x, int y) {
         return b.primitiveArgsAndReturn(x, y);
     }
+
+    /** Calls the method {@code m<method>} of {@code b}, see {@link WideType}. */
+    public static int performWide(WideType b, int method, int x) {
+        switch (method) {
+        case 0:
+            return b.m0(x);
+        case 1:
+            return b.m1(x);
+        case 2:
+            return b.m2(x);
+        case 3:
+            return b.m3(x);
+        case 4:
+            return b.m4(x);
+        case 5:
+            return b.m5(x);
+        case 6:
+            return b.m6(x);
+        case 7:
+            return b.m7(x);
+        case 8:
+            return b.m8(x);
+        case 9:
+            return b.m9(x);
+        case 10:
+            return b.m10(x);
+        default:
+            return b.m11(x);
+        }
+    }
+
+    public static int sum(List<Integer> list) {
+        int sum = 0;
+        for (int i = 0; i < list.size(); i++) {
+            sum += list.get(i);
+        }
+        return sum;
+    }
 }
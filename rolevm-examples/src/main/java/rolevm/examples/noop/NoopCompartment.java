@@ -22,4 +22,8 @@ public class NoopCompartment extends Compartment {
             return (int) ctx.proceed().invoke(ctx, base, x, y);
         }
     }
+
+    /** A role without role methods, which never changes the behavior of its player. */
+    public @Role class PassiveRole {
+    }
 }
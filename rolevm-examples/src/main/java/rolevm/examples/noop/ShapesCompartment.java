@@ -0,0 +1,57 @@
+package rolevm.examples.noop;
+
+import rolevm.api.Compartment;
+import rolevm.api.DispatchContext;
+import rolevm.api.OverrideBase;
+import rolevm.api.Role;
+
+/**
+ * Provides several role types that override the same base method, so that
+ * players can be given many different role shapes for benchmarks.
+ */
+public class ShapesCompartment extends Compartment {
+    public @Role class RoleA {
+        @OverrideBase
+        public Object noArgs(DispatchContext ctx, BaseType base) throws Throwable {
+            return ctx.proceed().invoke(ctx, base);
+        }
+    }
+
+    public @Role class RoleB {
+        @OverrideBase
+        public Object noArgs(DispatchContext ctx, BaseType base) throws Throwable {
+            return ctx.proceed().invoke(ctx, base);
+        }
+    }
+
+    public @Role class RoleC {
+        @OverrideBase
+        public Object noArgs(DispatchContext ctx, BaseType base) throws Throwable {
+            return ctx.proceed().invoke(ctx, base);
+        }
+    }
+
+    public @Role class RoleD {
+        @OverrideBase
+        public Object noArgs(DispatchContext ctx, BaseType base) throws Throwable {
+            return ctx.proceed().invoke(ctx, base);
+        }
+    }
+
+    /**
+     * Returns a new role of the type with index {@code type} (modulo the
+     * number of role types).
+     */
+    public Object newRole(final int type) {
+        switch (type & 3) {
+        case 0:
+            return new RoleA();
+        case 1:
+            return new RoleB();
+        case 2:
+            return new RoleC();
+        default:
+            return new RoleD();
+        }
+    }
+}
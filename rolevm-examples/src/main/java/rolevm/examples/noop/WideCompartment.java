@@ -0,0 +1,78 @@
+package rolevm.examples.noop;
+
+import rolevm.api.Compartment;
+import rolevm.api.DispatchContext;
+import rolevm.api.OverrideBase;
+import rolevm.api.Role;
+
+/**
+ * Provides a role that overrides all methods of {@link WideType}, and a role
+ * without role methods.
+ */
+public class WideCompartment extends Compartment {
+    public @Role class WideRole {
+        @OverrideBase
+        public int m0(DispatchContext ctx, WideType base, int x) throws Throwable {
+            return (int) ctx.proceed().invoke(ctx, base, x);
+        }
+
+        @OverrideBase
+        public int m1(DispatchContext ctx, WideType base, int x) throws Throwable {
+            return (int) ctx.proceed().invoke(ctx, base, x);
+        }
+
+        @OverrideBase
+        public int m2(DispatchContext ctx, WideType base, int x) throws Throwable {
+            return (int) ctx.proceed().invoke(ctx, base, x);
+        }
+
+        @OverrideBase
+        public int m3(DispatchContext ctx, WideType base, int x) throws Throwable {
+            return (int) ctx.proceed().invoke(ctx, base, x);
+        }
+
+        @OverrideBase
+        public int m4(DispatchContext ctx, WideType base, int x) throws Throwable {
+            return (int) ctx.proceed().invoke(ctx, base, x);
+        }
+
+        @OverrideBase
+        public int m5(DispatchContext ctx, WideType base, int x) throws Throwable {
+            return (int) ctx.proceed().invoke(ctx, base, x);
+        }
+
+        @OverrideBase
+        public int m6(DispatchContext ctx, WideType base, int x) throws Throwable {
+            return (int) ctx.proceed().invoke(ctx, base, x);
+        }
+
+        @OverrideBase
+        public int m7(DispatchContext ctx, WideType base, int x) throws Throwable {
+            return (int) ctx.proceed().invoke(ctx, base, x);
+        }
+
+        @OverrideBase
+        public int m8(DispatchContext ctx, WideType base, int x) throws Throwable {
+            return (int) ctx.proceed().invoke(ctx, base, x);
+        }
+
+        @OverrideBase
+        public int m9(DispatchContext ctx, WideType base, int x) throws Throwable {
+            return (int) ctx.proceed().invoke(ctx, base, x);
+        }
+
+        @OverrideBase
+        public int m10(DispatchContext ctx, WideType base, int x) throws Throwable {
+            return (int) ctx.proceed().invoke(ctx, base, x);
+        }
+
+        @OverrideBase
+        public int m11(DispatchContext ctx, WideType base, int x) throws Throwable {
+            return (int) ctx.proceed().invoke(ctx, base, x);
+        }
+    }
+
+    /** A role without role methods, which never changes the behavior of its player. */
+    public @Role class PassiveRole {
+    }
+}
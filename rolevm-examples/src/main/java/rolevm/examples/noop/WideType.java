@@ -0,0 +1,58 @@
+package rolevm.examples.noop;
+
+/**
+ * A base type with many methods, so that benchmarks can call more distinct
+ * methods on the same player than per-context caches typically hold.
+ */
+public class WideType {
+    /** The number of methods {@code m0} to {@code m11}. */
+    public static final int METHODS = 12;
+
+    public int m0(int x) {
+        return x;
+    }
+
+    public int m1(int x) {
+        return x + 1;
+    }
+
+    public int m2(int x) {
+        return x + 2;
+    }
+
+    public int m3(int x) {
+        return x + 3;
+    }
+
+    public int m4(int x) {
+        return x + 4;
+    }
+
+    public int m5(int x) {
+        return x + 5;
+    }
+
+    public int m6(int x) {
+        return x + 6;
+    }
+
+    public int m7(int x) {
+        return x + 7;
+    }
+
+    public int m8(int x) {
+        return x + 8;
+    }
+
+    public int m9(int x) {
+        return x + 9;
+    }
+
+    public int m10(int x) {
+        return x + 10;
+    }
+
+    public int m11(int x) {
+        return x + 11;
+    }
+}
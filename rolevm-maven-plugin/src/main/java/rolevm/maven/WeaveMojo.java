@@ -0,0 +1,82 @@
+package rolevm.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import rolevm.transform.DefaultTransformer;
+import rolevm.transform.JarWeaver;
+import rolevm.transform.RoleMethodIndex;
+import rolevm.transform.StandardBlacklist;
+import rolevm.transform.UserDefinedBlacklist;
+
+/**
+ * The {@code weave} goal, which weaves the jar file of a project ahead of time
+ * using the {@link JarWeaver}, so that the woven jar can be run without the
+ * agent. It is bound to the {@code package} phase by default:
+ *
+ * <pre>
+ * &lt;plugin&gt;
+ *   &lt;groupId&gt;com.github.martinmo.rolevm&lt;/groupId&gt;
+ *   &lt;artifactId&gt;rolevm-maven-plugin&lt;/artifactId&gt;
+ *   &lt;executions&gt;
+ *     &lt;execution&gt;
+ *       &lt;goals&gt;&lt;goal&gt;weave&lt;/goal&gt;&lt;/goals&gt;
+ *     &lt;/execution&gt;
+ *   &lt;/executions&gt;
+ * &lt;/plugin&gt;
+ * </pre>
+ *
+ * The parameters are described in the plugin descriptor
+ * ({@code META-INF/maven/plugin.xml}), which is maintained by hand.
+ *
+ * @author Martin Morgenstern
+ */
+public class WeaveMojo extends AbstractMojo {
+    /** The jar file to weave. */
+    private File input;
+
+    /** The woven jar file. */
+    private File output;
+
+    /** Additional rules (like {@code rolevm.exclude}) for the classes that are woven. */
+    private List<String> excludes;
+
+    /** Optional {@link RoleMethodIndex} file. */
+    private File index;
+
+    /** Add a context field to player classes. */
+    private boolean contextField;
+
+    /** Number of weaving threads, or zero for the number of processors. */
+    private int parallelism;
+
+    /** Skip weaving. */
+    private boolean skip;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (skip) {
+            getLog().info("Skipping weaving");
+            return;
+        }
+        StandardBlacklist blacklist = excludes == null || excludes.isEmpty() ? new StandardBlacklist()
+                : new UserDefinedBlacklist(excludes);
+        ForkJoinPool pool = new ForkJoinPool(
+                parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        try {
+            DefaultTransformer transformer = new DefaultTransformer(blacklist, contextField,
+                    index != null ? RoleMethodIndex.read(index.toPath()) : null);
+            int woven = new JarWeaver(transformer, pool).weave(input.toPath(), output.toPath());
+            getLog().info("Woven " + woven + " classes into " + output);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Weaving failed: " + input, e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package rolevm.maven;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.maven.plugin.Mojo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import rolevm.transform.BootstrapConstants;
+
+/**
+ * Verifies the (filtered) plugin descriptor against {@link WeaveMojo}, and runs
+ * the mojo on a small jar file.
+ *
+ * @author Martin Morgenstern
+ */
+public class WeaveMojoTest {
+    private static final String CLASS_ENTRY = Fixture.class.getName().replace('.', '/') + ".class";
+
+    private Path in;
+    private Path out;
+
+    @Before
+    public void setUp() throws IOException {
+        in = Files.createTempFile("in", ".jar");
+        out = Files.createTempFile("out", ".jar");
+        Files.delete(out);
+        try (OutputStream os = Files.newOutputStream(in); JarOutputStream jar = new JarOutputStream(os);
+                InputStream classFile = getClass().getClassLoader().getResourceAsStream(CLASS_ENTRY)) {
+            jar.putNextEntry(new JarEntry(CLASS_ENTRY));
+            jar.write(classFile.readAllBytes());
+            jar.closeEntry();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.delete(in);
+        Files.deleteIfExists(out);
+    }
+
+    @Test
+    public void descriptorMatchesMojo() throws Exception {
+        Document document;
+        try (InputStream descriptor = getClass().getClassLoader().getResourceAsStream("META-INF/maven/plugin.xml")) {
+            assertNotNull(descriptor);
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(descriptor);
+        }
+        Element plugin = document.getDocumentElement();
+        assertEquals("com.github.martinmo.rolevm", text(plugin, "groupId"));
+        assertEquals("rolevm-maven-plugin", text(plugin, "artifactId"));
+        assertFalse(text(plugin, "version").contains("@"));
+        Element mojo = (Element) plugin.getElementsByTagName("mojo").item(0);
+        assertEquals("weave", text(mojo, "goal"));
+        Class<?> implementation = Class.forName(text(mojo, "implementation"));
+        assertEquals(WeaveMojo.class, implementation);
+        assertTrue(Mojo.class.isAssignableFrom(implementation));
+
+        Set<String> parameters = new HashSet<>();
+        NodeList list = mojo.getElementsByTagName("parameter");
+        for (int i = 0; i < list.getLength(); i++) {
+            Element parameter = (Element) list.item(i);
+            String name = text(parameter, "name");
+            Field field = WeaveMojo.class.getDeclaredField(name);
+            assertEquals(name, field.getType().getName(), text(parameter, "type"));
+            parameters.add(name);
+        }
+        for (Field field : WeaveMojo.class.getDeclaredFields()) {
+            assertTrue(field.getName(), parameters.contains(field.getName()));
+        }
+        NodeList configuration = ((Element) mojo.getElementsByTagName("configuration").item(0)).getChildNodes();
+        for (int i = 0; i < configuration.getLength(); i++) {
+            Node node = configuration.item(i);
+            if (node instanceof Element) {
+                Element element = (Element) node;
+                assertTrue(element.getTagName(), parameters.contains(element.getTagName()));
+                assertEquals("${rolevm." + element.getTagName() + "}", element.getTextContent());
+            }
+        }
+    }
+
+    @Test
+    public void execute() throws Exception {
+        WeaveMojo mojo = createMojo();
+        mojo.execute();
+        try (JarFile jar = new JarFile(out.toFile())) {
+            String woven = new String(jar.getInputStream(jar.getEntry(CLASS_ENTRY)).readAllBytes(),
+                    StandardCharsets.ISO_8859_1);
+            assertTrue(woven.contains(BootstrapConstants.BSM_CLASS));
+        }
+    }
+
+    @Test
+    public void executeWithExcludes() throws Exception {
+        WeaveMojo mojo = createMojo();
+        set(mojo, "excludes", List.of("rolevm/maven/"));
+        mojo.execute();
+        try (JarFile jar = new JarFile(out.toFile())) {
+            String copied = new String(jar.getInputStream(jar.getEntry(CLASS_ENTRY)).readAllBytes(),
+                    StandardCharsets.ISO_8859_1);
+            assertFalse(copied.contains(BootstrapConstants.BSM_CLASS));
+        }
+    }
+
+    @Test
+    public void skip() throws Exception {
+        WeaveMojo mojo = createMojo();
+        set(mojo, "skip", true);
+        mojo.execute();
+        assertFalse(Files.exists(out));
+    }
+
+    /** Creates the mojo like Maven does, i.e., by injecting the fields. */
+    private WeaveMojo createMojo() throws ReflectiveOperationException {
+        WeaveMojo mojo = new WeaveMojo();
+        set(mojo, "input", in.toFile());
+        set(mojo, "output", new File(out.toString()));
+        set(mojo, "parallelism", 1);
+        return mojo;
+    }
+
+    private static void set(final WeaveMojo mojo, final String name, final Object value)
+            throws ReflectiveOperationException {
+        Field field = WeaveMojo.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+
+    private static String text(final Element parent, final String name) {
+        return parent.getElementsByTagName(name).item(0).getTextContent();
+    }
+
+    /** The class to be woven in this test. */
+    public static class Fixture {
+        public int length(String s) {
+            return s.length();
+        }
+    }
+}
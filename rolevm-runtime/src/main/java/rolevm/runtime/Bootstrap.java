@@ -4,8 +4,10 @@ import static jdk.dynalink.StandardOperation.CALL;
 
 import java.lang.invoke.CallSite;
 import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
+import java.lang.invoke.SwitchPoint;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,10 +16,11 @@ import jdk.dynalink.CallSiteDescriptor;
 import jdk.dynalink.DynamicLinker;
 import jdk.dynalink.NamedOperation;
 import jdk.dynalink.Operation;
-import jdk.dynalink.support.ChainedCallSite;
 import rolevm.runtime.binder.BinderFactory;
 import rolevm.runtime.binder.CacheAwareBinder;
 import rolevm.runtime.dynalink.DynalinkLinkerBuilder;
+import rolevm.runtime.dynalink.JLOLinker;
+import rolevm.runtime.dynalink.ProfilingCallSite;
 import rolevm.runtime.proceed.ProceedInvocations;
 
 /**
@@ -39,14 +42,40 @@ public class Bootstrap {
     /** Factory for {@code proceed()} invocations. */
     private static final ProceedInvocations proceedFactory = new ProceedInvocations();
 
+    /** Generic tier for cold default call sites, or {@code null} if disabled. */
+    private static final GenericTier genericTier = initGenericTier();
+
     private static DynamicLinker initCompositeLinker() {
         return new DynalinkLinkerBuilder()//
                 .fromSystemProperties().withBinder(THE_BINDER).withGuardedQuery(THE_BINDER).build();
     }
 
-    /** Initializes default call sites. */
+    private static GenericTier initGenericTier() {
+        int threshold = Integer.getInteger(GenericTier.THRESHOLD_PROPERTY, 0);
+        return threshold > 0 ? new GenericTier(THE_BINDER.createGetContextHandle(), proceedFactory, threshold) : null;
+    }
+
+    /**
+     * Initializes default call sites. As long as no role has been bound, the call
+     * site invokes the base method directly (see {@link DeferredCallSite}). If the
+     * system property {@code rolevm.tieredThreshold} is positive, call sites are
+     * then dispatched generically until they have been invoked that many times
+     * (see {@link GenericTier}), instead of being linked on their first call.
+     */
     public static CallSite defaultcall(Lookup lookup, String name, MethodType type) {
-        return dynamicLinker.link(new ChainedCallSite(new CallSiteDescriptor(lookup, CALL.named(name), type)));
+        CallSiteDescriptor descriptor = new CallSiteDescriptor(lookup, CALL.named(name), type);
+        SwitchPoint noRoles = THE_BINDER.getNoRolesSwitchpoint();
+        MethodType lookupType = type.dropParameterTypes(0, 1);
+        GenericTier tier = JLOLinker.isObjectMethod(name, lookupType) ? null : genericTier;
+        if (tier != null || !noRoles.hasBeenInvalidated()) {
+            try {
+                MethodHandle direct = lookup.findVirtual(type.parameterType(0), name, lookupType);
+                return new DeferredCallSite(dynamicLinker, descriptor, noRoles, direct, tier);
+            } catch (ReflectiveOperationException e) {
+                // let the dynamic linker report the error on the first call
+            }
+        }
+        return dynamicLinker.link(new ProfilingCallSite(descriptor));
     }
 
     /** Initializes proceed call sites. */
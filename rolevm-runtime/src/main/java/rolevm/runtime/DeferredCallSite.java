@@ -0,0 +1,132 @@
+package rolevm.runtime;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.exactInvoker;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MutableCallSite;
+import java.lang.invoke.SwitchPoint;
+import java.util.Objects;
+
+import jdk.dynalink.CallSiteDescriptor;
+import jdk.dynalink.DynamicLinker;
+import rolevm.runtime.dynalink.ProfilingCallSite;
+
+/**
+ * Default call site that invokes the base method directly until the first role
+ * is bound, i.e., until the {@linkplain GuardedQuery#getNoRolesSwitchpoint() no
+ * roles switchpoint} is invalidated. Only then, the call site is linked by the
+ * dynamic linker, on the next call. Before that, neither a Dynalink call site is
+ * created nor the binder is consulted, so an application that never binds a role
+ * (or has not bound a role yet) runs at the speed of the untransformed code.
+ * <p>
+ * If a {@link GenericTier} is given, the call site is not linked immediately,
+ * but dispatches generically until it has been invoked
+ * {@linkplain GenericTier#threshold() threshold} times, so that cold call sites
+ * are never linked at all.
+ *
+ * @author Martin Morgenstern
+ */
+class DeferredCallSite extends MutableCallSite {
+    private static final MethodHandle LINK;
+    private static final MethodHandle COUNT;
+
+    static {
+        Lookup lookup = MethodHandles.lookup();
+        try {
+            LINK = lookup.findVirtual(DeferredCallSite.class, "link", methodType(MethodHandle.class));
+            COUNT = lookup.findVirtual(DeferredCallSite.class, "count", methodType(void.class));
+        } catch (ReflectiveOperationException e) {
+            throw (AssertionError) new AssertionError().initCause(e);
+        }
+    }
+
+    private final DynamicLinker linker;
+    private final CallSiteDescriptor descriptor;
+    private final MethodHandle direct;
+    private final GenericTier tier;
+
+    /** The handle of the current tier, if any (guarded by {@code this}). */
+    private MethodHandle current;
+    private boolean linked;
+
+    /** Calls in the generic tier (updated racily). */
+    private int calls;
+
+    /**
+     * Creates a call site that invokes {@code direct} while {@code noRoles} is
+     * valid, and links itself with {@code linker} afterwards.
+     */
+    DeferredCallSite(final DynamicLinker linker, final CallSiteDescriptor descriptor, final SwitchPoint noRoles,
+            final MethodHandle direct) {
+        this(linker, descriptor, noRoles, direct, null);
+    }
+
+    /**
+     * Like {@link #DeferredCallSite(DynamicLinker, CallSiteDescriptor, SwitchPoint, MethodHandle)},
+     * but with a generic tier in between, unless {@code tier} is {@code null}.
+     */
+    DeferredCallSite(final DynamicLinker linker, final CallSiteDescriptor descriptor, final SwitchPoint noRoles,
+            final MethodHandle direct, final GenericTier tier) {
+        super(descriptor.getMethodType());
+        this.linker = Objects.requireNonNull(linker);
+        this.descriptor = descriptor;
+        this.direct = direct.asType(type());
+        this.tier = tier;
+        if (tier != null && noRoles.hasBeenInvalidated()) {
+            enterGenericTier();
+        } else {
+            MethodHandle linkAndInvoke = foldArguments(exactInvoker(type()), LINK.bindTo(this));
+            setTarget(noRoles.guardWithTest(this.direct, linkAndInvoke));
+        }
+    }
+
+    /** Returns {@code true} if this call site has been linked by the dynamic linker. */
+    synchronized boolean isLinked() {
+        return linked;
+    }
+
+    /** Returns {@code true} if this call site currently dispatches generically. */
+    synchronized boolean isGeneric() {
+        return current != null && !linked;
+    }
+
+    /** Leaves the initial tier. */
+    @SuppressWarnings("unused")
+    private synchronized MethodHandle link() {
+        if (current == null) {
+            if (tier != null) {
+                enterGenericTier();
+            } else {
+                specialize();
+            }
+        }
+        return current;
+    }
+
+    private synchronized void enterGenericTier() {
+        MethodHandle counter = dropArguments(COUNT.bindTo(this), 0, type().parameterList());
+        current = foldArguments(tier.invocation(descriptor, direct), counter);
+        setTarget(current);
+    }
+
+    @SuppressWarnings("unused")
+    private void count() {
+        if (++calls == tier.threshold()) {
+            specialize();
+        }
+    }
+
+    /** Links this call site with the dynamic linker. */
+    private synchronized void specialize() {
+        if (!linked) {
+            linked = true;
+            current = linker.link(new ProfilingCallSite(descriptor)).dynamicInvoker();
+            setTarget(current);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package rolevm.runtime;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodType.methodType;
+import static rolevm.runtime.Bootstrap.unwrapMethodName;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jdk.dynalink.CallSiteDescriptor;
+import rolevm.api.DispatchContext;
+import rolevm.runtime.proceed.ProceedInvocations;
+
+/**
+ * Generic role method dispatch for the first tier of
+ * {@linkplain DeferredCallSite deferred call sites}, which is used for cold
+ * call sites instead of linking them with the dynamic linker. It requires a
+ * hash map lookup on each call, but it is cheap to set up: pure players invoke
+ * the base method directly, other players are dispatched through a
+ * {@code proceed} invocation, whose nested call site is only linked when the
+ * first player with roles is encountered. Once a call site has been invoked
+ * {@code threshold} times, it is linked by the dynamic linker, like any other
+ * call site.
+ *
+ * @author Martin Morgenstern
+ */
+class GenericTier {
+    /** The system property that configures the threshold (disabled by default). */
+    static final String THRESHOLD_PROPERTY = "rolevm.tieredThreshold";
+
+    private static final MethodHandle IS_END;
+
+    static {
+        try {
+            IS_END = MethodHandles.lookup().findStatic(GenericTier.class, "isEnd",
+                    methodType(boolean.class, DispatchContext.class));
+        } catch (ReflectiveOperationException e) {
+            throw (AssertionError) new AssertionError().initCause(e);
+        }
+    }
+
+    private final MethodHandle getContext;
+    private final ProceedInvocations factory;
+    private final int threshold;
+
+    /**
+     * Generic invocations, which are shared by call sites with equal descriptors.
+     * They are stored per caller class (descriptors hold the lookup of their
+     * caller), so that they do not keep caller classes and their class loaders
+     * reachable.
+     */
+    private final ClassValue<Map<CallSiteDescriptor, MethodHandle>> invocations = new ClassValue<>() {
+        @Override
+        protected Map<CallSiteDescriptor, MethodHandle> computeValue(final Class<?> callerClass) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    /**
+     * Creates a generic tier that uses {@code getContext} (see
+     * {@link Binder#createGetContextHandle()}) to find the roles of a player.
+     */
+    GenericTier(final MethodHandle getContext, final ProceedInvocations factory, final int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        }
+        this.getContext = Objects.requireNonNull(getContext);
+        this.factory = Objects.requireNonNull(factory);
+        this.threshold = threshold;
+    }
+
+    /** Returns the number of calls after which a call site leaves this tier. */
+    int threshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns a handle of the call site type that dispatches generically, where
+     * {@code direct} is the base method of the call site.
+     */
+    MethodHandle invocation(final CallSiteDescriptor descriptor, final MethodHandle direct) {
+        return invocations.get(descriptor.getLookup().lookupClass()).computeIfAbsent(descriptor,
+                d -> createInvocation(d, direct));
+    }
+
+    private MethodHandle createInvocation(final CallSiteDescriptor descriptor, final MethodHandle direct) {
+        MethodType type = descriptor.getMethodType();
+        MethodHandle proceed = factory.getInvocation(descriptor.getLookup(), unwrapMethodName(descriptor),
+                type.insertParameterTypes(0, DispatchContext.class)).getHandle();
+        MethodHandle dispatch = guardWithTest(IS_END, dropArguments(direct.asType(type), 0, DispatchContext.class),
+                proceed);
+        return foldArguments(dispatch, getContext.asType(methodType(DispatchContext.class, type.parameterType(0))));
+    }
+
+    @SuppressWarnings("unused")
+    private static boolean isEnd(final DispatchContext context) {
+        return context == DispatchContext.END;
+    }
+}
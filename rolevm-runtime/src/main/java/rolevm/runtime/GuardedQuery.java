@@ -1,5 +1,7 @@
 package rolevm.runtime;
 
+import java.lang.invoke.MethodType;
+import java.lang.invoke.SwitchPoint;
 import java.util.Optional;
 
 import rolevm.api.DispatchContext;
@@ -17,6 +19,29 @@ public interface GuardedQuery {
      */
     GuardedValue<Boolean> getGuardedIsPureType(Class<?> type);
 
+    /**
+     * Returns {@code true} as a guarded value if no role that has been bound to a
+     * live player of {@code type} (or a subtype) declares a role method for the
+     * base method with the given name and type (excluding the receiver). The
+     * switchpoint is invalidated as soon as such a role is bound.
+     */
+    GuardedValue<Boolean> getGuardedIsPureMethod(Class<?> type, String name, MethodType methodType);
+
+    /**
+     * Returns a switchpoint that is invalidated as soon as {@code type} becomes
+     * pure again, i.e., when the last player of this type is unbound or garbage
+     * collected. Call sites that have been linked for an impure type can use it to
+     * get relinked onto a path that is specialized for pure types.
+     */
+    SwitchPoint getRevalidationSwitchpoint(Class<?> type);
+
+    /**
+     * Returns a switchpoint that is invalidated as soon as the first role is
+     * bound. Until then, all types are pure, so call sites can invoke their
+     * methods directly, without being linked at all.
+     */
+    SwitchPoint getNoRolesSwitchpoint();
+
     /**
      * Returns the result of {@link Binder#getDispatchContext(Object)} as a guarded
      * value.
@@ -0,0 +1,150 @@
+package rolevm.runtime;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import rolevm.api.DispatchContext;
+
+/**
+ * Describes the base methods that a role type (including its supertypes)
+ * declares role methods for. A role method has the same name as the base
+ * method, and its parameter list starts with a {@link DispatchContext} and the
+ * base object, followed by the parameters of the base method. The descriptions
+ * are computed once per role type with reflection, so that linkers can look up
+ * role methods without resorting to {@link NoSuchMethodException}s for roles
+ * that do not have a particular role method.
+ * 
+ * @author Martin Morgenstern
+ */
+public final class RoleMethods {
+    private static final ClassValue<RoleMethods> TABLES = new ClassValue<>() {
+        @Override
+        protected RoleMethods computeValue(final Class<?> roleType) {
+            return new RoleMethods(roleType);
+        }
+    };
+
+    private final Class<?> roleType;
+
+    /** Role methods by name and type (excluding the receiver). */
+    private final Map<Signature, Method> methods = new HashMap<>();
+
+    /** Signatures of the base methods, see {@link #signatures()}. */
+    private final Set<Signature> signatures;
+
+    private RoleMethods(final Class<?> roleType) {
+        this.roleType = roleType;
+        collect(roleType, true);
+        Set<Signature> result = new HashSet<>();
+        for (Method m : methods.values()) {
+            Class<?>[] params = m.getParameterTypes();
+            result.add(new Signature(m.getName(),
+                    methodType(m.getReturnType(), Arrays.copyOfRange(params, 2, params.length))));
+        }
+        signatures = Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Adds the role methods of {@code type} and its supertypes, unless they are
+     * overridden by methods that have already been added. Private methods are
+     * only added for the role type itself, since they are not inherited.
+     */
+    private void collect(final Class<?> type, final boolean includePrivate) {
+        if (type == null || type == Object.class) {
+            return;
+        }
+        for (Method m : type.getDeclaredMethods()) {
+            Class<?>[] params = m.getParameterTypes();
+            int modifiers = m.getModifiers();
+            if (!Modifier.isStatic(modifiers) && (includePrivate || !Modifier.isPrivate(modifiers))
+                    && params.length >= 2 && params[0] == DispatchContext.class) {
+                methods.putIfAbsent(new Signature(m.getName(), methodType(m.getReturnType(), params)), m);
+            }
+        }
+        collect(type.getSuperclass(), false);
+        for (Class<?> iface : type.getInterfaces()) {
+            collect(iface, false);
+        }
+    }
+
+    /** Returns the (cached) role methods of the given role type. */
+    public static RoleMethods of(final Class<?> roleType) {
+        return TABLES.get(roleType);
+    }
+
+    /** Returns the signatures of the base methods that have role methods. */
+    public Set<Signature> signatures() {
+        return signatures;
+    }
+
+    /**
+     * Returns a handle to the role method with the given name and type (excluding
+     * the receiver), like {@link Lookup#findVirtual(Class, String, MethodType)},
+     * or {@code null} if there is no such role method.
+     * 
+     * @throws IllegalAccessException
+     *             if the role method is not accessible from {@code lookup}
+     */
+    public MethodHandle find(final Lookup lookup, final String name, final MethodType type)
+            throws IllegalAccessException {
+        if (!methods.containsKey(new Signature(name, type))) {
+            return null;
+        }
+        try {
+            // not unreflect(), which checks access to the declaring class
+            return lookup.findVirtual(roleType, name, type);
+        } catch (NoSuchMethodException e) {
+            throw (AssertionError) new AssertionError().initCause(e);
+        }
+    }
+
+    /** Returns {@code true} if there is a role method for the given base method. */
+    public boolean declares(final Signature signature) {
+        return signatures.contains(signature);
+    }
+
+    /**
+     * Name and type of a base method, where the type does not include the
+     * receiver.
+     */
+    public static final class Signature {
+        private final String name;
+        private final MethodType type;
+
+        public Signature(final String name, final MethodType type) {
+            this.name = Objects.requireNonNull(name);
+            this.type = Objects.requireNonNull(type);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + type.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (o instanceof Signature) {
+                Signature other = (Signature) o;
+                return name.equals(other.name) && type.equals(other.type);
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return name + type;
+        }
+    }
+}
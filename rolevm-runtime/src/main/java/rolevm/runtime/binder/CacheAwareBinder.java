@@ -1,10 +1,12 @@
 package rolevm.runtime.binder;
 
+import static java.lang.invoke.MethodHandles.filterReturnValue;
 import static java.lang.invoke.MethodHandles.insertArguments;
 import static java.lang.invoke.MethodHandles.lookup;
 import static java.lang.invoke.MethodType.methodType;
 
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
 import java.lang.invoke.SwitchPoint;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -15,90 +17,180 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
+import rolevm.api.BindingTransaction;
+import rolevm.api.Compartment;
 import rolevm.api.DispatchContext;
 import rolevm.runtime.Binder;
 import rolevm.runtime.GuardedQuery;
 import rolevm.runtime.GuardedValue;
+import rolevm.runtime.RoleMethods;
+import rolevm.runtime.RoleMethods.Signature;
 import rolevm.runtime.TypeChecks;
 
 /**
  * This class implements a thread-safe, memleak-free object/role mapping that is
  * agnostic of call site inline caching using {@link SwitchPoint}s.
+ * <p>
+ * Modifications are serialized per player only: players are partitioned into a
+ * fixed number of lock stripes by their identity hash code, so that binding
+ * operations on unrelated players can proceed in parallel. Queries never take a
+ * lock. All switchpoints that are affected by a modification are invalidated
+ * with a single call to {@link SwitchPoint#invalidateAll(SwitchPoint[])}, which
+ * is also true for a whole {@link #batch(Compartment, Consumer) batch} of modifications.
  * 
  * @author Martin Morgenstern
  */
 public class CacheAwareBinder implements Binder, GuardedQuery {
-    /** Lock object used to guard bind/unbind operations. */
-    private final Object lock = new Object();
+    private static final String STRIPES_PROPERTY = "rolevm.binderStripes";
 
     /**
-     * Saves roles of an object in a canonical mapping. Whenever this map is
-     * updated, the corresponding cached entry in {@link #contexts} must be updated
-     * as well.
+     * Lock stripes used to guard bind/unbind operations. The length of this array
+     * is always a power of two.
+     * 
+     * @implNote We use {@link ReentrantLock}s instead of monitors, so that virtual
+     *           threads are not pinned to their carrier while binding roles.
      */
-    private final Map<Object, List<Object>> registry = createMap();
+    private final ReentrantLock[] locks;
 
     /**
-     * Alternative, cached representation of {@link #registry} in form of a mapping
-     * to {@link DispatchContext}s. The dispatch context must be recomputed whenever
-     * the corresponding map entry in {@link #registry} changes.
+     * Saves the roles of an object in a canonical mapping, in form of an immutable
+     * {@link PlayerEntry} that holds the {@link DispatchContext} of the player
+     * along with its context switchpoint. Whenever an entry is replaced or
+     * removed, the switchpoint of the old entry must be invalidated.
+     * 
+     * @see #getGuardedDispatchContext(Object)
      */
-    private final Map<Object, DispatchContext> contexts = createMap();
+    private final Map<Object, PlayerEntry> players;
 
     /**
-     * A map that maintains switchpoints to support invalidation instance level
-     * switchpoints. When the {@link #contexts} (and {@link #registry}) maps are
-     * modified, the corresponding context switchpoint must be invalidated and
-     * replaced with a new one which is valid until the next modification.
-     * 
-     * @see #getGuardedDispatchContext(Object)
+     * Removes the entries of garbage collected players in the background, or
+     * {@code null} if the {@link #players} map does this by itself.
      */
-    private final Map<Object, SwitchPoint> contextSwitchpoints = createMap();
+    private final Reaper reaper;
 
     /** Lazily computed mapping of supertypes for a given type. */
     private final ClassValue<Set<Class<?>>> supertypes = new Supertypes();
 
     /**
-     * A mapping that maintains type level switch points.
+     * A mapping that maintains the number of live players and the type level
+     * switchpoints for each type.
      * 
+     * @see #isPureType(Class)
      * @see #getGuardedIsPureType(Class)
+     * @see #getRevalidationSwitchpoint(Class)
      */
-    private final ClassValue<SwitchPoint> typeSwitchpoints = new TypeSwitchpoints();
+    private final ClassValue<TypeState> types = new TypeStates();
+
+    /**
+     * Invalidated when the first player is registered.
+     * 
+     * @see #getNoRolesSwitchpoint()
+     */
+    private final SwitchPoint noRolesSwitchpoint = new SwitchPoint();
+
+    /**
+     * Creates a binder with the number of lock stripes given by the system
+     * property {@code rolevm.binderStripes}, or four stripes per available
+     * processor by default. If the system property {@code rolevm.reaper} is
+     * {@code true}, a background {@link Reaper} is started for this binder.
+     */
+    public CacheAwareBinder() {
+        this(Integer.getInteger(STRIPES_PROPERTY, 4 * Runtime.getRuntime().availableProcessors()),
+                Reaper.fromSystemProperties());
+        if (reaper != null) {
+            reaper.start();
+        }
+    }
+
+    /**
+     * Creates a binder with (at least) the given number of lock stripes, which is
+     * rounded up to the next power of two. A binder with a single stripe
+     * serializes all bind/unbind operations.
+     */
+    public CacheAwareBinder(final int stripes) {
+        this(stripes, null);
+    }
+
+    /**
+     * Creates a binder with the given number of lock stripes, whose stale entries
+     * are removed by {@code reaper} (unless it is {@code null}), which must be
+     * started separately.
+     */
+    CacheAwareBinder(final int stripes, final Reaper reaper) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        }
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        locks = new ReentrantLock[size];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.reaper = reaper;
+        players = createMap(this::expunged, reaper);
+    }
 
     /**
      * Allows the user to select another {@link Map} implementation via the system
      * property {@code rolevm.map}, for demonstration purposes. Available map
-     * implementations are {@link IdentityHashMap} and {@link ConcurrentWeakHashMap}
-     * (the default).
+     * implementations are {@link IdentityHashMap}, {@link IdentityWeakHashMap}
+     * (both are not thread-safe), {@link ConcurrentIdentityWeakHashMap} and
+     * {@link ConcurrentWeakHashMap} (the default). Weak maps notify
+     * {@code expungeListener} about entries that are removed because their key
+     * has been garbage collected. The concurrent maps leave this to the given
+     * {@code reaper}, if any. If the system property {@code rolevm.contextField}
+     * is {@code true}, the selected map is only used for players without a
+     * context field (see {@link ContextFieldMap}).
      */
-    private static <K, V> Map<K, V> createMap() {
-        String implementation = System.getProperty("rolevm.map");
+    private static <K, V> Map<K, V> createMap(final Consumer<? super V> expungeListener, final Reaper reaper) {
+        final Map<K, V> map = createMap(System.getProperty("rolevm.map"), expungeListener, reaper);
+        if (Boolean.getBoolean("rolevm.contextField")) {
+            return new ContextFieldMap<>(map, expungeListener, reaper);
+        }
+        return map;
+    }
+
+    private static <K, V> Map<K, V> createMap(final String implementation,
+            final Consumer<? super V> expungeListener, final Reaper reaper) {
         if ("IdentityHashMap".equalsIgnoreCase(implementation)) {
             return new IdentityHashMap<>();
         }
-        return new ConcurrentWeakHashMap<>();
+        if ("IdentityWeakHashMap".equalsIgnoreCase(implementation)) {
+            return new IdentityWeakHashMap<>(expungeListener);
+        }
+        if ("ConcurrentIdentityWeakHashMap".equalsIgnoreCase(implementation)) {
+            return new ConcurrentIdentityWeakHashMap<>(expungeListener, reaper);
+        }
+        return new ConcurrentWeakHashMap<>(expungeListener, reaper);
     }
 
     @Override
-    public void bind(final Object player, final Object role) {
-        Objects.requireNonNull(player);
-        Objects.requireNonNull(role);
-        if (player == role) {
-            throw new IllegalArgumentException("player and role must be distinct objects");
-        }
-        TypeChecks.validateRoleType(role.getClass());
-        TypeChecks.validatePlayer(player);
-        synchronized (lock) {
-            List<Object> currentRoles = registry.get(player);
-            if (currentRoles == null) {
-                currentRoles = new ArrayList<>();
+    public void bind(final Compartment compartment, final Object player, final Object role) {
+        validateBinding(player, role);
+        final List<SwitchPoint> invalidated = new ArrayList<>();
+        final ReentrantLock lock = lockFor(player);
+        lock.lock();
+        try {
+            final PlayerEntry entry = players.get(player);
+            final boolean wasPure = entry == null || entry.isPure();
+            final DispatchContext context = wasPure ? DispatchContext.END : entry.context;
+            final PlayerEntry newEntry = new PlayerEntry(player.getClass(), context.append(role, compartment));
+            if (wasPure) {
+                addPlayer(player.getClass(), invalidated);
             }
-            currentRoles.add(role);
-            registry.put(player, currentRoles);
-            contexts.put(player, DispatchContext.of(currentRoles));
-            invalidateType(player.getClass());
-            updateContextSwitchpoint(player);
+            addRoleMethods(player.getClass(), role.getClass(), invalidated);
+            // the old entry may have been added concurrently by a query
+            collect(players.put(player, newEntry), invalidated);
+        } finally {
+            lock.unlock();
+            invalidateAll(invalidated);
         }
     }
 
@@ -106,110 +198,438 @@ public class CacheAwareBinder implements Binder, GuardedQuery {
     public void unbind(final Object player, final Object role) {
         Objects.requireNonNull(player);
         Objects.requireNonNull(role);
-        synchronized (lock) {
-            List<Object> currentRoles = registry.get(player);
-            if (currentRoles != null && currentRoles.remove(role)) {
-                if (currentRoles.isEmpty()) {
-                    registry.remove(player);
-                    contexts.remove(player);
-                } else {
-                    contexts.put(player, DispatchContext.of(currentRoles));
+        final List<SwitchPoint> invalidated = new ArrayList<>();
+        final ReentrantLock lock = lockFor(player);
+        lock.lock();
+        try {
+            final PlayerEntry entry = players.get(player);
+            if (entry == null || entry.isPure()) {
+                return;
+            }
+            final DispatchContext context = entry.context.remove(role);
+            if (context == DispatchContext.END) {
+                collect(players.remove(player), invalidated);
+                removePlayer(entry.playerType, invalidated);
+            } else if (context != entry.context) {
+                collect(players.put(player, new PlayerEntry(entry.playerType, context)), invalidated);
+            }
+        } finally {
+            lock.unlock();
+            invalidateAll(invalidated);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @implNote The operations are recorded and validated first. Then, the lock
+     *           stripes of all affected players are acquired in ascending order,
+     *           so that concurrent batches cannot deadlock, and the changes are
+     *           applied per player: players that gain their first role are
+     *           registered before any player is deregistered, so that a shared
+     *           supertype does not become pure in between. The old switchpoints
+     *           are invalidated after all entries have been replaced.
+     */
+    @Override
+    public void batch(final Compartment compartment, final Consumer<? super BindingTransaction> changes) {
+        Objects.requireNonNull(changes);
+        final Transaction transaction = new Transaction(compartment);
+        try {
+            changes.accept(transaction);
+        } finally {
+            transaction.closed = true;
+        }
+        if (!transaction.operations.isEmpty()) {
+            apply(transaction.operations);
+        }
+    }
+
+    /** Atomically applies the recorded operations of a transaction. */
+    private void apply(final List<Operation> operations) {
+        final int[] stripes = operations.stream().mapToInt(op -> stripeOf(op.player)).distinct().sorted()
+                .toArray();
+        final List<SwitchPoint> invalidated = new ArrayList<>();
+        int locked = 0;
+        try {
+            for (; locked < stripes.length; locked++) {
+                locks[stripes[locked]].lock();
+            }
+            final Map<Object, PlayerChange> changed = new IdentityHashMap<>();
+            for (final Operation op : operations) {
+                changed.computeIfAbsent(op.player, player -> new PlayerChange(players.get(player))).apply(op);
+            }
+            for (final Map.Entry<Object, PlayerChange> e : changed.entrySet()) {
+                final PlayerChange change = e.getValue();
+                if (change.modified && !change.roles.isEmpty()) {
+                    final Class<?> playerType = e.getKey().getClass();
+                    if (change.wasPure()) {
+                        addPlayer(playerType, invalidated);
+                    }
+                    for (final Object role : change.roles) {
+                        addRoleMethods(playerType, role.getClass(), invalidated);
+                    }
+                    final PlayerEntry newEntry = new PlayerEntry(playerType,
+                            DispatchContext.of(change.roles, change.compartments));
+                    collect(players.put(e.getKey(), newEntry), invalidated);
                 }
-                updateContextSwitchpoint(player);
             }
+            for (final Map.Entry<Object, PlayerChange> e : changed.entrySet()) {
+                final PlayerChange change = e.getValue();
+                if (change.modified && change.roles.isEmpty() && !change.wasPure()) {
+                    collect(players.remove(e.getKey()), invalidated);
+                    removePlayer(change.entry.playerType, invalidated);
+                }
+            }
+        } finally {
+            while (locked > 0) {
+                locks[stripes[--locked]].unlock();
+            }
+            invalidateAll(invalidated);
         }
     }
 
     @Override
     public List<Object> getRoles(final Object player) {
-        return registry.getOrDefault(player, List.of());
+        final PlayerEntry entry = players.get(player);
+        return entry != null ? Collections.unmodifiableList(rolesOf(entry.context)) : List.of();
     }
 
     @Override
     public Optional<DispatchContext> getDispatchContext(final Object player) {
-        return Optional.ofNullable(contexts.get(player));
+        final PlayerEntry entry = players.get(player);
+        return entry == null || entry.isPure() ? Optional.empty() : Optional.of(entry.context);
     }
 
     @Override
     public boolean isPureObject(final Object player) {
-        return !contexts.containsKey(player);
+        final PlayerEntry entry = players.get(player);
+        return entry == null || entry.isPure();
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * @implNote This is a constant time operation, because the binder maintains
+     *           the number of live players per type.
+     */
     @Override
     public boolean isPureType(final Class<?> type) {
         Objects.requireNonNull(type);
-        for (final Object player : contexts.keySet()) {
-            // player could be GC'ed during iteration
-            if (player != null && type.isAssignableFrom(player.getClass())) {
-                return false;
-            }
-        }
-        return true;
+        expungeStaleEntries();
+        return types.get(type).isPure();
     }
 
     @Override
     public MethodHandle createGetContextHandle() {
         try {
-            MethodHandle getOrDefault = lookup().bind(contexts, "getOrDefault",
+            MethodHandle getOrDefault = lookup().bind(players, "getOrDefault",
                     methodType(Object.class, Object.class, Object.class));
-            getOrDefault = insertArguments(getOrDefault, 1, DispatchContext.END);
-            return getOrDefault.asType(methodType(DispatchContext.class, Object.class));
+            getOrDefault = insertArguments(getOrDefault, 1, PlayerEntry.PURE);
+            getOrDefault = getOrDefault.asType(methodType(PlayerEntry.class, Object.class));
+            return filterReturnValue(getOrDefault,
+                    lookup().findGetter(PlayerEntry.class, "context", DispatchContext.class));
         } catch (ReflectiveOperationException e) {
             throw (AssertionError) new AssertionError().initCause(e);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * @implNote This method is lock-free. The context and its switchpoint are read
+     *           together from one immutable entry, and modifications invalidate the
+     *           switchpoint of an entry only after they have replaced it. For pure
+     *           players, an entry without roles is added, so that the returned
+     *           switchpoint is invalidated by the next modification.
+     */
     @Override
     public GuardedValue<Optional<DispatchContext>> getGuardedDispatchContext(final Object player) {
-        synchronized (lock) {
-            SwitchPoint switchpoint = contextSwitchpoints.get(player);
-            if (switchpoint == null) {
-                switchpoint = new SwitchPoint();
-                contextSwitchpoints.put(player, switchpoint);
+        PlayerEntry entry = players.get(player);
+        if (entry == null) {
+            final PlayerEntry newEntry = new PlayerEntry(null, DispatchContext.END);
+            entry = players.putIfAbsent(player, newEntry);
+            if (entry == null) {
+                entry = newEntry;
             }
-            return new GuardedDispatchContext(getDispatchContext(player), switchpoint);
         }
+        return new GuardedDispatchContext(entry.isPure() ? Optional.empty() : Optional.of(entry.context),
+                entry.switchpoint);
     }
 
+    /**
+     * {@inheritDoc}
+     * 
+     * @implNote The switchpoint is read before the live player count, which is
+     *           sufficient to never return a valid switchpoint for an impure type,
+     *           because the switchpoint of a type is invalidated after its count
+     *           has been incremented from zero, and replaced only after the count
+     *           has been decremented to zero.
+     */
     @Override
-    public GuardedValue<Boolean> getGuardedIsPureType(Class<?> type) {
-        return new GuardedIsPureType(isPureType(type), typeSwitchpoints.get(type));
+    public GuardedValue<Boolean> getGuardedIsPureType(final Class<?> type) {
+        Objects.requireNonNull(type);
+        expungeStaleEntries();
+        final TypeState state = types.get(type);
+        final SwitchPoint switchpoint = state.pureSwitchpoint;
+        return new GuardedIsPureType(state.isPure(), switchpoint);
     }
 
     /**
-     * Assigns a new context switchpoint to {@code player} and invalidates the old
-     * one, if any.
+     * {@inheritDoc}
+     * 
+     * @implNote Role methods are tracked per type and only forgotten when the type
+     *           becomes pure again, i.e., unbinding a role from a player does not
+     *           make its methods pure again, as long as there are other players of
+     *           the same type.
      */
-    private void updateContextSwitchpoint(final Object player) {
-        final SwitchPoint oldSwitchPoint = contextSwitchpoints.put(player, new SwitchPoint());
-        if (oldSwitchPoint != null) {
-            SwitchPoint.invalidateAll(new SwitchPoint[] { oldSwitchPoint });
+    @Override
+    public GuardedValue<Boolean> getGuardedIsPureMethod(final Class<?> type, final String name,
+            final MethodType methodType) {
+        Objects.requireNonNull(type);
+        expungeStaleEntries();
+        return types.get(type).getGuardedIsPureMethod(new Signature(name, methodType));
+    }
+
+    @Override
+    public SwitchPoint getRevalidationSwitchpoint(final Class<?> type) {
+        return types.get(type).revalidationSwitchpoint;
+    }
+
+    @Override
+    public SwitchPoint getNoRolesSwitchpoint() {
+        return noRolesSwitchpoint;
+    }
+
+    /**
+     * Registers a new player of the given type with all of its supertypes, and
+     * adds the type switchpoints that must be invalidated to {@code invalidated}.
+     */
+    private void addPlayer(final Class<?> type, final List<SwitchPoint> invalidated) {
+        if (!noRolesSwitchpoint.hasBeenInvalidated()) {
+            invalidated.add(noRolesSwitchpoint);
+        }
+        for (final Class<?> supertype : supertypes.get(type)) {
+            types.get(supertype).increment(invalidated);
+        }
+    }
+
+    /**
+     * Registers the role methods of {@code roleType} with all supertypes of the
+     * given player type, and adds the method switchpoints that must be
+     * invalidated to {@code invalidated}. Must be called after the player has been
+     * registered with {@link #addPlayer(Class, List)}.
+     */
+    private void addRoleMethods(final Class<?> playerType, final Class<?> roleType,
+            final List<SwitchPoint> invalidated) {
+        final Set<Signature> signatures = RoleMethods.of(roleType).signatures();
+        if (!signatures.isEmpty()) {
+            for (final Class<?> supertype : supertypes.get(playerType)) {
+                types.get(supertype).addRoleMethods(signatures, invalidated);
+            }
         }
     }
 
     /**
-     * Invalidates the switchpoints of all supertypes of the given type
-     * (re-validation is currently not implemented).
+     * Deregisters a player of the given type from all of its supertypes, and adds
+     * the type switchpoints that must be invalidated to {@code invalidated}.
      */
-    private void invalidateType(final Class<?> type) {
-        final List<SwitchPoint> switchpoints = new ArrayList<>();
+    private void removePlayer(final Class<?> type, final List<SwitchPoint> invalidated) {
         for (final Class<?> supertype : supertypes.get(type)) {
-            switchpoints.add(typeSwitchpoints.get(supertype));
+            types.get(supertype).decrement(invalidated);
+        }
+    }
+
+    /** Called for each entry whose player has been garbage collected. */
+    private void expunged(final PlayerEntry entry) {
+        if (!entry.isPure()) {
+            final List<SwitchPoint> invalidated = new ArrayList<>();
+            removePlayer(entry.playerType, invalidated);
+            invalidateAll(invalidated);
+        }
+    }
+
+    /** Performs the argument checks of {@link #bind(Compartment, Object, Object)}. */
+    private static void validateBinding(final Object player, final Object role) {
+        Objects.requireNonNull(player);
+        Objects.requireNonNull(role);
+        if (player == role) {
+            throw new IllegalArgumentException("player and role must be distinct objects");
         }
-        SwitchPoint.invalidateAll(switchpoints.toArray(new SwitchPoint[0]));
+        TypeChecks.validateRoleType(role.getClass());
+        TypeChecks.validatePlayer(player);
+    }
+
+    /** Returns a new, modifiable list of the roles in the given context chain. */
+    private static List<Object> rolesOf(final DispatchContext context) {
+        final List<Object> roles = new ArrayList<>();
+        for (DispatchContext ctx = context; ctx != DispatchContext.END; ctx = ctx.next()) {
+            roles.add(ctx.target());
+        }
+        return roles;
+    }
+
+    /** Adds the switchpoint of a replaced or removed entry, if any. */
+    private static void collect(final PlayerEntry oldEntry, final List<SwitchPoint> invalidated) {
+        if (oldEntry != null) {
+            invalidated.add(oldEntry.switchpoint);
+        }
+    }
+
+    /** Invalidates the given switchpoints at once, since this is expensive. */
+    private static void invalidateAll(final List<SwitchPoint> invalidated) {
+        if (!invalidated.isEmpty()) {
+            SwitchPoint.invalidateAll(invalidated.toArray(new SwitchPoint[0]));
+        }
+    }
+
+    /**
+     * Processes garbage collected players right away, so that the live player
+     * counts are up to date (unless this is left to the {@link #reaper}).
+     */
+    private void expungeStaleEntries() {
+        if (players instanceof WeakKeyMap) {
+            ((WeakKeyMap<?, ?>) players).expungeStaleEntries();
+        }
+    }
+
+    /** Returns the lock stripe that guards modifications of {@code player}. */
+    private ReentrantLock lockFor(final Object player) {
+        return locks[stripeOf(player)];
+    }
+
+    /** Returns the index of the lock stripe of {@code player}. */
+    private int stripeOf(final Object player) {
+        final int h = System.identityHashCode(player);
+        return (h ^ (h >>> 16)) & (locks.length - 1);
     }
 
     /**
-     * Thread-safe and leak-free mapping of {@link Class} to {@link SwitchPoint}
+     * Thread-safe and leak-free mapping of {@link Class} to {@link TypeState}
      * using {@link #get(Class)} and {@link #remove(Class)}.
      */
-    static class TypeSwitchpoints extends ClassValue<SwitchPoint> {
+    static class TypeStates extends ClassValue<TypeState> {
         @Override
-        protected SwitchPoint computeValue(final Class<?> type) {
-            return new SwitchPoint();
+        protected TypeState computeValue(final Class<?> type) {
+            return new TypeState();
+        }
+    }
+
+    /**
+     * Maintains the number of live players of a type, along with two switchpoints:
+     * the <em>pure switchpoint</em> is invalidated when the type becomes impure,
+     * i.e., when the count changes from zero to one, and the <em>revalidation
+     * switchpoint</em> is invalidated when the type becomes pure again, i.e., when
+     * the count drops back to zero. In both cases, the invalidated switchpoint is
+     * replaced with a fresh one as soon as the type changes its state again.
+     * <p>
+     * Additionally, a type state maintains a {@link MethodState} for each base
+     * method that has been queried or that has a role method in a role bound to a
+     * live player of the type. All method states are discarded (and their
+     * switchpoints invalidated) when the type becomes pure again.
+     * 
+     * @implNote Only these transitions are serialized using a per-type lock. All
+     *           other updates of the count are performed using a CAS loop, since
+     *           they would cause contention on common supertypes such as
+     *           {@link Object}. Switchpoints are not invalidated directly, but
+     *           added to a list, which the caller must invalidate before it
+     *           returns.
+     */
+    static class TypeState {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final AtomicInteger livePlayers = new AtomicInteger();
+        volatile SwitchPoint pureSwitchpoint = new SwitchPoint();
+        volatile SwitchPoint revalidationSwitchpoint = new SwitchPoint();
+        volatile Map<Signature, MethodState> methods = new ConcurrentHashMap<>();
+
+        boolean isPure() {
+            return livePlayers.get() == 0;
+        }
+
+        /**
+         * Returns whether the given method has no role methods, guarded by the
+         * switchpoint of the method state. If the method states are discarded
+         * concurrently, the state is looked up again, since the switchpoint might
+         * not have been invalidated otherwise.
+         */
+        GuardedIsPureType getGuardedIsPureMethod(final Signature signature) {
+            for (;;) {
+                final Map<Signature, MethodState> current = methods;
+                final MethodState state = current.computeIfAbsent(signature, unused -> new MethodState());
+                if (methods == current) {
+                    return new GuardedIsPureType(!state.overridden, state.switchpoint);
+                }
+            }
+        }
+
+        void addRoleMethods(final Set<Signature> signatures, final List<SwitchPoint> invalidated) {
+            final Map<Signature, MethodState> current = methods;
+            for (final Signature signature : signatures) {
+                final MethodState state = current.computeIfAbsent(signature, unused -> new MethodState());
+                state.overridden = true;
+                // as in increment(), another thread may not have invalidated it yet
+                if (!state.switchpoint.hasBeenInvalidated()) {
+                    invalidated.add(state.switchpoint);
+                }
+            }
+        }
+
+        void increment(final List<SwitchPoint> invalidated) {
+            for (int count; (count = livePlayers.get()) > 0;) {
+                if (livePlayers.compareAndSet(count, count + 1)) {
+                    // the thread that made the type impure may not have
+                    // invalidated the switchpoint yet, so make sure of it
+                    final SwitchPoint switchpoint = pureSwitchpoint;
+                    if (!switchpoint.hasBeenInvalidated()) {
+                        invalidated.add(switchpoint);
+                    }
+                    return;
+                }
+            }
+            lock.lock();
+            try {
+                if (livePlayers.getAndIncrement() == 0) {
+                    invalidated.add(pureSwitchpoint);
+                    revalidationSwitchpoint = new SwitchPoint();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void decrement(final List<SwitchPoint> invalidated) {
+            for (int count; (count = livePlayers.get()) > 1;) {
+                if (livePlayers.compareAndSet(count, count - 1)) {
+                    return;
+                }
+            }
+            lock.lock();
+            try {
+                if (livePlayers.decrementAndGet() == 0) {
+                    pureSwitchpoint = new SwitchPoint();
+                    invalidated.add(revalidationSwitchpoint);
+                    final Map<Signature, MethodState> discarded = methods;
+                    methods = new ConcurrentHashMap<>();
+                    for (final MethodState state : discarded.values()) {
+                        if (!state.switchpoint.hasBeenInvalidated()) {
+                            invalidated.add(state.switchpoint);
+                        }
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
+    /**
+     * Tracks whether a role method for a base method has been bound, along with
+     * a switchpoint that is invalidated when this happens for the first time.
+     */
+    static class MethodState {
+        final SwitchPoint switchpoint = new SwitchPoint();
+        volatile boolean overridden;
+    }
+
     /**
      * Provides a {@link #get(Class)} method that lazily computes the supertypes for
      * a non-primitive type as per JLS §4.10 with a recursive algorithm in
@@ -242,6 +662,126 @@ public class CacheAwareBinder implements Binder, GuardedQuery {
         }
     }
 
+    /**
+     * Immutable entry of the {@link CacheAwareBinder#players} map, which holds the
+     * dispatch context of a player (from which the list of roles is derived) and
+     * the switchpoint that guards it. The type of the player is needed to maintain
+     * the live player counts after the player has been garbage collected.
+     */
+    static class PlayerEntry {
+        /** Entry used for players that are not in the map (no switchpoint). */
+        static final PlayerEntry PURE = new PlayerEntry(null, DispatchContext.END, null);
+
+        final Class<?> playerType;
+        final DispatchContext context;
+        final SwitchPoint switchpoint;
+
+        PlayerEntry(final Class<?> playerType, final DispatchContext context) {
+            this(playerType, context, new SwitchPoint());
+        }
+
+        private PlayerEntry(final Class<?> playerType, final DispatchContext context, final SwitchPoint switchpoint) {
+            this.playerType = playerType;
+            this.context = context;
+            this.switchpoint = switchpoint;
+        }
+
+        /** Returns {@code true} if no roles are bound. */
+        boolean isPure() {
+            return context == DispatchContext.END;
+        }
+    }
+
+    /** Recorded bind ({@code bind == true}) or unbind operation. */
+    static class Operation {
+        final Object player;
+        final Object role;
+        final Compartment compartment;
+        final boolean bind;
+
+        Operation(final Object player, final Object role, final Compartment compartment, final boolean bind) {
+            this.player = player;
+            this.role = role;
+            this.compartment = compartment;
+            this.bind = bind;
+        }
+    }
+
+    /**
+     * Records the operations of a {@link #batch(Compartment, Consumer) batch},
+     * whose bindings belong to the given compartment.
+     */
+    static class Transaction implements BindingTransaction {
+        final List<Operation> operations = new ArrayList<>();
+        final Compartment compartment;
+        boolean closed;
+
+        Transaction(final Compartment compartment) {
+            this.compartment = compartment;
+        }
+
+        @Override
+        public <T> T bind(final Object player, final T role) {
+            checkOpen();
+            validateBinding(player, role);
+            operations.add(new Operation(player, role, compartment, true));
+            return role;
+        }
+
+        @Override
+        public <T> T unbind(final Object player, final T role) {
+            checkOpen();
+            Objects.requireNonNull(player);
+            Objects.requireNonNull(role);
+            operations.add(new Operation(player, role, null, false));
+            return role;
+        }
+
+        private void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("transaction has already been applied");
+            }
+        }
+    }
+
+    /** Accumulates the changes of a batch for a single player. */
+    static class PlayerChange {
+        final PlayerEntry entry;
+        final List<Object> roles = new ArrayList<>();
+        final List<Compartment> compartments = new ArrayList<>();
+        boolean modified;
+
+        PlayerChange(final PlayerEntry entry) {
+            this.entry = entry;
+            if (entry != null) {
+                for (DispatchContext ctx = entry.context; ctx != DispatchContext.END; ctx = ctx.next()) {
+                    roles.add(ctx.target());
+                    compartments.add(ctx.compartment());
+                }
+            }
+        }
+
+        /** Returns {@code true} if the player had no roles before the batch. */
+        boolean wasPure() {
+            return entry == null || entry.isPure();
+        }
+
+        void apply(final Operation op) {
+            if (op.bind) {
+                roles.add(op.role);
+                compartments.add(op.compartment);
+                modified = true;
+            } else {
+                final int i = roles.indexOf(op.role);
+                if (i >= 0) {
+                    roles.remove(i);
+                    compartments.remove(i);
+                    modified = true;
+                }
+            }
+        }
+    }
+
     /** Wraps dispatch contexts as guarded values. */
     static class GuardedDispatchContext implements GuardedValue<Optional<DispatchContext>> {
         private final Optional<DispatchContext> context;
@@ -0,0 +1,423 @@
+package rolevm.runtime.binder;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Concurrent hash table with <em>weak keys</em> and <em>reference-equality</em>
+ * in place of object-equality, which is optimized for lookups on the dispatch
+ * hot path. Please note that some operations are unsupported.
+ * <p>
+ * The table is split into a fixed number of segments, each of which is an open
+ * addressing hash table with linear probing. Keys and values are stored in
+ * adjacent slots of a single array, which is probed by the identity hash code
+ * of the lookup key. Lookups are lock-free and do not allocate: the lookup key
+ * is never wrapped, and the reference queue is never polled. Modifications are
+ * serialized per segment, and the weak reference for a key is created only
+ * when it is inserted. Entries belonging to reclaimed keys are expunged at the
+ * beginning of each modification, or by calling {@link #expungeStaleEntries()},
+ * unless the map has been created with a {@link Reaper}.
+ *
+ * @implNote Removed entries leave a tombstone behind, so that probe sequences
+ *           of other keys are not interrupted. Tombstones are dropped when the
+ *           segment is rehashed. Lookups validate that the segment has not been
+ *           rehashed concurrently, and retry otherwise, since modifications are
+ *           only applied to the most recent table of a segment.
+ * @param <K>
+ *            the type of keys maintained by this map
+ * @param <V>
+ *            the type of mapped values
+ * @author Martin Morgenstern
+ * @see ConcurrentWeakHashMap
+ * @see IdentityWeakHashMap
+ */
+public class ConcurrentIdentityWeakHashMap<K, V> implements WeakKeyMap<K, V> {
+    /** The number of segments, MUST be a power of two. */
+    private static final int SEGMENTS = 16;
+
+    /** The initial number of slots per segment, MUST be a power of two. */
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    /** The maximum number of slots per segment. */
+    private static final int MAXIMUM_SEGMENT_CAPACITY = 1 << 29;
+
+    /** Provides acquire/release semantics for accesses to table slots. */
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    /** Marks the key slot of a removed entry. */
+    private static final Object TOMBSTONE = new Object();
+
+    /** The segments, indexed by the upper bits of the hash. */
+    private final Segment[] segments;
+
+    /** Queue used to listen for reclaimable {@link WeakKey} objects. */
+    private final ReferenceQueue<Object> queue;
+
+    /**
+     * Whether the {@link #queue} is drained by this map, or by a {@link Reaper}.
+     */
+    private final boolean ownQueue;
+
+    /** Listener that is notified about the values of reclaimed entries. */
+    private final Consumer<? super V> expungeListener;
+
+    /** Creates a new, empty map. */
+    public ConcurrentIdentityWeakHashMap() {
+        this(value -> {
+        });
+    }
+
+    /**
+     * Creates a new, empty map that notifies {@code expungeListener} about the
+     * value of each entry that is removed because its key has been reclaimed by
+     * the garbage collector.
+     */
+    public ConcurrentIdentityWeakHashMap(final Consumer<? super V> expungeListener) {
+        this(expungeListener, null);
+    }
+
+    /**
+     * Like {@link #ConcurrentIdentityWeakHashMap(Consumer)}, but if
+     * {@code reaper} is not {@code null}, stale entries are removed by the reaper
+     * in the background, and this map never polls a reference queue by itself.
+     */
+    public ConcurrentIdentityWeakHashMap(final Consumer<? super V> expungeListener, final Reaper reaper) {
+        this.expungeListener = Objects.requireNonNull(expungeListener);
+        ownQueue = reaper == null;
+        queue = ownQueue ? new ReferenceQueue<>() : reaper.queue();
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Weak reference to a key, which also remembers the hash of the key and the
+     * map to which it belongs.
+     */
+    static final class WeakKey extends WeakReference<Object> implements Expungeable {
+        final int hash;
+        final ConcurrentIdentityWeakHashMap<?, ?> map;
+
+        WeakKey(final Object referent, final int hash, final ConcurrentIdentityWeakHashMap<?, ?> map) {
+            super(referent, map.queue);
+            this.hash = hash;
+            this.map = map;
+        }
+
+        @Override
+        public void expunge() {
+            map.expunge(this);
+        }
+    }
+
+    /**
+     * A single open addressing hash table. All fields are guarded by the lock,
+     * except for {@link #table}, whose slots can be read at any time.
+     */
+    @SuppressWarnings("serial")
+    static final class Segment extends ReentrantLock {
+        /**
+         * Keys and values in alternating order, i.e., the key of slot {@code i} is
+         * at index {@code 2 * i}, and its value at index {@code 2 * i + 1}.
+         */
+        volatile Object[] table = new Object[2 * INITIAL_SEGMENT_CAPACITY];
+
+        /** The number of live entries. */
+        volatile int size;
+
+        /** The number of slots which are not {@code null} (including tombstones). */
+        int used;
+
+        /** Returns the value for {@code key} in {@code tab}, or {@code null}. */
+        static Object find(final Object[] tab, final Object key, final int hash) {
+            final int mask = (tab.length >> 1) - 1;
+            for (int i = hash & mask, n = 0; n <= mask; i = (i + 1) & mask, n++) {
+                final Object k = (Object) SLOTS.getAcquire(tab, i << 1);
+                if (k == null) {
+                    return null;
+                }
+                if (k != TOMBSTONE && ((WeakKey) k).hash == hash && ((WeakKey) k).get() == key) {
+                    final Object value = (Object) SLOTS.getAcquire(tab, (i << 1) + 1);
+                    // if the key has been removed in the meantime, its slot may
+                    // already have been reused for another entry
+                    return (Object) SLOTS.getAcquire(tab, i << 1) == k ? value : null;
+                }
+            }
+            return null;
+        }
+
+        /** Returns the slot index of {@code key} in {@link #table}, or -1. */
+        int indexOf(final Object key, final int hash) {
+            final Object[] tab = table;
+            final int mask = (tab.length >> 1) - 1;
+            for (int i = hash & mask, n = 0; n <= mask; i = (i + 1) & mask, n++) {
+                final Object k = tab[i << 1];
+                if (k == null) {
+                    return -1;
+                }
+                if (k == key || k != TOMBSTONE && ((WeakKey) k).hash == hash && ((WeakKey) k).get() == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Object put(final Object key, final int hash, final Object value, final boolean onlyIfAbsent,
+                final ConcurrentIdentityWeakHashMap<?, ?> map) {
+            int i = indexOf(key, hash);
+            if (i >= 0) {
+                final Object oldValue = table[(i << 1) + 1];
+                if (!onlyIfAbsent) {
+                    SLOTS.setRelease(table, (i << 1) + 1, value);
+                }
+                return oldValue;
+            }
+            if (used + 1 > (table.length >> 1) - (table.length >> 3)) {
+                rehash();
+            }
+            final Object[] tab = table;
+            final int mask = (tab.length >> 1) - 1;
+            i = hash & mask;
+            while (tab[i << 1] != null && tab[i << 1] != TOMBSTONE) {
+                i = (i + 1) & mask;
+            }
+            if (tab[i << 1] == null) {
+                used++;
+            }
+            // publish the value before the key, so that readers never see a
+            // key without its value
+            SLOTS.setRelease(tab, (i << 1) + 1, value);
+            SLOTS.setRelease(tab, i << 1, new WeakKey(key, hash, map));
+            size++;
+            return null;
+        }
+
+        /** Removes the entry at slot {@code i} and returns its value. */
+        Object removeAt(final int i) {
+            final Object[] tab = table;
+            final Object oldValue = tab[(i << 1) + 1];
+            SLOTS.setRelease(tab, i << 1, TOMBSTONE);
+            SLOTS.setRelease(tab, (i << 1) + 1, (Object) null);
+            size--;
+            return oldValue;
+        }
+
+        /**
+         * Copies all entries into a new table, dropping all tombstones, and doubles
+         * the capacity if the segment is more than half full.
+         */
+        void rehash() {
+            final Object[] oldTab = table;
+            final int oldCapacity = oldTab.length >> 1;
+            int capacity = oldCapacity;
+            if (2 * (size + 1) > oldCapacity) {
+                if (oldCapacity == MAXIMUM_SEGMENT_CAPACITY) {
+                    throw new IllegalStateException("segment capacity exceeded");
+                }
+                capacity = oldCapacity << 1;
+            }
+            final Object[] tab = new Object[2 * capacity];
+            final int mask = capacity - 1;
+            for (int j = 0; j < oldCapacity; j++) {
+                final Object k = oldTab[j << 1];
+                if (k != null && k != TOMBSTONE) {
+                    // keys which have already been reclaimed are copied as well,
+                    // they are removed (and reported) when they are expunged
+                    int i = ((WeakKey) k).hash & mask;
+                    while (tab[i << 1] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    tab[i << 1] = k;
+                    tab[(i << 1) + 1] = oldTab[(j << 1) + 1];
+                }
+            }
+            used = size;
+            table = tab;
+        }
+
+        void clear() {
+            table = new Object[2 * INITIAL_SEGMENT_CAPACITY];
+            size = 0;
+            used = 0;
+        }
+    }
+
+    /** Spreads the identity hash code of {@code key}. */
+    private static int hash(final Object key) {
+        return System.identityHashCode(key) * 0x9E3779B9;
+    }
+
+    /** Returns the segment for the given hash, using its upper bits. */
+    private Segment segmentFor(final int hash) {
+        return segments[(hash >>> 28) & (SEGMENTS - 1)];
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V getOrDefault(final Object key, final V defaultValue) {
+        if (key == null) {
+            return defaultValue;
+        }
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        for (;;) {
+            final Object[] tab = segment.table;
+            final Object value = Segment.find(tab, key, hash);
+            if (tab == segment.table) {
+                return value != null ? (V) value : defaultValue;
+            }
+        }
+    }
+
+    @Override
+    public V get(final Object key) {
+        return getOrDefault(key, null);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public V put(final K key, final V value) {
+        return put(key, value, false);
+    }
+
+    /** Atomically associates {@code value} with {@code key}, if it is absent. */
+    @Override
+    public V putIfAbsent(final K key, final V value) {
+        return put(key, value, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V put(final K key, final V value, final boolean onlyIfAbsent) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        expungeStaleEntries();
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            return (V) segment.put(key, hash, value, onlyIfAbsent, this);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V remove(final Object key) {
+        if (key == null) {
+            return null;
+        }
+        expungeStaleEntries();
+        final int hash = hash(key);
+        final Segment segment = segmentFor(hash);
+        segment.lock();
+        try {
+            final int i = segment.indexOf(key, hash);
+            return i >= 0 ? (V) segment.removeAt(i) : null;
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public void expungeStaleEntries() {
+        if (!ownQueue) {
+            return;
+        }
+        for (Object x; (x = queue.poll()) != null;) {
+            expunge((WeakKey) x);
+        }
+    }
+
+    /** Removes the entry of a reclaimed key, and notifies the listener. */
+    @SuppressWarnings("unchecked")
+    private void expunge(final WeakKey key) {
+        final Segment segment = segmentFor(key.hash);
+        Object value = null;
+        segment.lock();
+        try {
+            final int i = segment.indexOf(key, key.hash);
+            if (i >= 0) {
+                value = segment.removeAt(i);
+            }
+        } finally {
+            segment.unlock();
+        }
+        if (value != null) {
+            expungeListener.accept((V) value);
+        }
+    }
+
+    @Override
+    public void clear() {
+        expungeStaleEntries();
+        for (final Segment segment : segments) {
+            segment.lock();
+            try {
+                segment.clear();
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        expungeStaleEntries();
+        int size = 0;
+        for (final Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // unsupported operations
+
+    /** Unsupported operation. */
+    @Override
+    public boolean containsValue(final Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported operation. */
+    @Override
+    public void putAll(final Map<? extends K, ? extends V> m) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported operation. */
+    @Override
+    public Set<K> keySet() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported operation. */
+    @Override
+    public Collection<V> values() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported operation. */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -5,8 +5,10 @@ import java.lang.ref.WeakReference;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Provides a {@link ConcurrentHashMap} with weak keys and reference-equality in
@@ -23,19 +25,53 @@ import java.util.concurrent.ConcurrentHashMap;
  *            the type of mapped values
  * @author Martin Morgenstern
  */
-public class ConcurrentWeakHashMap<K, V> implements Map<K, V> {
+public class ConcurrentWeakHashMap<K, V> implements WeakKeyMap<K, V> {
     /** The underlying map to which we forward all calls. */
     private final Map<Key, V> storage = new ConcurrentHashMap<>();
 
     /** Queue used to listen for reclaimable {@link Key} objects. */
-    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final ReferenceQueue<Object> queue;
+
+    /**
+     * Whether the {@link #queue} is drained by this map, or by a {@link Reaper}.
+     */
+    private final boolean ownQueue;
+
+    /** Listener that is notified about the values of reclaimed entries. */
+    private final Consumer<? super V> expungeListener;
+
+    /** Creates a new, empty map. */
+    public ConcurrentWeakHashMap() {
+        this(value -> {
+        });
+    }
+
+    /**
+     * Creates a new, empty map that notifies {@code expungeListener} about the
+     * value of each entry that is removed because its key has been reclaimed by
+     * the garbage collector.
+     */
+    public ConcurrentWeakHashMap(final Consumer<? super V> expungeListener) {
+        this(expungeListener, null);
+    }
+
+    /**
+     * Like {@link #ConcurrentWeakHashMap(Consumer)}, but if {@code reaper} is not
+     * {@code null}, stale entries are removed by the reaper in the background,
+     * and this map never polls a reference queue by itself.
+     */
+    public ConcurrentWeakHashMap(final Consumer<? super V> expungeListener, final Reaper reaper) {
+        this.expungeListener = Objects.requireNonNull(expungeListener);
+        ownQueue = reaper == null;
+        queue = ownQueue ? new ReferenceQueue<>() : reaper.queue();
+    }
 
     /**
      * Wraps the real keys in a {@link WeakReference} and provides the
      * reference-equality semantics when comparing keys via {@link #equals(Object)}
      * and {@link #hashCode()}.
      */
-    private final class Key extends WeakReference<Object> {
+    private final class Key extends WeakReference<Object> implements Expungeable {
         private final int hashCode;
 
         public Key(Object referent) {
@@ -57,15 +93,31 @@ public class ConcurrentWeakHashMap<K, V> implements Map<K, V> {
             }
             return false;
         }
+
+        @Override
+        public void expunge() {
+            V value = storage.remove(this);
+            if (value != null) {
+                expungeListener.accept(value);
+            }
+        }
     }
 
     /** Removes entries belonging to stale keys from this map. */
     private void removeStaleReferences() {
+        if (!ownQueue) {
+            return;
+        }
         for (Object x; (x = queue.poll()) != null;) {
-            storage.remove(x);
+            ((Expungeable) x).expunge();
         }
     }
 
+    @Override
+    public void expungeStaleEntries() {
+        removeStaleReferences();
+    }
+
     @Override
     public void clear() {
         removeStaleReferences();
@@ -108,6 +160,13 @@ public class ConcurrentWeakHashMap<K, V> implements Map<K, V> {
         return storage.put(new Key(key), value);
     }
 
+    /** Atomically associates {@code value} with {@code key}, if it is absent. */
+    @Override
+    public V putIfAbsent(K key, V value) {
+        removeStaleReferences();
+        return storage.putIfAbsent(new Key(key), value);
+    }
+
     @Override
     public V remove(Object key) {
         removeStaleReferences();
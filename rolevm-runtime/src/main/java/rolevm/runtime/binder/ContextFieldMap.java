@@ -0,0 +1,308 @@
+package rolevm.runtime.binder;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Map with weak keys and reference-equality that stores the value of a key
+ * directly in the key object, if its class has been woven with a context field
+ * by the agent (using {@code -Drolevm.contextField=true}), and delegates to a
+ * fallback map for all other keys, such as instances of JDK classes. Lookups
+ * of woven keys read a field instead of probing a hash table. Please note that
+ * some operations are unsupported.
+ * <p>
+ * The context field of a key refers to a {@link Slot}, which is created when a
+ * value is first associated with the key, and never removed afterwards. The
+ * slot is a weak reference to the key, so that the expunge listener can be
+ * notified after the key has been reclaimed, as with the other weak maps. The
+ * map keeps its slots strongly reachable until then, since an unreachable
+ * reference object would never be enqueued. This set is only updated when a
+ * slot is created or expunged, never on lookups.
+ * 
+ * @implNote If the context field of a key is already claimed by another map,
+ *           which only happens if there are multiple binders, the key is
+ *           stored in the fallback map.
+ * @param <K>
+ *            the type of keys maintained by this map
+ * @param <V>
+ *            the type of mapped values
+ * @author Martin Morgenstern
+ */
+public class ContextFieldMap<K, V> implements WeakKeyMap<K, V> {
+    /** Name of the field, which is also hardcoded in the agent. */
+    static final String FIELD_NAME = "$rolevm$ctx";
+
+    /** Provides atomic updates of {@link Slot#value}. */
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(Slot.class, "value", Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** Lazily computed mapping of classes to their context field, if any. */
+    private static final ClassValue<Optional<VarHandle>> FIELDS = new ContextFields();
+
+    /** Map used for keys without a context field. */
+    private final Map<K, V> fallback;
+
+    /** All slots of this map whose keys have not been reclaimed yet. */
+    private final Set<Slot> slots = ConcurrentHashMap.newKeySet();
+
+    /** Queue used to listen for reclaimable {@link Slot} objects. */
+    private final ReferenceQueue<Object> queue;
+
+    /**
+     * Whether the {@link #queue} is drained by this map, or by a {@link Reaper}.
+     */
+    private final boolean ownQueue;
+
+    /** Listener that is notified about the values of reclaimed entries. */
+    private final Consumer<? super V> expungeListener;
+
+    /**
+     * Creates a new, empty map that uses {@code fallback} for keys without a
+     * context field, and notifies {@code expungeListener} about the value of
+     * each entry that is removed because its key has been reclaimed by the
+     * garbage collector. If {@code reaper} is not {@code null}, stale slots are
+     * processed by the reaper in the background.
+     */
+    public ContextFieldMap(final Map<K, V> fallback, final Consumer<? super V> expungeListener,
+            final Reaper reaper) {
+        this.fallback = Objects.requireNonNull(fallback);
+        this.expungeListener = Objects.requireNonNull(expungeListener);
+        ownQueue = reaper == null;
+        queue = ownQueue ? new ReferenceQueue<>() : reaper.queue();
+    }
+
+    /**
+     * Holds the value of a key in its context field, and weakly references the
+     * key.
+     */
+    static final class Slot extends WeakReference<Object> implements Expungeable {
+        final ContextFieldMap<?, ?> map;
+        volatile Object value;
+
+        Slot(final Object referent, final ContextFieldMap<?, ?> map) {
+            super(referent, map.queue);
+            this.map = map;
+        }
+
+        @Override
+        public void expunge() {
+            map.expunge(this);
+        }
+    }
+
+    /** Returns the context field of the class of {@code key}, or {@code null}. */
+    private static VarHandle fieldOf(final Object key) {
+        return key == null ? null : FIELDS.get(key.getClass()).orElse(null);
+    }
+
+    /**
+     * Returns the slot in the context field of {@code key}, after installing a
+     * new slot owned by this map if the field was empty.
+     */
+    private Slot claim(final VarHandle field, final Object key) {
+        Object current = field.getAcquire(key);
+        if (current == null) {
+            final Slot slot = new Slot(key, this);
+            slots.add(slot);
+            current = field.compareAndExchange(key, (Object) null, (Object) slot);
+            if (current == null) {
+                return slot;
+            }
+            slots.remove(slot);
+        }
+        return (Slot) current;
+    }
+
+    @Override
+    public V get(final Object key) {
+        return getOrDefault(key, null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(final Object key, final V defaultValue) {
+        final VarHandle field = fieldOf(key);
+        if (field != null) {
+            final Slot slot = (Slot) field.getAcquire(key);
+            if (slot == null) {
+                return defaultValue;
+            }
+            if (slot.map == this) {
+                final Object value = slot.value;
+                return value != null ? (V) value : defaultValue;
+            }
+        }
+        return fallback.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(final K key, final V value) {
+        Objects.requireNonNull(value);
+        final VarHandle field = fieldOf(key);
+        if (field != null) {
+            final Slot slot = claim(field, key);
+            if (slot.map == this) {
+                return (V) VALUE.getAndSet(slot, (Object) value);
+            }
+        }
+        expungeStaleEntries();
+        return fallback.put(key, value);
+    }
+
+    /** Atomically associates {@code value} with {@code key}, if it is absent. */
+    @Override
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(final K key, final V value) {
+        Objects.requireNonNull(value);
+        final VarHandle field = fieldOf(key);
+        if (field != null) {
+            final Slot slot = claim(field, key);
+            if (slot.map == this) {
+                return (V) VALUE.compareAndExchange(slot, (Object) null, (Object) value);
+            }
+        }
+        expungeStaleEntries();
+        return fallback.putIfAbsent(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(final Object key) {
+        final VarHandle field = fieldOf(key);
+        if (field != null) {
+            final Slot slot = (Slot) field.getAcquire(key);
+            if (slot == null) {
+                return null;
+            }
+            if (slot.map == this) {
+                return (V) VALUE.getAndSet(slot, (Object) null);
+            }
+        }
+        expungeStaleEntries();
+        return fallback.remove(key);
+    }
+
+    @Override
+    public void expungeStaleEntries() {
+        if (ownQueue) {
+            for (Object x; (x = queue.poll()) != null;) {
+                ((Expungeable) x).expunge();
+            }
+        }
+        if (fallback instanceof WeakKeyMap) {
+            ((WeakKeyMap<?, ?>) fallback).expungeStaleEntries();
+        }
+    }
+
+    /** Clears the slot of a reclaimed key, and notifies the listener. */
+    @SuppressWarnings("unchecked")
+    private void expunge(final Slot slot) {
+        slots.remove(slot);
+        final Object value = VALUE.getAndSet(slot, (Object) null);
+        if (value != null) {
+            expungeListener.accept((V) value);
+        }
+    }
+
+    /**
+     * Finds the context field that the agent has added to a class or one of its
+     * superclasses.
+     */
+    static class ContextFields extends ClassValue<Optional<VarHandle>> {
+        @Override
+        protected Optional<VarHandle> computeValue(final Class<?> type) {
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                final Field field;
+                try {
+                    field = c.getDeclaredField(FIELD_NAME);
+                } catch (NoSuchFieldException e) {
+                    continue;
+                }
+                if (Modifier.isStatic(field.getModifiers()) || field.getType() != Object.class) {
+                    return Optional.empty();
+                }
+                try {
+                    return Optional.of(MethodHandles.privateLookupIn(c, MethodHandles.lookup())
+                            .findVarHandle(c, FIELD_NAME, Object.class));
+                } catch (IllegalAccessException | NoSuchFieldException e) {
+                    return Optional.empty();
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    // unsupported operations
+
+    /** Unsupported operation. */
+    @Override
+    public int size() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported operation. */
+    @Override
+    public boolean isEmpty() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported operation. */
+    @Override
+    public boolean containsValue(final Object value) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported operation. */
+    @Override
+    public void putAll(final Map<? extends K, ? extends V> m) {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported operation. */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported operation. */
+    @Override
+    public Set<K> keySet() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported operation. */
+    @Override
+    public Collection<V> values() {
+        throw new UnsupportedOperationException();
+    }
+
+    /** Unsupported operation. */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        throw new UnsupportedOperationException();
+    }
+}
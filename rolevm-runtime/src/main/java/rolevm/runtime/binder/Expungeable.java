@@ -0,0 +1,17 @@
+package rolevm.runtime.binder;
+
+/**
+ * Implemented by the weak references that our maps use for their keys, so that
+ * a {@link Reaper} can remove stale entries without knowing the map to which
+ * they belong.
+ * 
+ * @author Martin Morgenstern
+ */
+interface Expungeable {
+    /**
+     * Removes the entry of this reference (whose referent has been reclaimed)
+     * from its map, if it is still present, and notifies the expunge listener of
+     * the map.
+     */
+    void expunge();
+}
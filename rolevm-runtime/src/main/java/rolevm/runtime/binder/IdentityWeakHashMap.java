@@ -31,7 +31,9 @@ import java.lang.ref.WeakReference;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Custom hash table based implementation of the {@code Map} interface, with
@@ -57,7 +59,7 @@ import java.util.Set;
  * @see java.util.WeakHashMap
  * @see java.lang.ref.WeakReference
  */
-public class IdentityWeakHashMap<K, V> implements Map<K, V> {
+public class IdentityWeakHashMap<K, V> implements WeakKeyMap<K, V> {
 
     /**
      * The default initial capacity -- MUST be a power of two.
@@ -100,6 +102,11 @@ public class IdentityWeakHashMap<K, V> implements Map<K, V> {
      */
     private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
 
+    /**
+     * Listener that is notified about the values of reclaimed entries.
+     */
+    private final Consumer<? super V> expungeListener;
+
     @SuppressWarnings("unchecked")
     private Entry<K, V>[] newTable(int n) {
         return (Entry<K, V>[]) new Entry<?, ?>[n];
@@ -110,10 +117,21 @@ public class IdentityWeakHashMap<K, V> implements Map<K, V> {
      * capacity (16) and load factor (0.75).
      */
     public IdentityWeakHashMap() {
+        this(value -> {
+        });
+    }
+
+    /**
+     * Constructs a new, empty map like {@link #IdentityWeakHashMap()}, which
+     * notifies {@code expungeListener} about the value of each entry that is
+     * removed because its key has been reclaimed by the garbage collector.
+     */
+    public IdentityWeakHashMap(Consumer<? super V> expungeListener) {
         int capacity = DEFAULT_INITIAL_CAPACITY;
         table = newTable(capacity);
         loadFactor = DEFAULT_LOAD_FACTOR;
         threshold = (int) (capacity * loadFactor);
+        this.expungeListener = Objects.requireNonNull(expungeListener);
     }
 
     // internal utilities
@@ -147,7 +165,8 @@ public class IdentityWeakHashMap<K, V> implements Map<K, V> {
     /**
      * Expunges stale entries from the table.
      */
-    private void expungeStaleEntries() {
+    @Override
+    public void expungeStaleEntries() {
         for (Object x; (x = queue.poll()) != null;) {
             synchronized (queue) {
                 @SuppressWarnings("unchecked")
@@ -165,8 +184,10 @@ public class IdentityWeakHashMap<K, V> implements Map<K, V> {
                             prev.next = next;
                         // Must not null out e.next;
                         // stale entries may be in use by a HashIterator
+                        V value = e.value;
                         e.value = null; // Help GC
                         size--;
+                        expungeListener.accept(value);
                         break;
                     }
                     prev = p;
@@ -345,9 +366,11 @@ public class IdentityWeakHashMap<K, V> implements Map<K, V> {
                 Entry<K, V> next = e.next;
                 Object key = e.get();
                 if (key == null) {
+                    V value = e.value;
                     e.next = null; // Help GC
                     e.value = null; // " "
                     size--;
+                    expungeListener.accept(value);
                 } else {
                     int i = indexFor(e.hash, dest.length);
                     e.next = dest[i];
@@ -0,0 +1,165 @@
+package rolevm.runtime.binder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Daemon thread that removes stale entries from weak maps in the background,
+ * so that map operations (and in particular lookups on the dispatch path) do
+ * not need to poll a reference queue. All maps that have been created with the
+ * same reaper share its {@link #queue()}. The reaper blocks until a reference
+ * is enqueued, optionally waits for more references to arrive, and then
+ * expunges up to a configurable number of references as a batch.
+ * 
+ * @author Martin Morgenstern
+ */
+public class Reaper implements ReaperMXBean {
+    /**
+     * Own logger, since {@link rolevm.runtime.Bootstrap#LOG} would initialize the
+     * linker on the reaper thread.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(Reaper.class);
+    private static final String PROPERTY = "rolevm.reaper";
+    private static final String BATCH_SIZE_PROPERTY = "rolevm.reaperBatchSize";
+    private static final String BATCH_DELAY_PROPERTY = "rolevm.reaperBatchDelay";
+
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+    private final int batchSize;
+    private final long batchDelayMillis;
+    private final Thread thread;
+
+    private final AtomicLong reapedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile long lastLagNanos;
+    private volatile long maxLagNanos;
+
+    /**
+     * Creates (but does not start) a reaper that processes at most
+     * {@code batchSize} references at once, after waiting for
+     * {@code batchDelayMillis} for more references to arrive.
+     */
+    public Reaper(final int batchSize, final long batchDelayMillis) {
+        if (batchSize < 1 || batchDelayMillis < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.batchSize = batchSize;
+        this.batchDelayMillis = batchDelayMillis;
+        thread = new Thread(this::run, "RoleVM Reaper");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Returns a new reaper if enabled by the system property
+     * {@code rolevm.reaper}, or {@code null}. The batch size and delay (in
+     * milliseconds) can be configured with the properties
+     * {@code rolevm.reaperBatchSize} (default 1024) and
+     * {@code rolevm.reaperBatchDelay} (default 0).
+     */
+    public static Reaper fromSystemProperties() {
+        if (!Boolean.getBoolean(PROPERTY)) {
+            return null;
+        }
+        return new Reaper(Integer.getInteger(BATCH_SIZE_PROPERTY, 1024), Long.getLong(BATCH_DELAY_PROPERTY, 0));
+    }
+
+    /** The queue that maps must use for their weak references. */
+    ReferenceQueue<Object> queue() {
+        return queue;
+    }
+
+    /**
+     * Starts the reaper thread and registers the reaper with the platform MBean
+     * server, if there is no other reaper registered yet.
+     */
+    public Reaper start() {
+        thread.start();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("rolevm:type=Reaper"));
+        } catch (JMException e) {
+            LOG.debug("reaper not registered", e);
+        }
+        return this;
+    }
+
+    /** Stops the reaper thread. Stale entries are no longer removed. */
+    public void stop() {
+        thread.interrupt();
+    }
+
+    private void run() {
+        try {
+            for (;;) {
+                Reference<?> ref = queue.remove();
+                final long start = System.nanoTime();
+                if (batchDelayMillis > 0) {
+                    TimeUnit.MILLISECONDS.sleep(batchDelayMillis);
+                }
+                final long processingStart = System.nanoTime();
+                int n = 0;
+                do {
+                    try {
+                        ((Expungeable) ref).expunge();
+                    } catch (RuntimeException e) {
+                        LOG.error("failed to expunge stale entry", e);
+                    }
+                } while (++n < batchSize && (ref = queue.poll()) != null);
+                final long end = System.nanoTime();
+                record(n, end - processingStart, end - start);
+            }
+        } catch (InterruptedException e) {
+            LOG.debug("reaper stopped");
+        }
+    }
+
+    private void record(final int size, final long busy, final long lag) {
+        reapedCount.addAndGet(size);
+        batchCount.incrementAndGet();
+        busyNanos.addAndGet(busy);
+        lastBatchSize = size;
+        lastLagNanos = lag;
+        if (lag > maxLagNanos) {
+            maxLagNanos = lag;
+        }
+    }
+
+    @Override
+    public long getReapedCount() {
+        return reapedCount.get();
+    }
+
+    @Override
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    @Override
+    public int getLastBatchSize() {
+        return lastBatchSize;
+    }
+
+    @Override
+    public long getBusyNanos() {
+        return busyNanos.get();
+    }
+
+    @Override
+    public long getLastLagNanos() {
+        return lastLagNanos;
+    }
+
+    @Override
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+}
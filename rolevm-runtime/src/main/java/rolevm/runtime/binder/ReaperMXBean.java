@@ -0,0 +1,35 @@
+package rolevm.runtime.binder;
+
+/**
+ * Management interface of the {@link Reaper}, which is registered with the
+ * platform MBean server as {@code rolevm:type=Reaper}.
+ * 
+ * @author Martin Morgenstern
+ */
+public interface ReaperMXBean {
+    /** Returns the total number of stale references processed so far. */
+    long getReapedCount();
+
+    /** Returns the total number of batches processed so far. */
+    long getBatchCount();
+
+    /** Returns the number of references processed in the most recent batch. */
+    int getLastBatchSize();
+
+    /**
+     * Returns the total time spent processing batches (excluding the batch delay),
+     * in nanoseconds, which together with {@link #getReapedCount()} gives the
+     * reaper throughput.
+     */
+    long getBusyNanos();
+
+    /**
+     * Returns the lag of the most recent batch, in nanoseconds, i.e., the time
+     * between the reaper taking the first reference of the batch from the queue
+     * and the removal of the last entry of the batch.
+     */
+    long getLastLagNanos();
+
+    /** Returns the maximum lag of all batches so far, in nanoseconds. */
+    long getMaxLagNanos();
+}
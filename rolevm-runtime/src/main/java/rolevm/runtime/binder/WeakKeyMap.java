@@ -0,0 +1,21 @@
+package rolevm.runtime.binder;
+
+import java.util.Map;
+
+/**
+ * A {@link Map} with weak keys, whose entries are removed some time after their
+ * keys have been reclaimed by the garbage collector.
+ * 
+ * @param <K>
+ *            the type of keys maintained by this map
+ * @param <V>
+ *            the type of mapped values
+ * @author Martin Morgenstern
+ */
+interface WeakKeyMap<K, V> extends Map<K, V> {
+    /**
+     * Removes entries belonging to reclaimed keys from this map, without
+     * performing any other operation.
+     */
+    void expungeStaleEntries();
+}
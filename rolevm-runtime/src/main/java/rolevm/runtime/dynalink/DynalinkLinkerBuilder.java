@@ -36,7 +36,8 @@ public class DynalinkLinkerBuilder {
         List<GuardingDynamicLinker> componentLinkers = new ArrayList<>();
         componentLinkers.add(new JLOLinker());
         componentLinkers.add(new FastpathLinker(guardedQuery));
-        componentLinkers.add(new StableLinker(guardedQuery));
+        componentLinkers.add(new PureClassLinker(guardedQuery));
+        componentLinkers.add(new StableLinker(guardedQuery, binder.createGetContextHandle()));
         componentLinkers.add(new UnstableLinker(binder.createGetContextHandle()));
         factory.setPrioritizedLinkers(componentLinkers);
         factory.setUnstableRelinkThreshold(unstableRelinkThreshold);
@@ -18,6 +18,9 @@ import rolevm.runtime.GuardedValue;
 /**
  * Component linker that that exclusively links stable call sites with a pure
  * receiver type, and guards the invocation with a type-specific switchpoint.
+ * If the receiver type is not pure, but no bound role declares a role method
+ * for the invoked method, the call site is still linked to a direct invocation,
+ * which is guarded by a method-specific switchpoint instead.
  * 
  * @author Martin Morgenstern
  */
@@ -37,13 +40,17 @@ public class FastpathLinker implements GuardingDynamicLinker {
         CallSiteDescriptor descriptor = request.getCallSiteDescriptor();
         MethodType callsiteType = descriptor.getMethodType();
         Class<?> staticReceiverType = callsiteType.parameterType(0);
+        String name = unwrapMethodName(descriptor);
+        MethodType lookupType = callsiteType.dropParameterTypes(0, 1);
         GuardedValue<Boolean> isPure = query.getGuardedIsPureType(staticReceiverType);
         if (!isPure.value()) {
-            return null;
+            isPure = query.getGuardedIsPureMethod(staticReceiverType, name, lookupType);
+            if (!isPure.value()) {
+                return null;
+            }
         }
         LOG.trace("fastpath link for {}", descriptor);
-        MethodHandle handle = descriptor.getLookup().findVirtual(staticReceiverType, unwrapMethodName(descriptor),
-                callsiteType.dropParameterTypes(0, 1));
+        MethodHandle handle = descriptor.getLookup().findVirtual(staticReceiverType, name, lookupType);
         return new GuardedInvocation(handle, isPure.switchpoint());
     }
 }
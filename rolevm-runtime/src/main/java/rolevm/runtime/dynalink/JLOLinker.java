@@ -35,7 +35,7 @@ public class JLOLinker implements GuardingDynamicLinker {
         MethodType callsiteType = descriptor.getMethodType();
         MethodType lookupType = callsiteType.dropParameterTypes(0, 1);
         String name = unwrapMethodName(descriptor);
-        if (!lookupType.equals(JLO_METHODS.get(name))) {
+        if (!isObjectMethod(name, lookupType)) {
             // we cannot link this request, try the next linker
             return null;
         }
@@ -44,6 +44,14 @@ public class JLOLinker implements GuardingDynamicLinker {
         return new GuardedInvocation(lookup.findVirtual(callsiteType.parameterType(0), name, lookupType));
     }
 
+    /**
+     * Returns {@code true} if {@code name} and {@code lookupType} (excluding the
+     * receiver) denote a method of {@link java.lang.Object}.
+     */
+    public static boolean isObjectMethod(final String name, final MethodType lookupType) {
+        return lookupType.equals(JLO_METHODS.get(name));
+    }
+
     /**
      * Computes the names and method types of the methods in
      * {@link java.lang.Object}.
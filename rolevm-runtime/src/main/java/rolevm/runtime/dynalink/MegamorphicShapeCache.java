@@ -0,0 +1,185 @@
+package rolevm.runtime.dynalink;
+
+import static java.lang.invoke.MethodHandles.exactInvoker;
+import static java.lang.invoke.MethodHandles.filterArguments;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodType.methodType;
+import static rolevm.api.DispatchContext.ALL_ACTIVE_SWITCHPOINT;
+import static rolevm.api.DispatchContext.SKIP_INACTIVE_HANDLE;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+
+import rolevm.api.DispatchContext;
+import rolevm.runtime.proceed.ProceedInvocation;
+import rolevm.runtime.proceed.ProceedInvocations;
+
+/**
+ * Per call site hash table that maps the {@linkplain DispatchContext#shape()
+ * shape} of a dispatch context to a prebuilt target, similar to an itable.
+ * Contexts are {@linkplain ProceedInvocation#filter(DispatchContext) filtered}
+ * and inactive roles are skipped before the lookup, so that the first role of
+ * a context always has a role method, which the target of its shape invokes
+ * directly (see {@link ProceedInvocation#specialize(Class)}). In contrast to
+ * {@link ShapeInlineCache}, the number of shapes does not affect the length of
+ * a guard chain, and no nested call site is involved: each call costs a single
+ * hash lookup and an indirect call of the found target. The table holds at
+ * most {@code capacity} shapes, after which the least recently used shapes are
+ * evicted.
+ * <p>
+ * The method handle returned by {@link #invoker()} has the type of a proceed
+ * invocation, i.e., it expects the dispatch context as its first argument,
+ * followed by the receiver and any remaining arguments.
+ *
+ * @implNote Lookups are lock-free and read an immutable, open-addressed table,
+ *           which is copied on each (synchronized) insertion. Recency is
+ *           approximated with the CLOCK algorithm, so that a hit only writes a
+ *           reference bit if it has not already been set since the last sweep.
+ * @author Martin Morgenstern
+ */
+class MegamorphicShapeCache {
+    /**
+     * Default capacity, which can be configured with the system property
+     * {@code rolevm.shapeCacheSize}.
+     */
+    static final int DEFAULT_CAPACITY = Integer.getInteger("rolevm.shapeCacheSize", 64);
+
+    private static final MethodHandle TARGET_FOR;
+    private static final MethodHandle FILTER;
+
+    static {
+        Lookup lookup = MethodHandles.lookup();
+        try {
+            TARGET_FOR = lookup.findVirtual(MegamorphicShapeCache.class, "targetFor",
+                    methodType(MethodHandle.class, DispatchContext.class));
+            FILTER = lookup.findVirtual(ProceedInvocation.class, "filter",
+                    methodType(DispatchContext.class, DispatchContext.class));
+        } catch (ReflectiveOperationException e) {
+            throw (AssertionError) new AssertionError().initCause(e);
+        }
+    }
+
+    private final MethodType type;
+    private final ProceedInvocation invocation;
+
+    /** Cached entries in insertion order, swept by the clock {@link #hand}. */
+    private final Entry[] entries;
+    private int size;
+    private int hand;
+
+    /** Open-addressed hash table of {@link #entries}, replaced on each miss. */
+    private volatile Entry[] table;
+
+    private static final class Entry {
+        final Object shape;
+        final MethodHandle target;
+        volatile boolean used;
+
+        Entry(final Object shape, final MethodHandle target) {
+            this.shape = shape;
+            this.target = target;
+        }
+    }
+
+    MegamorphicShapeCache(final ProceedInvocations factory, final Lookup lookup, final String name,
+            final MethodType type) {
+        this(factory, lookup, name, type, DEFAULT_CAPACITY);
+    }
+
+    MegamorphicShapeCache(final ProceedInvocations factory, final Lookup lookup, final String name,
+            final MethodType type, final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.type = type;
+        invocation = factory.getInvocation(lookup, name, type);
+        entries = new Entry[capacity];
+        int length = 2;
+        while (length < 2 * capacity) {
+            length <<= 1;
+        }
+        table = new Entry[length];
+    }
+
+    /** Returns a method handle that invokes the cached target for each context. */
+    MethodHandle invoker() {
+        final MethodHandle dispatch = foldArguments(exactInvoker(type), TARGET_FOR.bindTo(this));
+        final MethodHandle active = ALL_ACTIVE_SWITCHPOINT.guardWithTest(dispatch,
+                filterArguments(dispatch, 0, SKIP_INACTIVE_HANDLE));
+        return filterArguments(active, 0, FILTER.bindTo(invocation));
+    }
+
+    /** Returns the number of cached shapes. */
+    synchronized int size() {
+        return size;
+    }
+
+    /** Returns {@code true} if {@code shape} is currently cached. */
+    boolean contains(final Object shape) {
+        return find(table, shape) != null;
+    }
+
+    private static int indexFor(final Object shape, final int length) {
+        final int h = System.identityHashCode(shape);
+        return (h ^ (h >>> 16)) & (length - 1);
+    }
+
+    private static Entry find(final Entry[] table, final Object shape) {
+        final int mask = table.length - 1;
+        for (int i = indexFor(shape, table.length);; i = (i + 1) & mask) {
+            final Entry e = table[i];
+            if (e == null || e.shape == shape) {
+                return e;
+            }
+        }
+    }
+
+    /** Returns the target for the shape of a filtered, active {@code context}. */
+    private MethodHandle targetFor(final DispatchContext context) throws ReflectiveOperationException {
+        final Entry e = find(table, context.shape());
+        if (e == null) {
+            return miss(context);
+        }
+        if (!e.used) {
+            e.used = true;
+        }
+        return e.target;
+    }
+
+    private synchronized MethodHandle miss(final DispatchContext context) throws ReflectiveOperationException {
+        final Object shape = context.shape();
+        final Entry existing = find(table, shape);
+        if (existing != null) {
+            return existing.target;
+        }
+        final Object role = context.target();
+        final Entry e = new Entry(shape, invocation.specialize(role != null ? role.getClass() : null));
+        if (size < entries.length) {
+            entries[size++] = e;
+        } else {
+            while (entries[hand].used) {
+                entries[hand].used = false;
+                hand = (hand + 1) % entries.length;
+            }
+            entries[hand] = e;
+            hand = (hand + 1) % entries.length;
+        }
+        rehash();
+        return e.target;
+    }
+
+    private void rehash() {
+        final Entry[] newTable = new Entry[table.length];
+        final int mask = newTable.length - 1;
+        for (int n = 0; n < size; n++) {
+            int i = indexFor(entries[n].shape, newTable.length);
+            while (newTable[i] != null) {
+                i = (i + 1) & mask;
+            }
+            newTable[i] = entries[n];
+        }
+        table = newTable;
+    }
+}
@@ -0,0 +1,229 @@
+package rolevm.runtime.dynalink;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.exactInvoker;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import jdk.dynalink.CallSiteDescriptor;
+import jdk.dynalink.linker.GuardedInvocation;
+import jdk.dynalink.support.AbstractRelinkableCallSite;
+import jdk.dynalink.support.ChainedCallSite;
+
+/**
+ * Polymorphic inline cache with a configurable depth, which replaces
+ * {@link ChainedCallSite} for default and proceed call sites. In contrast to
+ * {@link ChainedCallSite}, which tests the most recently linked invocation
+ * first and evicts the oldest one, this call site counts the hits of each
+ * invocation for a short while after each relink. The chain is then rebuilt
+ * (without counters) so that the most frequently hit invocations are tested
+ * first, and the least frequently hit invocation is evicted when the chain is
+ * full. Invocations without a guard are always tested last.
+ * <p>
+ * The unstable relink threshold of the dynamic linker (see
+ * {@link jdk.dynalink.DynamicLinkerFactory#setUnstableRelinkThreshold(int)})
+ * is adapted per call site: relinks that only fill free slots of the cache are
+ * not counted, so that call sites with a stable set of up to {@code depth}
+ * receiver types never become unstable. Once the cache has been filled, every
+ * relink counts as churn.
+ *
+ * @implNote The relink count is bound into the {@code relinkAndInvoke} handle
+ *           by the dynamic linker, so a relink is not counted by keeping the
+ *           previous handle as the fallback of the chain.
+ * @author Martin Morgenstern
+ */
+public class ProfilingCallSite extends AbstractRelinkableCallSite {
+    /** Default depth, configurable with the {@code rolevm.picDepth} property. */
+    static final int DEFAULT_DEPTH = Integer.getInteger("rolevm.picDepth", 8);
+
+    /**
+     * Number of calls that are profiled after each relink, configurable with the
+     * {@code rolevm.picProfileCalls} property.
+     */
+    static final int DEFAULT_PROFILE_CALLS = Integer.getInteger("rolevm.picProfileCalls", 1000);
+
+    private static final MethodHandle HIT;
+    private static final MethodHandle PRUNE;
+
+    static {
+        Lookup lookup = MethodHandles.lookup();
+        try {
+            HIT = lookup.findVirtual(ProfilingCallSite.class, "hit", methodType(void.class, Entry.class));
+            PRUNE = lookup.findVirtual(ProfilingCallSite.class, "prune",
+                    methodType(MethodHandle.class, boolean.class));
+        } catch (ReflectiveOperationException e) {
+            throw (AssertionError) new AssertionError().initCause(e);
+        }
+    }
+
+    /** Orders the entries from the last to the first tested one. */
+    private static final Comparator<Entry> TEST_ORDER = Comparator
+            .comparing((Entry e) -> e.invocation.getGuard() != null).thenComparingInt(e -> e.hits);
+
+    private final int depth;
+    private final int profileCalls;
+
+    /** The linked invocations, in insertion order (guarded by {@code this}). */
+    private final List<Entry> entries = new ArrayList<>();
+
+    /** The fallback of the chain (guarded by {@code this}). */
+    private MethodHandle relinkAndInvoke;
+
+    /** Number of invocations added by relinks that did not count as churn. */
+    private int filled;
+
+    /** Profiled calls since the last relink (updated racily). */
+    private int calls;
+    private volatile boolean profiling;
+
+    private static final class Entry {
+        final GuardedInvocation invocation;
+        int hits;
+
+        Entry(final GuardedInvocation invocation) {
+            this.invocation = invocation;
+        }
+    }
+
+    /** Creates a call site with the default depth. */
+    public ProfilingCallSite(final CallSiteDescriptor descriptor) {
+        this(descriptor, DEFAULT_DEPTH);
+    }
+
+    /** Creates a call site that holds at most {@code depth} invocations. */
+    public ProfilingCallSite(final CallSiteDescriptor descriptor, final int depth) {
+        this(descriptor, depth, DEFAULT_PROFILE_CALLS);
+    }
+
+    ProfilingCallSite(final CallSiteDescriptor descriptor, final int depth, final int profileCalls) {
+        super(descriptor);
+        if (depth < 1 || profileCalls < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.depth = depth;
+        this.profileCalls = profileCalls;
+    }
+
+    @Override
+    public synchronized void initialize(final MethodHandle relinkAndInvoke) {
+        this.relinkAndInvoke = relinkAndInvoke;
+        super.initialize(relinkAndInvoke);
+    }
+
+    @Override
+    public synchronized void relink(final GuardedInvocation invocation, final MethodHandle relinkAndInvoke) {
+        removeInvalidated(false);
+        add(invocation);
+        if (filled < depth && invocation.getGuard() != null) {
+            filled++;
+        } else {
+            this.relinkAndInvoke = relinkAndInvoke;
+        }
+        startProfiling();
+    }
+
+    @Override
+    public synchronized void resetAndRelink(final GuardedInvocation invocation, final MethodHandle relinkAndInvoke) {
+        entries.clear();
+        add(invocation);
+        this.relinkAndInvoke = relinkAndInvoke;
+        startProfiling();
+    }
+
+    /** Returns the linked invocations in the order in which they are tested. */
+    synchronized List<GuardedInvocation> invocations() {
+        List<GuardedInvocation> result = new ArrayList<>();
+        for (Entry e : sortedEntries()) {
+            result.add(0, e.invocation);
+        }
+        return result;
+    }
+
+    /** Returns {@code true} if calls are currently being counted. */
+    boolean isProfiling() {
+        return profiling;
+    }
+
+    private void add(final GuardedInvocation invocation) {
+        if (invocation.getGuard() == null) {
+            entries.removeIf(e -> e.invocation.getGuard() == null);
+        } else if (entries.size() >= depth) {
+            entries.stream().filter(e -> e.invocation.getGuard() != null).min(TEST_ORDER)
+                    .ifPresent(entries::remove);
+        }
+        entries.add(new Entry(invocation));
+    }
+
+    private void removeInvalidated(final boolean catches) {
+        entries.removeIf(e -> e.invocation.hasBeenInvalidated() || (catches && e.invocation.getException() != null));
+    }
+
+    private void startProfiling() {
+        for (Entry e : entries) {
+            e.hits >>>= 1; // let older profiles decay
+        }
+        calls = 0;
+        profiling = profileCalls > 0;
+        rebuild();
+    }
+
+    private List<Entry> sortedEntries() {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(TEST_ORDER);
+        return sorted;
+    }
+
+    /** Folds the chain, so that the entry with the most hits is tested first. */
+    private MethodHandle rebuild() {
+        MethodHandle pruneSwitchpoints = pruneAndInvoke(false);
+        MethodHandle pruneCatches = pruneAndInvoke(true);
+        MethodHandle target = relinkAndInvoke;
+        for (Entry e : sortedEntries()) {
+            GuardedInvocation invocation = profiling ? counting(e) : e.invocation;
+            target = invocation.compose(target, pruneSwitchpoints, pruneCatches);
+        }
+        setTarget(target);
+        return target;
+    }
+
+    private GuardedInvocation counting(final Entry e) {
+        MethodHandle counter = dropArguments(insertArguments(HIT, 0, this, e), 0, type().parameterList());
+        return e.invocation.replaceMethods(foldArguments(e.invocation.getInvocation(), counter),
+                e.invocation.getGuard());
+    }
+
+    @SuppressWarnings("unused")
+    private void hit(final Entry e) {
+        e.hits++;
+        if (++calls >= profileCalls && profiling) {
+            stopProfiling();
+        }
+    }
+
+    private synchronized void stopProfiling() {
+        if (profiling) {
+            profiling = false;
+            rebuild();
+        }
+    }
+
+    /** Like {@link ChainedCallSite}, removes invalidated invocations and retries. */
+    private MethodHandle pruneAndInvoke(final boolean catches) {
+        MethodHandle prune = dropArguments(insertArguments(PRUNE, 0, this, catches), 0, type().parameterList());
+        return foldArguments(exactInvoker(type()), prune);
+    }
+
+    @SuppressWarnings("unused")
+    private synchronized MethodHandle prune(final boolean catches) {
+        removeInvalidated(catches);
+        return rebuild();
+    }
+}
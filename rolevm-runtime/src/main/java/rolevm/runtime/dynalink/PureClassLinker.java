@@ -0,0 +1,64 @@
+package rolevm.runtime.dynalink;
+
+import static rolevm.runtime.Bootstrap.LOG;
+import static rolevm.runtime.Bootstrap.unwrapMethodName;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.Objects;
+
+import jdk.dynalink.CallSiteDescriptor;
+import jdk.dynalink.linker.GuardedInvocation;
+import jdk.dynalink.linker.GuardingDynamicLinker;
+import jdk.dynalink.linker.LinkRequest;
+import jdk.dynalink.linker.LinkerServices;
+import jdk.dynalink.linker.support.Guards;
+import rolevm.runtime.GuardedQuery;
+import rolevm.runtime.GuardedValue;
+
+/**
+ * Component linker that links stable call sites whose <em>runtime</em> receiver
+ * class is pure, complementing the {@link FastpathLinker}, which only considers
+ * the static receiver type. Since common supertypes such as {@link Object} and
+ * interfaces become impure as soon as any player exists, this linker allows call
+ * sites with such static types to stay on a direct invocation, which is guarded
+ * by an exact class check and the switchpoint of the receiver class. Like the
+ * {@link FastpathLinker}, this linker falls back to the switchpoint of the
+ * invoked method if the receiver class is not pure.
+ * 
+ * @author Martin Morgenstern
+ */
+public class PureClassLinker implements GuardingDynamicLinker {
+    private final GuardedQuery query;
+
+    public PureClassLinker(final GuardedQuery query) {
+        this.query = Objects.requireNonNull(query);
+    }
+
+    @Override
+    public GuardedInvocation getGuardedInvocation(final LinkRequest request, final LinkerServices unused)
+            throws Exception {
+        Object receiver = request.getReceiver();
+        if (request.isCallSiteUnstable() || receiver == null) {
+            return null;
+        }
+        CallSiteDescriptor descriptor = request.getCallSiteDescriptor();
+        MethodType callsiteType = descriptor.getMethodType();
+        Class<?> receiverClass = receiver.getClass();
+        if (receiverClass == callsiteType.parameterType(0)) {
+            return null; // already rejected by the FastpathLinker
+        }
+        String name = unwrapMethodName(descriptor);
+        MethodType lookupType = callsiteType.dropParameterTypes(0, 1);
+        GuardedValue<Boolean> isPure = query.getGuardedIsPureType(receiverClass);
+        if (!isPure.value()) {
+            isPure = query.getGuardedIsPureMethod(receiverClass, name, lookupType);
+            if (!isPure.value()) {
+                return null;
+            }
+        }
+        LOG.trace("pure class link for {}", descriptor);
+        MethodHandle handle = descriptor.getLookup().findVirtual(callsiteType.parameterType(0), name, lookupType);
+        return new GuardedInvocation(handle, Guards.isOfClass(receiverClass, callsiteType), isPure.switchpoint());
+    }
+}
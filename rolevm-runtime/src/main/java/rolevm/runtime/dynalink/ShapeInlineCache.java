@@ -0,0 +1,131 @@
+package rolevm.runtime.dynalink;
+
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.util.ArrayList;
+import java.util.List;
+
+import rolevm.api.DispatchContext;
+import rolevm.runtime.proceed.ProceedInvocations;
+
+/**
+ * Polymorphic inline cache that dispatches on the
+ * {@linkplain DispatchContext#shape() shape} of a dispatch context, i.e., on
+ * the sequence of role types instead of the identity of the player. Each cached
+ * shape gets its own proceed invocation, whose nested call sites therefore only
+ * ever see the role types of this shape and stay monomorphic. After
+ * {@link #MAX_SHAPES} shapes, all other shapes are dispatched through a
+ * {@link MegamorphicShapeCache}.
+ * <p>
+ * The method handle returned by {@link #dynamicInvoker()} has the type of a
+ * proceed invocation, i.e., it expects the dispatch context as its first
+ * argument, followed by the receiver and any remaining arguments.
+ * 
+ * @author Martin Morgenstern
+ */
+class ShapeInlineCache {
+    /** Maximum number of shapes with a dedicated proceed invocation. */
+    static final int MAX_SHAPES = 8;
+
+    private static final MethodHandle HAS_SHAPE;
+    private static final MethodHandle MISS;
+
+    static {
+        Lookup lookup = MethodHandles.lookup();
+        try {
+            HAS_SHAPE = lookup.findStatic(ShapeInlineCache.class, "hasShape",
+                    methodType(boolean.class, Object.class, DispatchContext.class));
+            MISS = lookup.findVirtual(ShapeInlineCache.class, "miss", methodType(Object.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw (AssertionError) new AssertionError().initCause(e);
+        }
+    }
+
+    private final ProceedInvocations factory;
+    private final Lookup lookup;
+    private final String name;
+    private final MethodType type;
+    private final MutableCallSite callSite;
+    private final List<Object> shapes = new ArrayList<>();
+    private final List<MethodHandle> targets = new ArrayList<>();
+    private MethodHandle generic;
+
+    ShapeInlineCache(final ProceedInvocations factory, final Lookup lookup, final String name,
+            final MethodType type) {
+        this.factory = factory;
+        this.lookup = lookup;
+        this.name = name;
+        this.type = type;
+        callSite = new MutableCallSite(type);
+        callSite.setTarget(missHandler());
+    }
+
+    /** Returns a method handle that always invokes the current cache target. */
+    MethodHandle dynamicInvoker() {
+        return callSite.dynamicInvoker();
+    }
+
+    /** Returns the number of cached shapes. */
+    synchronized int size() {
+        return shapes.size();
+    }
+
+    private static boolean hasShape(final Object shape, final DispatchContext context) {
+        return context.shape() == shape;
+    }
+
+    private MethodHandle missHandler() {
+        return MISS.bindTo(this).asCollector(Object[].class, type.parameterCount()).asType(type);
+    }
+
+    private Object miss(final Object[] args) throws Throwable {
+        return targetFor((DispatchContext) args[0]).invokeWithArguments(args);
+    }
+
+    /**
+     * Returns the proceed invocation for the shape of {@code context}, adding it
+     * to this cache (or switching to the generic invocation) if necessary.
+     */
+    private synchronized MethodHandle targetFor(final DispatchContext context) {
+        final Object shape = context.shape();
+        final int index = shapes.indexOf(shape);
+        if (index >= 0) {
+            return targets.get(index);
+        }
+        if (shapes.size() < MAX_SHAPES) {
+            final MethodHandle target = newProceed();
+            shapes.add(shape);
+            targets.add(target);
+            relink();
+            return target;
+        }
+        if (generic == null) {
+            generic = new MegamorphicShapeCache(factory, lookup, name, type).invoker();
+            relink();
+        }
+        return generic;
+    }
+
+    private MethodHandle newProceed() {
+        return factory.getInvocation(lookup, name, type).getHandle();
+    }
+
+    /** Rebuilds the guard chain, testing the most recently added shape first. */
+    private void relink() {
+        MethodHandle chain = generic != null ? generic : missHandler();
+        final List<Class<?>> remaining = type.parameterList().subList(1, type.parameterCount());
+        for (int i = 0; i < shapes.size(); i++) {
+            final MethodHandle test = dropArguments(insertArguments(HAS_SHAPE, 0, shapes.get(i)), 1, remaining);
+            chain = guardWithTest(test, targets.get(i), chain);
+        }
+        callSite.setTarget(chain);
+    }
+}
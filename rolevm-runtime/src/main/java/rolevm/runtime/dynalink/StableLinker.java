@@ -1,13 +1,24 @@
 package rolevm.runtime.dynalink;
 
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodType.methodType;
 import static rolevm.runtime.Bootstrap.LOG;
 import static rolevm.runtime.Bootstrap.unwrapMethodName;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
+import java.lang.invoke.SwitchPoint;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 import jdk.dynalink.CallSiteDescriptor;
 import jdk.dynalink.linker.GuardedInvocation;
@@ -15,24 +26,61 @@ import jdk.dynalink.linker.GuardingDynamicLinker;
 import jdk.dynalink.linker.LinkRequest;
 import jdk.dynalink.linker.LinkerServices;
 import jdk.dynalink.linker.support.Guards;
+import rolevm.api.Compartment;
 import rolevm.api.DispatchContext;
 import rolevm.runtime.GuardedQuery;
 import rolevm.runtime.GuardedValue;
+import rolevm.runtime.binder.ConcurrentWeakHashMap;
+import rolevm.runtime.proceed.ProceedInvocation;
 import rolevm.runtime.proceed.ProceedInvocations;
 
 /**
  * Component linker that links stable call sites with a bound method handle that
  * captures an instance-specific {@link DispatchContext}, guarded by the
- * corresponding context switchpoint and an identity guard.
+ * corresponding context switchpoint and an identity guard. The invocation is
+ * additionally guarded by the revalidation switchpoint of the static receiver
+ * type, so that the call site gets relinked (possibly onto the fast path) when
+ * that type becomes pure again. Roles of inactive compartments are removed from
+ * the captured context, which is therefore also guarded by the activation
+ * switchpoints of the compartments of all bound roles. If some of the remaining
+ * roles are only activated for some threads, they are filtered on each call.
+ * Roles without a role method for the invoked method are removed from the
+ * captured context as well, and the first remaining role method is invoked
+ * directly (see {@link ProceedInvocation#compile(DispatchContext)}).
+ * <p>
+ * A receiver-specific link is only useful as long as the call site sees few
+ * receivers. Therefore, when a call site gets relinked by this linker for a
+ * different receiver than the one of its first link, it is linked to a
+ * {@link ShapeInlineCache} instead, which looks up the dispatch
+ * context of the receiver on each call and dispatches on its shape, so that
+ * all players with the same role types share one monomorphic target. This link
+ * is neither guarded by the receiver identity nor by context switchpoints, and
+ * therefore stays valid when roles are bound or unbound. A relink for the same
+ * receiver, e.g., after its context switchpoint has been invalidated, gets a
+ * receiver-specific link again.
  * 
  * @author Martin Morgenstern
  */
 public class StableLinker implements GuardingDynamicLinker {
+    private static final MethodType COMBINER_TYPE = methodType(DispatchContext.class, Object.class);
+
     private final ProceedInvocations factory = new ProceedInvocations();
     private final GuardedQuery query;
+    private final MethodHandle getContext;
+
+    /**
+     * Descriptors of the call sites that have already been linked by this
+     * linker, mapped to the receiver of their first link. Each call site has its
+     * own descriptor instance, see {@link rolevm.runtime.Bootstrap}.
+     */
+    private final Map<Object, WeakReference<Object>> linkedSites = new ConcurrentWeakHashMap<>();
 
-    public StableLinker(final GuardedQuery query) {
+    public StableLinker(final GuardedQuery query, final MethodHandle getContext) {
+        if (!COMBINER_TYPE.equals(getContext.type())) { // forces NPE
+            throw new WrongMethodTypeException(getContext + " should be of type " + COMBINER_TYPE);
+        }
         this.query = Objects.requireNonNull(query);
+        this.getContext = getContext;
     }
 
     @Override
@@ -46,17 +94,73 @@ public class StableLinker implements GuardingDynamicLinker {
         MethodType lookupType = callsiteType.dropParameterTypes(0, 1);
         String name = unwrapMethodName(descriptor);
         Lookup lookup = descriptor.getLookup();
-        MethodHandle handle = lookup.findVirtual(callsiteType.parameterType(0), name, lookupType);
         Object receiver = request.getReceiver();
+        if (isRelinkForOtherReceiver(descriptor, receiver)) {
+            return shapeInvocation(descriptor, lookup, name);
+        }
+        MethodHandle handle = lookup.findVirtual(callsiteType.parameterType(0), name, lookupType);
         GuardedValue<Optional<DispatchContext>> guardedContext = query.getGuardedDispatchContext(receiver);
+        List<SwitchPoint> switchpoints = new ArrayList<>();
+        switchpoints.add(guardedContext.switchpoint());
+        switchpoints.add(query.getRevalidationSwitchpoint(callsiteType.parameterType(0)));
         LOG.trace("stable link for {}", descriptor);
         if (guardedContext.value().isPresent()) {
-            MethodHandle proceed = factory
-                    .getInvocation(lookup, name, callsiteType.insertParameterTypes(0, DispatchContext.class))
-                    .getHandle();
-            MethodHandle boundProceed = proceed.bindTo(guardedContext.value().get());
-            return new GuardedInvocation(boundProceed, Guards.getIdentityGuard(receiver), guardedContext.switchpoint());
+            DispatchContext context = guardedContext.value().get();
+            addActivationSwitchpoints(context, switchpoints);
+            ProceedInvocation invocation = factory.getInvocation(lookup, name,
+                    callsiteType.insertParameterTypes(0, DispatchContext.class));
+            context = invocation.filter(context.activeOnly());
+            if (context != DispatchContext.END) {
+                MethodHandle proceed = context.isThreadDependent()
+                        ? invocation.getUnfilteredHandle().bindTo(context)
+                        : invocation.compile(context);
+                return new GuardedInvocation(proceed, Guards.getIdentityGuard(receiver),
+                        switchpoints.toArray(new SwitchPoint[0]), null);
+            }
+        }
+        return new GuardedInvocation(handle, Guards.getIdentityGuard(receiver),
+                switchpoints.toArray(new SwitchPoint[0]), null);
+    }
+
+    /**
+     * Returns {@code true} if the call site has been linked by this linker
+     * before, for a receiver other than {@code receiver}.
+     */
+    private boolean isRelinkForOtherReceiver(final CallSiteDescriptor descriptor, final Object receiver) {
+        WeakReference<Object> first = linkedSites.putIfAbsent(descriptor, new WeakReference<>(receiver));
+        return first != null && first.get() != receiver;
+    }
+
+    /**
+     * Links an invocation that looks up the dispatch context of the receiver and
+     * dispatches on its shape. It must be relinked only when the static receiver
+     * type becomes pure again.
+     */
+    private GuardedInvocation shapeInvocation(final CallSiteDescriptor descriptor, final Lookup lookup,
+            final String name) {
+        MethodType callsiteType = descriptor.getMethodType();
+        Class<?> receiverType = callsiteType.parameterType(0);
+        ShapeInlineCache cache = new ShapeInlineCache(factory, lookup, name,
+                callsiteType.insertParameterTypes(0, DispatchContext.class));
+        MethodHandle invocation = foldArguments(cache.dynamicInvoker(),
+                getContext.asType(methodType(DispatchContext.class, receiverType)));
+        LOG.trace("shape link for {}", descriptor);
+        return new GuardedInvocation(invocation, query.getRevalidationSwitchpoint(receiverType));
+    }
+
+    /**
+     * Adds the activation switchpoint of each distinct compartment in the chain
+     * to {@code switchpoints}. This must happen before the activation state is
+     * queried, see {@link Compartment#getActivationSwitchpoint()}.
+     */
+    private static void addActivationSwitchpoints(final DispatchContext context,
+            final List<SwitchPoint> switchpoints) {
+        Set<Compartment> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (DispatchContext ctx = context; ctx != DispatchContext.END; ctx = ctx.next()) {
+            Compartment compartment = ctx.compartment();
+            if (compartment != null && seen.add(compartment)) {
+                switchpoints.add(compartment.getActivationSwitchpoint());
+            }
         }
-        return new GuardedInvocation(handle, Guards.getIdentityGuard(receiver), guardedContext.switchpoint());
     }
 }
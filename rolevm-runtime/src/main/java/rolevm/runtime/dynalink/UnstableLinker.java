@@ -21,7 +21,10 @@ import rolevm.runtime.proceed.ProceedInvocations;
 /**
  * Component linker for unstable call sites, which links an unconditional
  * invocation to the most generic (but also slowest) role method dispatch
- * algorithm, which requires a hash map lookup on each invocation.
+ * algorithm, which requires a hash map lookup on each invocation. The dispatch
+ * context is then dispatched through a {@link MegamorphicShapeCache}, so that
+ * each shape gets its own proceed invocation and the nested proceed call sites
+ * do not become megamorphic as well.
  * 
  * @author Martin Morgenstern
  */
@@ -48,8 +51,8 @@ public class UnstableLinker implements GuardingDynamicLinker {
         Class<?> receiverType = callsiteType.parameterType(0);
         Lookup lookup = descriptor.getLookup();
         lookup.findVirtual(receiverType, name, lookupType); // fail early if core type has no such method
-        MethodHandle proceed = factory
-                .getInvocation(lookup, name, callsiteType.insertParameterTypes(0, DispatchContext.class)).getHandle();
+        MethodHandle proceed = new MegamorphicShapeCache(factory, lookup, name,
+                callsiteType.insertParameterTypes(0, DispatchContext.class)).invoker();
         MethodHandle foldedProceed = foldArguments(proceed,
                 getContext.asType(methodType(DispatchContext.class, receiverType)));
         LOG.trace("unstable link for {}", descriptor);
@@ -10,7 +10,8 @@ import jdk.dynalink.DynamicLinker;
 
 /**
  * Adapted version of {@link ProceedInvocation} that discards any leading
- * argument.
+ * argument. It is used for proceed invocations inside role methods, whose
+ * context has already been filtered.
  * 
  * @author Martin Morgenstern
  */
@@ -24,6 +25,6 @@ public class AdaptedProceedInvocation extends ProceedInvocation {
 
     @Override
     public MethodHandle getHandle() {
-        return dropArguments(super.getHandle(), 0, parameterType);
+        return dropArguments(getUnfilteredHandle(), 0, parameterType);
     }
 }
@@ -1,21 +1,30 @@
 package rolevm.runtime.proceed;
 
+import static java.lang.invoke.MethodHandles.dropArguments;
 import static java.lang.invoke.MethodHandles.filterArguments;
 import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
 import static jdk.dynalink.StandardOperation.CALL;
+import static rolevm.api.DispatchContext.ALL_ACTIVE_SWITCHPOINT;
 import static rolevm.api.DispatchContext.NEXT_HANDLE;
+import static rolevm.api.DispatchContext.SKIP_INACTIVE_HANDLE;
 import static rolevm.api.DispatchContext.TARGET_HANDLE;
 
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
 import java.lang.invoke.WrongMethodTypeException;
 import java.util.Objects;
+import java.util.function.Predicate;
 
 import jdk.dynalink.CallSiteDescriptor;
 import jdk.dynalink.DynamicLinker;
-import jdk.dynalink.support.ChainedCallSite;
 import rolevm.api.DispatchContext;
+import rolevm.runtime.RoleMethods;
+import rolevm.runtime.RoleMethods.Signature;
+import rolevm.runtime.dynalink.ProfilingCallSite;
 
 /**
  * Represents a {@code proceed} macro-instruction for a given method name and
@@ -31,11 +40,34 @@ import rolevm.api.DispatchContext;
  * return base.method(...);}
  * </pre>
  * 
+ * Before that, roles without a role method for this method are removed from
+ * the context (see {@link #filter(DispatchContext)}), and roles of inactive
+ * compartments are skipped, i.e., {@code context} is replaced by
+ * {@code context.skipInactive()}, but only after a compartment has been
+ * deactivated for the first time. Since the roles of a filtered context all
+ * have a role method for this method, role methods can pass their (filtered)
+ * context on to nested proceed invocations, which therefore do not filter
+ * again.
+ * 
  * @author Martin Morgenstern
  */
 public class ProceedInvocation {
+    private static final MethodHandle FILTER_HANDLE;
+
+    static {
+        try {
+            FILTER_HANDLE = MethodHandles.lookup().findVirtual(ProceedInvocation.class, "filter",
+                    methodType(DispatchContext.class, DispatchContext.class));
+        } catch (ReflectiveOperationException e) {
+            throw (AssertionError) new AssertionError().initCause(e);
+        }
+    }
+
     private final DynamicLinker linker;
     private final CallSiteDescriptor descriptor;
+    private final String name;
+    private final Signature signature;
+    private final Predicate<Object> hasRoleMethod;
 
     public ProceedInvocation(DynamicLinker linker, Lookup lookup, String name, MethodType type) {
         if (type.parameterCount() < 2 || type.parameterType(0) != DispatchContext.class) {
@@ -44,17 +76,114 @@ public class ProceedInvocation {
         MethodType callSiteType = type.insertParameterTypes(0, Object.class);
         this.descriptor = new CallSiteDescriptor(lookup, CALL.named(name), callSiteType);
         this.linker = Objects.requireNonNull(linker);
+        this.name = name;
+        final Signature signature = new Signature(name, type.dropParameterTypes(0, 2));
+        this.signature = signature;
+        this.hasRoleMethod = role -> RoleMethods.of(role.getClass()).declares(signature);
     }
 
     public MethodHandle getHandle() {
+        return filterArguments(getUnfilteredHandle(), 0, FILTER_HANDLE.bindTo(this));
+    }
+
+    /**
+     * Like {@link #getHandle()}, but for contexts that have already been
+     * {@linkplain #filter(DispatchContext) filtered}.
+     */
+    public MethodHandle getUnfilteredHandle() {
         return combineWithContext(callSiteInvoker());
     }
 
+    /**
+     * Like {@link #getHandle()}, but without removing roles that do not have a
+     * role method for this method, and without skipping inactive roles, which is
+     * only correct for {@linkplain #filter(DispatchContext) filtered} contexts
+     * whose roles are known to be active, e.g., when guarded by the activation
+     * switchpoints of their compartments.
+     */
+    public MethodHandle getActiveContextHandle() {
+        return combineWithActiveContext(callSiteInvoker());
+    }
+
+    /**
+     * Compiles a handle for the given constant context, which is equivalent to
+     * {@code getActiveContextHandle().bindTo(context)}, i.e., the same
+     * restrictions apply. If the first role has a matching role method, the
+     * handle invokes it directly, with the role and the remaining context bound
+     * as constants, so that neither the context has to be dereferenced nor a
+     * nested call site has to be passed on each call. Subsequent roles are
+     * invoked by the proceed call sites in the role methods, as usual.
+     * 
+     * @implNote Only the first step of the chain is compiled, not a straight-line
+     *           handle from the first role to the core method. The second and
+     *           later role methods are reached through the {@code proceed} call
+     *           sites in the bytecode of the preceding role methods. Those call
+     *           sites belong to the role classes and are shared by all players,
+     *           so they cannot be bound to the context of one player. Compiling
+     *           the whole chain would require a copy of the role methods per
+     *           context, e.g., in hidden classes, which need Java 15, whereas the
+     *           runtime targets Java 11. The nested call sites cache their
+     *           targets per role class instead (see {@link ProfilingCallSite}).
+     * @throws IllegalAccessException
+     *             if the role method is not accessible
+     */
+    public MethodHandle compile(final DispatchContext context) throws IllegalAccessException {
+        final Object role = context.target();
+        if (role != null) {
+            final MethodType type = descriptor.getMethodType().dropParameterTypes(0, 1);
+            final MethodHandle roleMethod = RoleMethods.of(role.getClass()).find(descriptor.getLookup(), name, type);
+            if (roleMethod != null) {
+                return insertArguments(roleMethod, 0, role, context.next());
+            }
+        }
+        return getActiveContextHandle().bindTo(context);
+    }
+
+    /**
+     * Returns a handle that is equivalent to {@link #getActiveContextHandle()}
+     * for contexts whose first role is of type {@code roleType}, or for
+     * {@link DispatchContext#END} if {@code roleType} is {@code null}. The role
+     * method (or the core method) is invoked directly instead of through the
+     * nested call site.
+     *
+     * @throws ReflectiveOperationException
+     *             if the core method cannot be found, or a method is not
+     *             accessible
+     */
+    public MethodHandle specialize(final Class<?> roleType) throws ReflectiveOperationException {
+        final MethodType type = descriptor.getMethodType().dropParameterTypes(0, 1);
+        final Lookup lookup = descriptor.getLookup();
+        if (roleType == null) {
+            final MethodHandle core = lookup.findVirtual(type.parameterType(1), name, type.dropParameterTypes(0, 2));
+            return dropArguments(core, 0, DispatchContext.class);
+        }
+        final MethodHandle roleMethod = RoleMethods.of(roleType).find(lookup, name, type);
+        if (roleMethod == null) {
+            return getActiveContextHandle();
+        }
+        return combineWithActiveContext(roleMethod.asType(roleMethod.type().changeParameterType(0, Object.class)));
+    }
+
+    /**
+     * Returns a chain with only the roles of {@code context} that have a role
+     * method for this method. Other roles would only proceed to the next role.
+     * The result is cached in {@code context}.
+     */
+    public DispatchContext filter(final DispatchContext context) {
+        return context.filter(signature, hasRoleMethod);
+    }
+
     MethodHandle callSiteInvoker() {
-        return linker.link(new ChainedCallSite(descriptor)).dynamicInvoker();
+        return linker.link(new ProfilingCallSite(descriptor, ProceedInvocations.PIC_DEPTH)).dynamicInvoker();
     }
 
     static MethodHandle combineWithContext(final MethodHandle invoker) {
+        final MethodHandle combined = combineWithActiveContext(invoker);
+        return ALL_ACTIVE_SWITCHPOINT.guardWithTest(combined,
+                filterArguments(combined, 0, SKIP_INACTIVE_HANDLE));
+    }
+
+    static MethodHandle combineWithActiveContext(final MethodHandle invoker) {
         MethodType type = invoker.type();
         if (type.parameterCount() < 3 || type.parameterType(0) != Object.class
                 || type.parameterType(1) != DispatchContext.class) {
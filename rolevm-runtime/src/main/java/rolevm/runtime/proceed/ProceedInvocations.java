@@ -16,6 +16,7 @@ import jdk.dynalink.linker.LinkRequest;
 import jdk.dynalink.linker.LinkerServices;
 import jdk.dynalink.linker.support.Guards;
 import rolevm.api.DispatchContext;
+import rolevm.runtime.RoleMethods;
 
 /**
  * Provides the factory for different kinds of {@link ProceedInvocation}s as
@@ -25,11 +26,27 @@ import rolevm.api.DispatchContext;
  * @author Martin Morgenstern
  */
 public class ProceedInvocations {
+    /**
+     * Number of relinks after which a nested call site is regarded as unstable,
+     * which can be configured with the system property
+     * {@code rolevm.proceedRelinkThreshold}.
+     */
+    private static final int UNSTABLE_RELINK_THRESHOLD = Integer.getInteger("rolevm.proceedRelinkThreshold", 3);
+
+    /**
+     * Depth of the inline caches of nested call sites, which can be configured
+     * with the system property {@code rolevm.proceedPicDepth}. Deeper caches let
+     * the JIT compiler inline the role methods of more role types into each
+     * other, which quickly becomes too expensive.
+     */
+    static final int PIC_DEPTH = Integer.getInteger("rolevm.proceedPicDepth", 2);
+
     private final DynamicLinker linker = createDynamicLinker();
 
     private DynamicLinker createDynamicLinker() {
         DynamicLinkerFactory factory = new DynamicLinkerFactory();
         factory.setPrioritizedLinker(new ProceedLinker());
+        factory.setUnstableRelinkThreshold(UNSTABLE_RELINK_THRESHOLD);
         factory.setFallbackLinkers();
         return factory.createLinker();
     }
@@ -55,12 +72,16 @@ public class ProceedInvocations {
     /**
      * Component linker for the nested dynamic call sites in {@code proceed}
      * macro-instructions. It simply implements classic receiver-based dispatch and
-     * links invocations with simple guards such as {@code instanceof}.
+     * links invocations with simple guards such as {@code instanceof}. Unstable
+     * call sites are linked to a {@link ReceiverClassCache} instead.
      */
     private class ProceedLinker implements GuardingDynamicLinker {
         @Override
         public GuardedInvocation getGuardedInvocation(LinkRequest request, LinkerServices unused) throws Exception {
             CallSiteDescriptor descriptor = request.getCallSiteDescriptor();
+            if (request.isCallSiteUnstable()) {
+                return megamorphicInvocation(descriptor);
+            }
             Object receiver = request.getReceiver();
             if (receiver == null) {
                 return coreInvocation(descriptor);
@@ -68,6 +89,13 @@ public class ProceedInvocations {
             return roleOrProceedInvocation(receiver.getClass(), descriptor);
         }
 
+        private GuardedInvocation megamorphicInvocation(CallSiteDescriptor descriptor) {
+            ReceiverClassCache cache = new ReceiverClassCache(descriptor.getMethodType(),
+                    receiverClass -> receiverClass == null ? coreInvocation(descriptor)
+                            : roleOrProceedInvocation(receiverClass, descriptor));
+            return new GuardedInvocation(cache.invoker());
+        }
+
         private GuardedInvocation coreInvocation(CallSiteDescriptor descriptor) throws ReflectiveOperationException {
             Lookup lookup = descriptor.getLookup();
             Class<?> coreType = descriptor.getMethodType().parameterType(2);
@@ -82,13 +110,14 @@ public class ProceedInvocations {
             Lookup lookup = descriptor.getLookup();
             String name = unwrapMethodName(descriptor);
             MethodType type = descriptor.getMethodType();
-            MethodHandle guard = Guards.isInstance(receiverType, type);
-            try {
-                return new GuardedInvocation(lookup.findVirtual(receiverType, name, type.dropParameterTypes(0, 1)),
-                        guard);
-            } catch (NoSuchMethodException e) {
-                return new GuardedInvocation(getAdaptedInvocation(lookup, name, type).getHandle(), guard);
+            MethodHandle roleMethod = RoleMethods.of(receiverType).find(lookup, name, type.dropParameterTypes(0, 1));
+            if (roleMethod != null) {
+                return new GuardedInvocation(roleMethod, Guards.isInstance(receiverType, type));
             }
+            // exact class guard, since subclasses may have a role method; unlike
+            // Guards.isOfClass(), it is not folded to true for Object receivers
+            return new GuardedInvocation(getAdaptedInvocation(lookup, name, type).getHandle(),
+                    Guards.asType(Guards.getClassGuard(receiverType), type));
         }
     }
 }
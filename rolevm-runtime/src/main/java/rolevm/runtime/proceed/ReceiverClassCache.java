@@ -0,0 +1,75 @@
+package rolevm.runtime.proceed;
+
+import static java.lang.invoke.MethodHandles.exactInvoker;
+import static java.lang.invoke.MethodHandles.foldArguments;
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Objects;
+
+import jdk.dynalink.linker.GuardedInvocation;
+
+/**
+ * Dispatch table for an unstable nested call site, which maps the class of the
+ * role (i.e., of the receiver of the nested call site) to the invocation that
+ * has been linked for that class. Instead of a chain of guards that grows with
+ * the number of role types, each call costs a single {@link ClassValue} lookup
+ * and an indirect call of the found invocation. Since the invocation is not
+ * inlined into the caller, this also keeps the JIT compiler from recursively
+ * inlining the role methods of all role types that are seen at the site.
+ *
+ * @author Martin Morgenstern
+ */
+class ReceiverClassCache {
+    private static final MethodHandle TARGET_FOR;
+
+    static {
+        try {
+            TARGET_FOR = MethodHandles.lookup().findVirtual(ReceiverClassCache.class, "targetFor",
+                    methodType(MethodHandle.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw (AssertionError) new AssertionError().initCause(e);
+        }
+    }
+
+    /** Links an invocation for a receiver class, or for {@code null}. */
+    @FunctionalInterface
+    interface Linker {
+        GuardedInvocation link(Class<?> receiverClass) throws ReflectiveOperationException;
+    }
+
+    private final MethodType type;
+    private final Linker linker;
+    private final MethodHandle nullTarget;
+    private final ClassValue<MethodHandle> targets = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(final Class<?> receiverClass) {
+            return link(receiverClass);
+        }
+    };
+
+    ReceiverClassCache(final MethodType type, final Linker linker) {
+        this.type = Objects.requireNonNull(type);
+        this.linker = Objects.requireNonNull(linker);
+        nullTarget = link(null);
+    }
+
+    /** Returns a method handle of the call site type that dispatches on the receiver class. */
+    MethodHandle invoker() {
+        return foldArguments(exactInvoker(type), TARGET_FOR.bindTo(this));
+    }
+
+    private MethodHandle targetFor(final Object receiver) {
+        return receiver == null ? nullTarget : targets.get(receiver.getClass());
+    }
+
+    private MethodHandle link(final Class<?> receiverClass) {
+        try {
+            return linker.link(receiverClass).getInvocation().asType(type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
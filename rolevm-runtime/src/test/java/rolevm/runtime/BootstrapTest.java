@@ -43,4 +43,49 @@ public class BootstrapTest {
         DispatchContext ctx = DispatchContext.ofRoles();
         assertEquals(1337, (int) invoker.invokeExact((MethodHandle) null, ctx, core, 1337));
     }
+
+    @Test
+    public void compartmentActivation() throws Throwable {
+        CallSite cs = Bootstrap.defaultcall(lookup(), "someMethod", type);
+        MethodHandle invoker = cs.dynamicInvoker();
+        TestCompartment compartment = new TestCompartment();
+        compartment.bind(core, compartment.new RoleForSomeCore());
+        assertEquals(-1, (int) invoker.invokeExact(core, 1));
+        compartment.deactivate();
+        assertEquals(2, (int) invoker.invokeExact(core, 2));
+        compartment.activate();
+        assertEquals(-3, (int) invoker.invokeExact(core, 3));
+    }
+
+    @Test
+    public void threadScopedActivation() throws Exception {
+        MethodHandle invoker = Bootstrap.defaultcall(lookup(), "someMethod", type).dynamicInvoker();
+        TestCompartment compartment = new TestCompartment();
+        compartment.deactivate();
+        compartment.bind(core, compartment.new RoleForSomeCore());
+        assertEquals(1, invoke(invoker, 1));
+        int[] results = new int[2];
+        compartment.runActivated(() -> {
+            results[0] = invoke(invoker, 2);
+            Thread other = new Thread(() -> results[1] = invoke(invoker, 3));
+            other.start();
+            try {
+                other.join();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        });
+        assertEquals(-2, results[0]);
+        assertEquals(3, results[1]);
+        assertEquals(4, invoke(invoker, 4));
+        assertEquals(-5, (int) compartment.callActivated(() -> invoke(invoker, 5)));
+    }
+
+    private int invoke(MethodHandle invoker, int arg) {
+        try {
+            return (int) invoker.invokeExact(core, arg);
+        } catch (Throwable t) {
+            throw new AssertionError(t);
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package rolevm.runtime;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static jdk.dynalink.StandardOperation.CALL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import jdk.dynalink.CallSiteDescriptor;
+import jdk.dynalink.DynamicLinker;
+import rolevm.runtime.binder.CacheAwareBinder;
+import rolevm.runtime.dynalink.DynalinkLinkerBuilder;
+import rolevm.runtime.proceed.ProceedInvocations;
+
+public class DeferredCallSiteTest {
+    private final MethodType type = methodType(int.class, SomeCore.class, int.class);
+    private CacheAwareBinder binder;
+    private DynamicLinker linker;
+    private CallSiteDescriptor descriptor;
+    private MethodHandle direct;
+    private DeferredCallSite callSite;
+    private SomeCore core;
+
+    @Before
+    public void setUp() throws ReflectiveOperationException {
+        binder = new CacheAwareBinder();
+        linker = new DynalinkLinkerBuilder().withBinder(binder).withGuardedQuery(binder).build();
+        descriptor = new CallSiteDescriptor(lookup(), CALL.named("someMethod"), type);
+        direct = lookup().findVirtual(SomeCore.class, "someMethod", methodType(int.class, int.class));
+        callSite = new DeferredCallSite(linker, descriptor, binder.getNoRolesSwitchpoint(), direct);
+        core = new SomeCore();
+    }
+
+    @Test
+    public void directUntilFirstBind() throws Throwable {
+        MethodHandle invoker = callSite.dynamicInvoker();
+        assertEquals(42, (int) invoker.invokeExact(core, 42));
+        assertFalse(callSite.isLinked());
+        binder.bind(core, new TestCompartment().new RoleForSomeCore());
+        assertFalse(callSite.isLinked());
+        assertEquals(-451, (int) invoker.invokeExact(core, 451));
+        assertTrue(callSite.isLinked());
+        assertEquals(7, (int) invoker.invokeExact(new SomeCore(), 7));
+    }
+
+    @Test
+    public void genericTierUntilThreshold() throws Throwable {
+        GenericTier tier = new GenericTier(binder.createGetContextHandle(), new ProceedInvocations(), 3);
+        callSite = new DeferredCallSite(linker, descriptor, binder.getNoRolesSwitchpoint(), direct, tier);
+        MethodHandle invoker = callSite.dynamicInvoker();
+        binder.bind(core, new TestCompartment().new RoleForSomeCore());
+        assertEquals(-1, (int) invoker.invokeExact(core, 1));
+        assertTrue(callSite.isGeneric());
+        assertEquals(2, (int) invoker.invokeExact(new SomeCore(), 2));
+        assertTrue(callSite.isGeneric());
+        assertEquals(-3, (int) invoker.invokeExact(core, 3));
+        assertTrue(callSite.isLinked());
+        assertFalse(callSite.isGeneric());
+        assertEquals(-4, (int) invoker.invokeExact(core, 4));
+    }
+
+    @Test
+    public void genericTierSkipsInactiveRoles() throws Throwable {
+        GenericTier tier = new GenericTier(binder.createGetContextHandle(), new ProceedInvocations(), 100);
+        callSite = new DeferredCallSite(linker, descriptor, binder.getNoRolesSwitchpoint(), direct, tier);
+        MethodHandle invoker = callSite.dynamicInvoker();
+        TestCompartment compartment = new TestCompartment();
+        binder.bind(compartment, core, compartment.new RoleForSomeCore());
+        compartment.deactivate();
+        assertEquals(5, (int) invoker.invokeExact(core, 5));
+        compartment.activate();
+        assertEquals(-6, (int) invoker.invokeExact(core, 6));
+        assertTrue(callSite.isGeneric());
+    }
+
+    @Test
+    public void genericInvocationsAreSharedPerCallerClass() {
+        GenericTier tier = new GenericTier(binder.createGetContextHandle(), new ProceedInvocations(), 3);
+        MethodHandle invocation = tier.invocation(descriptor, direct);
+        assertSame(invocation, tier.invocation(new CallSiteDescriptor(lookup(), CALL.named("someMethod"), type),
+                direct));
+        CallSiteDescriptor other = new CallSiteDescriptor(lookup().in(SomeCore.class), CALL.named("someMethod"),
+                type);
+        assertNotSame(invocation, tier.invocation(other, direct));
+    }
+}
@@ -0,0 +1,77 @@
+package rolevm.runtime;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.Set;
+
+import org.junit.Test;
+
+import rolevm.api.DispatchContext;
+import rolevm.runtime.RoleMethods.Signature;
+import rolevm.runtime.TestCompartment.RoleForSomeCore;
+import rolevm.runtime.TestCompartment.ValidRole;
+
+public class RoleMethodsTest {
+    private static final MethodType INT_TYPE = methodType(int.class, int.class);
+    private static final MethodType ROLE_METHOD_TYPE = methodType(int.class, DispatchContext.class,
+            SomeCore.class, int.class);
+
+    interface Defaults {
+        default int fromInterface(DispatchContext ctx, SomeCore core, int arg) {
+            return 2 * arg;
+        }
+    }
+
+    static class Base {
+        public int fromSuperclass(DispatchContext ctx, SomeCore core, int arg) {
+            return 3 * arg;
+        }
+
+        @SuppressWarnings("unused")
+        private int notInherited(DispatchContext ctx, SomeCore core, int arg) {
+            return 0;
+        }
+    }
+
+    static class Derived extends Base implements Defaults {
+        @Override
+        public int fromSuperclass(DispatchContext ctx, SomeCore core, int arg) {
+            return 4 * arg;
+        }
+
+        public static int notARoleMethod(DispatchContext ctx, SomeCore core, int arg) {
+            return 0;
+        }
+    }
+
+    @Test
+    public void signatures() {
+        assertEquals(Set.of(new Signature("someMethod", INT_TYPE)), RoleMethods.of(RoleForSomeCore.class).signatures());
+        assertTrue(RoleMethods.of(ValidRole.class).signatures().isEmpty());
+        assertEquals(Set.of(new Signature("fromInterface", INT_TYPE), new Signature("fromSuperclass", INT_TYPE)),
+                RoleMethods.of(Derived.class).signatures());
+        assertTrue(RoleMethods.of(Base.class).declares(new Signature("notInherited", INT_TYPE)));
+        assertFalse(RoleMethods.of(Derived.class).declares(new Signature("notARoleMethod", INT_TYPE)));
+        assertSame(RoleMethods.of(Derived.class), RoleMethods.of(Derived.class));
+    }
+
+    @Test
+    public void find() throws Throwable {
+        RoleMethods methods = RoleMethods.of(Derived.class);
+        MethodHandle overridden = methods.find(lookup(), "fromSuperclass", ROLE_METHOD_TYPE);
+        assertEquals(ROLE_METHOD_TYPE.insertParameterTypes(0, Derived.class), overridden.type());
+        assertEquals(8, (int) overridden.invoke(new Derived(), DispatchContext.END, new SomeCore(), 2));
+        MethodHandle inherited = methods.find(lookup(), "fromInterface", ROLE_METHOD_TYPE);
+        assertEquals(4, (int) inherited.invoke(new Derived(), DispatchContext.END, new SomeCore(), 2));
+        assertNull(methods.find(lookup(), "notInherited", ROLE_METHOD_TYPE));
+        assertNull(methods.find(lookup(), "fromSuperclass", ROLE_METHOD_TYPE.changeReturnType(void.class)));
+    }
+}
@@ -0,0 +1,144 @@
+package rolevm.runtime.binder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.invoke.SwitchPoint;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import rolevm.api.BindingTransaction;
+import rolevm.api.DispatchContext;
+import rolevm.runtime.TestCompartment;
+import rolevm.runtime.TestCompartment.ValidRole;
+
+public class BatchBindingsTest {
+    private CacheAwareBinder binder;
+    private TestCompartment compartment;
+    private Object core1, core2;
+    private ValidRole role1, role2;
+
+    static class A {
+    }
+
+    @Before
+    public void setUp() {
+        binder = new CacheAwareBinder();
+        compartment = new TestCompartment();
+        core1 = new A();
+        core2 = new A();
+        role1 = compartment.new ValidRole();
+        role2 = compartment.new ValidRole();
+    }
+
+    @Test
+    public void bindMultiplePlayers() {
+        binder.batch(tx -> {
+            tx.bind(core1, role1);
+            tx.bind(core1, role2);
+            tx.bind(core2, role2);
+        });
+        assertEquals(List.of(role1, role2), binder.getRoles(core1));
+        assertEquals(List.of(role2), binder.getRoles(core2));
+        assertFalse(binder.isPureType(A.class));
+    }
+
+    @Test
+    public void bindAndUnbind() {
+        binder.bind(core1, role1);
+        binder.batch(tx -> {
+            tx.unbind(core1, role1);
+            tx.bind(core2, role1);
+            tx.bind(core2, role2);
+            tx.unbind(core2, role2);
+        });
+        assertTrue(binder.isPureObject(core1));
+        assertEquals(List.of(role1), binder.getRoles(core2));
+        assertFalse(binder.isPureType(A.class));
+        binder.batch(tx -> tx.unbind(core2, role1));
+        assertTrue(binder.isPureType(A.class));
+    }
+
+    @Test
+    public void switchpointsInvalidated() {
+        binder.bind(core1, role1);
+        SwitchPoint sp1 = binder.getGuardedDispatchContext(core1).switchpoint();
+        SwitchPoint sp2 = binder.getGuardedDispatchContext(core2).switchpoint();
+        SwitchPoint unaffected = binder.getGuardedDispatchContext(new Object()).switchpoint();
+        binder.batch(tx -> {
+            tx.unbind(core1, role1);
+            tx.bind(core2, role2);
+        });
+        assertTrue(sp1.hasBeenInvalidated());
+        assertTrue(sp2.hasBeenInvalidated());
+        assertFalse(unaffected.hasBeenInvalidated());
+        assertFalse(binder.getGuardedDispatchContext(core2).switchpoint().hasBeenInvalidated());
+    }
+
+    @Test
+    public void typeSwitchpointsInvalidated() {
+        SwitchPoint pure = binder.getGuardedIsPureType(A.class).switchpoint();
+        binder.batch(tx -> {
+            tx.bind(core1, role1);
+            tx.bind(core2, role1);
+        });
+        assertTrue(pure.hasBeenInvalidated());
+        SwitchPoint revalidation = binder.getRevalidationSwitchpoint(A.class);
+        binder.batch(tx -> {
+            tx.unbind(core1, role1);
+            tx.unbind(core2, role1);
+        });
+        assertTrue(revalidation.hasBeenInvalidated());
+        assertTrue(binder.getGuardedIsPureType(A.class).value());
+    }
+
+    @Test
+    public void emptyBatch() {
+        SwitchPoint sp = binder.getGuardedDispatchContext(core1).switchpoint();
+        binder.batch(tx -> tx.unbind(core1, role1));
+        assertFalse(sp.hasBeenInvalidated());
+    }
+
+    @Test
+    public void failedBatch() {
+        try {
+            binder.batch(tx -> {
+                tx.bind(core1, role1);
+                tx.bind(core2, core2);
+            });
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertTrue(binder.isPureObject(core1));
+        assertTrue(binder.isPureType(A.class));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void transactionClosed() {
+        BindingTransaction[] escaped = new BindingTransaction[1];
+        binder.batch(tx -> escaped[0] = tx);
+        escaped[0].bind(core1, role1);
+    }
+
+    @Test
+    public void compartmentsArePreserved() {
+        TestCompartment other = new TestCompartment();
+        binder.bind(other, core1, role1);
+        binder.batch(compartment, tx -> {
+            tx.bind(core1, role2);
+            tx.bind(core1, role2);
+            tx.unbind(core1, role2);
+        });
+        DispatchContext ctx = binder.getDispatchContext(core1).get();
+        assertSame(other, ctx.compartment());
+        assertSame(compartment, ctx.next().compartment());
+        binder.unbind(core1, role1);
+        assertSame(compartment, binder.getDispatchContext(core1).get().compartment());
+    }
+}
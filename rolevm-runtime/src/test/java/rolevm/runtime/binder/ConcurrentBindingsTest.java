@@ -0,0 +1,112 @@
+package rolevm.runtime.binder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import rolevm.runtime.TestCompartment;
+import rolevm.runtime.TestCompartment.ValidRole;
+
+public class ConcurrentBindingsTest {
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 1000;
+
+    private ExecutorService executor;
+    private TestCompartment compartment;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        compartment = new TestCompartment();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidNumberOfStripes() {
+        new CacheAwareBinder(0);
+    }
+
+    @Test
+    public void singleStripe() {
+        CacheAwareBinder binder = new CacheAwareBinder(1);
+        Object player = new Object();
+        ValidRole role = compartment.new ValidRole();
+        binder.bind(player, role);
+        assertEquals(List.of(role), binder.getRoles(player));
+        binder.unbind(player, role);
+        assertTrue(binder.isPureObject(player));
+    }
+
+    @Test
+    public void rolesAreNotModifiable() {
+        CacheAwareBinder binder = new CacheAwareBinder();
+        Object player = new Object();
+        binder.bind(player, compartment.new ValidRole());
+        List<Object> roles = binder.getRoles(player);
+        binder.bind(player, compartment.new ValidRole());
+        assertEquals(1, roles.size());
+        assertEquals(2, binder.getRoles(player).size());
+    }
+
+    @Test
+    public void distinctPlayers() throws Exception {
+        CacheAwareBinder binder = new CacheAwareBinder(THREADS);
+        List<Object> players = new ArrayList<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            Object player = new Object();
+            players.add(player);
+            tasks.add(() -> {
+                for (int j = 0; j < ITERATIONS; j++) {
+                    ValidRole role = compartment.new ValidRole();
+                    binder.bind(player, role);
+                    binder.getGuardedDispatchContext(player);
+                    binder.unbind(player, role);
+                }
+                binder.bind(player, compartment.new ValidRole());
+                return null;
+            });
+        }
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+            future.get();
+        }
+        for (Object player : players) {
+            assertEquals(1, binder.getRoles(player).size());
+            assertFalse(binder.getGuardedDispatchContext(player).switchpoint().hasBeenInvalidated());
+        }
+    }
+
+    @Test
+    public void samePlayer() throws Exception {
+        CacheAwareBinder binder = new CacheAwareBinder(THREADS);
+        Object player = new Object();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            tasks.add(() -> {
+                for (int j = 0; j < ITERATIONS; j++) {
+                    binder.bind(player, compartment.new ValidRole());
+                }
+                return null;
+            });
+        }
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+            future.get();
+        }
+        assertEquals(THREADS * ITERATIONS, binder.getRoles(player).size());
+    }
+}
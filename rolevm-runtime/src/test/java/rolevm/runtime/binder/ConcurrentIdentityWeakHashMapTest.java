@@ -0,0 +1,120 @@
+package rolevm.runtime.binder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentIdentityWeakHashMapTest {
+    private ConcurrentIdentityWeakHashMap<Object, Object> map;
+    private AtomicInteger expunged;
+
+    @Before
+    public void setUp() {
+        expunged = new AtomicInteger();
+        map = new ConcurrentIdentityWeakHashMap<>(value -> expunged.incrementAndGet());
+    }
+
+    @Test
+    public void basicOperations() {
+        Object key = new Object(), value1 = new Object(), value2 = new Object();
+        assertNull(map.get(key));
+        assertSame(value1, map.getOrDefault(key, value1));
+        assertNull(map.put(key, value1));
+        assertSame(value1, map.get(key));
+        assertSame(value1, map.putIfAbsent(key, value2));
+        assertSame(value1, map.put(key, value2));
+        assertSame(value2, map.get(key));
+        assertEquals(1, map.size());
+        assertSame(value2, map.remove(key));
+        assertNull(map.remove(key));
+        assertFalse(map.containsKey(key));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void referenceEquality() {
+        String key1 = new String("key"), key2 = new String("key");
+        map.put(key1, 1);
+        assertNull(map.get(key2));
+        assertNull(map.get(null));
+    }
+
+    @Test
+    public void manyEntries() {
+        List<Object> keys = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Object key = new Object();
+            keys.add(key);
+            map.put(key, i);
+        }
+        for (int i = 0; i < keys.size(); i += 2) {
+            map.remove(keys.get(i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            map.put(new Object(), i); // reuses tombstones and rehashes
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(i % 2 == 0 ? null : i, map.get(keys.get(i)));
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void staleEntriesAreExpunged() throws InterruptedException {
+        Object key = new Object();
+        map.put(key, 0);
+        for (int i = 0; i < 100; i++) {
+            map.put(new Object(), i);
+        }
+        for (int i = 0; i < 50 && map.size() > 1; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(1, map.size());
+        assertEquals(100, expunged.get());
+        assertEquals(0, map.get(key));
+    }
+
+    @Test
+    public void concurrentReadersAndWriters() throws Exception {
+        final int threads = 4, iterations = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(2 * threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Object key = new Object(), value = new Object();
+                map.put(key, value);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        assertSame(value, map.get(key));
+                    }
+                }));
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        Object other = new Object();
+                        map.put(other, other);
+                        assertSame(other, map.remove(other));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package rolevm.runtime.binder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContextFieldMapTest {
+    private ConcurrentWeakHashMap<Object, Integer> fallback;
+    private ContextFieldMap<Object, Integer> map;
+    private AtomicInteger expunged;
+
+    /** Mimics a class that has been woven by the agent. */
+    static class Woven {
+        private transient volatile Object $rolevm$ctx;
+
+        Object contextField() {
+            return $rolevm$ctx;
+        }
+    }
+
+    static class WovenSubclass extends Woven {
+    }
+
+    @Before
+    public void setUp() {
+        expunged = new AtomicInteger();
+        fallback = new ConcurrentWeakHashMap<>();
+        map = new ContextFieldMap<>(fallback, value -> expunged.incrementAndGet(), null);
+    }
+
+    @Test
+    public void wovenKey() {
+        Woven key = new Woven();
+        assertNull(map.get(key));
+        assertNull(key.contextField());
+        assertNull(map.put(key, 1));
+        assertNotNull(key.contextField());
+        assertEquals(Integer.valueOf(1), map.put(key, 2));
+        assertEquals(Integer.valueOf(2), map.get(key));
+        assertEquals(Integer.valueOf(2), map.putIfAbsent(key, 3));
+        assertEquals(Integer.valueOf(2), map.remove(key));
+        assertNull(map.get(key));
+        assertEquals(Integer.valueOf(4), map.getOrDefault(key, 4));
+        assertNull(map.putIfAbsent(key, 5));
+        assertEquals(Integer.valueOf(5), map.get(key));
+        assertTrue(fallback.isEmpty());
+    }
+
+    @Test
+    public void wovenSuperclass() {
+        WovenSubclass key = new WovenSubclass();
+        map.put(key, 1);
+        assertNotNull(key.contextField());
+        assertEquals(Integer.valueOf(1), map.get(key));
+        assertTrue(fallback.isEmpty());
+    }
+
+    @Test
+    public void plainKey() {
+        Object key = new Object();
+        map.put(key, 1);
+        assertEquals(Integer.valueOf(1), map.get(key));
+        assertEquals(Integer.valueOf(1), fallback.get(key));
+        assertEquals(Integer.valueOf(1), map.remove(key));
+        assertTrue(fallback.isEmpty());
+    }
+
+    @Test
+    public void fieldClaimedByOtherMap() {
+        Map<Object, Integer> other = new ContextFieldMap<>(new ConcurrentWeakHashMap<>(), value -> {
+        }, null);
+        Woven key = new Woven();
+        other.put(key, 1);
+        map.put(key, 2);
+        assertEquals(Integer.valueOf(1), other.get(key));
+        assertEquals(Integer.valueOf(2), map.get(key));
+        assertEquals(Integer.valueOf(2), fallback.get(key));
+    }
+
+    @Test
+    public void collectedKeys() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            map.put(new Woven(), i);
+        }
+        map.put(new Woven(), 100);
+        map.remove(new Woven());
+        for (int i = 0; i < 50 && expunged.get() < 101; i++) {
+            System.gc();
+            Thread.sleep(10);
+            map.expungeStaleEntries();
+        }
+        assertEquals(101, expunged.get());
+    }
+}
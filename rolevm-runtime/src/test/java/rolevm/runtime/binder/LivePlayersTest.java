@@ -0,0 +1,84 @@
+package rolevm.runtime.binder;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import rolevm.runtime.TestCompartment;
+import rolevm.runtime.TestCompartment.ValidRole;
+
+public class LivePlayersTest {
+    private CacheAwareBinder binder;
+    private TestCompartment compartment;
+
+    static class A {
+    }
+
+    static class B extends A implements Runnable {
+        @Override
+        public void run() {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        binder = new CacheAwareBinder();
+        compartment = new TestCompartment();
+    }
+
+    @Test
+    public void multiplePlayers() {
+        A a = new A();
+        B b = new B();
+        ValidRole role1 = compartment.new ValidRole();
+        ValidRole role2 = compartment.new ValidRole();
+        binder.bind(a, role1);
+        binder.bind(b, role2);
+        assertFalse(binder.isPureType(A.class));
+        assertFalse(binder.isPureType(B.class));
+        assertFalse(binder.isPureType(Runnable.class));
+        binder.unbind(b, role2);
+        assertFalse(binder.isPureType(A.class));
+        assertTrue(binder.isPureType(B.class));
+        assertTrue(binder.isPureType(Runnable.class));
+        binder.unbind(a, role1);
+        assertTrue(binder.isPureType(A.class));
+        assertTrue(binder.isPureType(Object.class));
+    }
+
+    @Test
+    public void multipleRoles() {
+        B b = new B();
+        ValidRole role1 = compartment.new ValidRole();
+        ValidRole role2 = compartment.new ValidRole();
+        binder.bind(b, role1);
+        binder.bind(b, role2);
+        binder.unbind(b, role1);
+        assertFalse(binder.isPureType(B.class));
+        binder.unbind(b, role1);
+        assertFalse(binder.isPureType(B.class));
+        binder.unbind(b, role2);
+        assertTrue(binder.isPureType(B.class));
+    }
+
+    @Test
+    public void collectedPlayers() throws InterruptedException {
+        List<ValidRole> roles = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            ValidRole role = compartment.new ValidRole();
+            roles.add(role);
+            binder.bind(new B(), role);
+        }
+        assertFalse(binder.isPureType(B.class));
+        for (int i = 0; i < 50 && !binder.isPureType(B.class); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(binder.isPureType(B.class));
+    }
+}
@@ -0,0 +1,89 @@
+package rolevm.runtime.binder;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.invoke.MethodType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import rolevm.runtime.GuardedValue;
+import rolevm.runtime.SomeCore;
+import rolevm.runtime.TestCompartment;
+import rolevm.runtime.TestCompartment.RoleForSomeCore;
+import rolevm.runtime.TestCompartment.ValidRole;
+
+public class MethodSwitchpointsTest {
+    private static final MethodType TYPE = methodType(int.class, int.class);
+
+    private CacheAwareBinder binder;
+    private TestCompartment compartment;
+
+    @Before
+    public void setUp() {
+        binder = new CacheAwareBinder();
+        compartment = new TestCompartment();
+    }
+
+    @Test
+    public void unrelatedRole() {
+        GuardedValue<Boolean> before = binder.getGuardedIsPureMethod(SomeCore.class, "someMethod", TYPE);
+        binder.bind(new SomeCore(), compartment.new ValidRole());
+        assertFalse(binder.getGuardedIsPureType(SomeCore.class).value());
+        assertTrue(before.value());
+        assertFalse(before.switchpoint().hasBeenInvalidated());
+        assertSame(before.switchpoint(),
+                binder.getGuardedIsPureMethod(SomeCore.class, "someMethod", TYPE).switchpoint());
+    }
+
+    @Test
+    public void overridingRole() {
+        GuardedValue<Boolean> before = binder.getGuardedIsPureMethod(SomeCore.class, "someMethod", TYPE);
+        GuardedValue<Boolean> other = binder.getGuardedIsPureMethod(SomeCore.class, "otherMethod", TYPE);
+        GuardedValue<Boolean> object = binder.getGuardedIsPureMethod(Object.class, "someMethod", TYPE);
+        binder.bind(new SomeCore(), compartment.new RoleForSomeCore());
+        assertTrue(before.switchpoint().hasBeenInvalidated());
+        assertTrue(object.switchpoint().hasBeenInvalidated());
+        assertFalse(other.switchpoint().hasBeenInvalidated());
+        assertFalse(binder.getGuardedIsPureMethod(SomeCore.class, "someMethod", TYPE).value());
+        assertFalse(binder.getGuardedIsPureMethod(SomeCore.class, "someMethod", methodType(void.class)).switchpoint()
+                .hasBeenInvalidated());
+    }
+
+    @Test
+    public void overridingRoleInBatch() {
+        GuardedValue<Boolean> before = binder.getGuardedIsPureMethod(SomeCore.class, "someMethod", TYPE);
+        SomeCore core = new SomeCore();
+        binder.batch(null, tx -> {
+            tx.bind(core, compartment.new ValidRole());
+            tx.bind(core, compartment.new RoleForSomeCore());
+        });
+        assertTrue(before.switchpoint().hasBeenInvalidated());
+        assertFalse(binder.getGuardedIsPureMethod(SomeCore.class, "someMethod", TYPE).value());
+    }
+
+    @Test
+    public void revalidation() {
+        SomeCore core = new SomeCore();
+        ValidRole validRole = compartment.new ValidRole();
+        RoleForSomeCore role = compartment.new RoleForSomeCore();
+        binder.bind(core, validRole);
+        binder.bind(core, role);
+        binder.unbind(core, role);
+        // still overridden, as long as the type is not pure
+        GuardedValue<Boolean> overridden = binder.getGuardedIsPureMethod(SomeCore.class, "someMethod", TYPE);
+        assertFalse(overridden.value());
+        GuardedValue<Boolean> other = binder.getGuardedIsPureMethod(SomeCore.class, "otherMethod", TYPE);
+        binder.unbind(core, validRole);
+        assertTrue(other.switchpoint().hasBeenInvalidated());
+        GuardedValue<Boolean> after = binder.getGuardedIsPureMethod(SomeCore.class, "someMethod", TYPE);
+        assertTrue(after.value());
+        assertNotSame(overridden.switchpoint(), after.switchpoint());
+        binder.bind(core, role);
+        assertTrue(after.switchpoint().hasBeenInvalidated());
+    }
+}
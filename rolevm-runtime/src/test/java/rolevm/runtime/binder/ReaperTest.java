@@ -0,0 +1,93 @@
+package rolevm.runtime.binder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import rolevm.runtime.TestCompartment;
+import rolevm.runtime.TestCompartment.ValidRole;
+
+public class ReaperTest {
+    private static final int PLAYERS = 100;
+
+    private Reaper reaper;
+
+    static class A {
+    }
+
+    @Before
+    public void setUp() {
+        reaper = new Reaper(16, 0).start();
+    }
+
+    @After
+    public void tearDown() {
+        reaper.stop();
+    }
+
+    private void awaitReaped(final long count) throws InterruptedException {
+        for (int i = 0; i < 100 && reaper.getReapedCount() < count; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBatchSize() {
+        new Reaper(0, 0);
+    }
+
+    @Test
+    public void concurrentWeakHashMap() throws InterruptedException {
+        AtomicInteger expunged = new AtomicInteger();
+        Map<Object, Integer> map = new ConcurrentWeakHashMap<>(value -> expunged.incrementAndGet(), reaper);
+        for (int i = 0; i < PLAYERS; i++) {
+            map.put(new Object(), i);
+        }
+        awaitReaped(PLAYERS);
+        assertEquals(PLAYERS, reaper.getReapedCount());
+        assertEquals(PLAYERS, expunged.get());
+        assertTrue(map.isEmpty());
+        assertTrue(reaper.getBatchCount() >= PLAYERS / 16);
+    }
+
+    @Test
+    public void concurrentIdentityWeakHashMap() throws InterruptedException {
+        AtomicInteger expunged = new AtomicInteger();
+        Map<Object, Integer> map = new ConcurrentIdentityWeakHashMap<>(value -> expunged.incrementAndGet(), reaper);
+        for (int i = 0; i < PLAYERS; i++) {
+            map.put(new Object(), i);
+        }
+        awaitReaped(PLAYERS);
+        assertEquals(PLAYERS, reaper.getReapedCount());
+        assertEquals(PLAYERS, expunged.get());
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    public void binder() throws InterruptedException {
+        CacheAwareBinder binder = new CacheAwareBinder(1, reaper);
+        TestCompartment compartment = new TestCompartment();
+        List<ValidRole> roles = new ArrayList<>();
+        for (int i = 0; i < PLAYERS; i++) {
+            ValidRole role = compartment.new ValidRole();
+            roles.add(role);
+            binder.bind(new A(), role);
+        }
+        assertFalse(binder.isPureType(A.class));
+        for (int i = 0; i < 100 && !binder.isPureType(A.class); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertTrue(binder.isPureType(A.class));
+    }
+}
@@ -8,7 +8,6 @@ import java.lang.invoke.SwitchPoint;
 import java.util.List;
 
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Test;
 
 import rolevm.runtime.GuardedValue;
@@ -50,6 +49,17 @@ public class TypeSwitchpointsTest {
         assertTrue(allPureTypes());
     }
 
+    @Test
+    public void noRolesSwitchpoint() {
+        SwitchPoint noRoles = binder.getNoRolesSwitchpoint();
+        Object core = new B();
+        binder.unbind(core, role);
+        assertFalse(noRoles.hasBeenInvalidated());
+        binder.bind(core, role);
+        binder.unbind(core, role);
+        assertTrue(noRoles.hasBeenInvalidated());
+    }
+
     @Test
     public void invalidatedExceptForB() {
         SwitchPoint switchPointForB = binder.getGuardedIsPureType(B.class).switchpoint();
@@ -62,7 +72,6 @@ public class TypeSwitchpointsTest {
     }
 
     @Test
-    @Ignore // future work
     public void completeRevalidation() {
         Object core = new B();
         binder.bind(core, role);
@@ -72,7 +81,6 @@ public class TypeSwitchpointsTest {
     }
 
     @Test
-    @Ignore // future work
     public void partialRevalidation() {
         Object core = new B();
         binder.bind(core, role);
@@ -86,6 +94,31 @@ public class TypeSwitchpointsTest {
         assertFalse(binder.getGuardedIsPureType(B.class).switchpoint().hasBeenInvalidated());
     }
 
+    @Test
+    public void revalidationSwitchpoint() {
+        SwitchPoint initial = binder.getRevalidationSwitchpoint(A.class);
+        Object core = new B();
+        binder.bind(core, role);
+        SwitchPoint revalidation = binder.getRevalidationSwitchpoint(A.class);
+        assertFalse(revalidation.hasBeenInvalidated());
+        binder.unbind(core, role);
+        assertTrue(revalidation.hasBeenInvalidated());
+        assertFalse(initial == revalidation);
+    }
+
+    @Test
+    public void repeatedRevalidation() {
+        Object core = new B();
+        for (int i = 0; i < 3; i++) {
+            binder.bind(core, role);
+            assertTrue(allUnpureTypes());
+            assertTrue(allInvalidated(switchpoints()));
+            binder.unbind(core, role);
+            assertTrue(allPureTypes());
+            assertTrue(allValid(switchpoints()));
+        }
+    }
+
     // utilities
 
     private List<SwitchPoint> switchpoints() {
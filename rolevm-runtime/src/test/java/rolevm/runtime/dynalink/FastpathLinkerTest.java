@@ -7,6 +7,7 @@ import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.lang.invoke.MethodType;
 import java.lang.invoke.SwitchPoint;
 
 import org.junit.Before;
@@ -21,6 +22,7 @@ public class FastpathLinkerTest extends DynalinkTestBase {
     private FastpathLinker linker;
     private GuardedQuery query;
     private GuardedValue<Boolean> isPure;
+    private GuardedValue<Boolean> isPureMethod;
 
     @Before
     @SuppressWarnings("unchecked")
@@ -28,6 +30,9 @@ public class FastpathLinkerTest extends DynalinkTestBase {
         super.setUp();
         query = mock(GuardedQuery.class);
         isPure = mock(GuardedValue.class);
+        isPureMethod = mock(GuardedValue.class);
+        MethodType lookupType = descriptor.getMethodType().dropParameterTypes(0, 1);
+        when(query.getGuardedIsPureMethod(SomeCore.class, "someMethod", lookupType)).thenReturn(isPureMethod);
         linker = new FastpathLinker(query);
     }
 
@@ -41,6 +46,7 @@ public class FastpathLinkerTest extends DynalinkTestBase {
     public void returnsNullWhenNotPure() throws Exception {
         when(request.isCallSiteUnstable()).thenReturn(false);
         when(isPure.value()).thenReturn(false);
+        when(isPureMethod.value()).thenReturn(false);
         when(query.getGuardedIsPureType(SomeCore.class)).thenReturn(isPure);
         assertNull(linker.getGuardedInvocation(request, null));
     }
@@ -60,6 +66,20 @@ public class FastpathLinkerTest extends DynalinkTestBase {
         assertEquals(42, (int) invocation.getInvocation().invoke(core, 42));
     }
 
+    @Test
+    public void pureMethod() throws Throwable {
+        when(request.isCallSiteUnstable()).thenReturn(false);
+        SwitchPoint switchpoint = new SwitchPoint();
+        when(isPure.value()).thenReturn(false);
+        when(isPureMethod.value()).thenReturn(true);
+        when(isPureMethod.switchpoint()).thenReturn(switchpoint);
+        when(query.getGuardedIsPureType(SomeCore.class)).thenReturn(isPure);
+        GuardedInvocation invocation = linker.getGuardedInvocation(request, null);
+        assertSame(switchpoint, invocation.getSwitchPoints()[0]);
+        assertNull(invocation.getGuard());
+        assertEquals(42, (int) invocation.getInvocation().invoke(core, 42));
+    }
+
     @Test(expected = NoSuchMethodException.class)
     public void failureCase() throws Exception {
         when(noSuchMethodRequest.isCallSiteUnstable()).thenReturn(false);
@@ -0,0 +1,79 @@
+package rolevm.runtime.dynalink;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import rolevm.api.DispatchContext;
+import rolevm.runtime.SomeCore;
+import rolevm.runtime.TestCompartment;
+import rolevm.runtime.proceed.ProceedInvocations;
+
+public class MegamorphicShapeCacheTest {
+    private static final int CAPACITY = 4;
+    private MegamorphicShapeCache cache;
+    private MethodHandle invoker;
+    private SomeCore core;
+
+    @Before
+    public void setUp() {
+        cache = new MegamorphicShapeCache(new ProceedInvocations(), lookup(), "someMethod",
+                methodType(int.class, DispatchContext.class, SomeCore.class, int.class), CAPACITY);
+        invoker = cache.invoker();
+        core = new SomeCore();
+    }
+
+    /** Returns a context with {@code n} roles, i.e., with a distinct shape per n. */
+    private static DispatchContext contextWithRoles(final int n) {
+        TestCompartment compartment = new TestCompartment();
+        List<Object> roles = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            roles.add(compartment.new RoleForSomeCore());
+        }
+        return DispatchContext.of(roles);
+    }
+
+    @Test
+    public void sameShapeSharesTarget() throws Throwable {
+        assertEquals(-1, (int) invoker.invoke(contextWithRoles(1), core, 1));
+        assertEquals(-2, (int) invoker.invoke(contextWithRoles(1), core, 2));
+        assertEquals(3, (int) invoker.invoke(DispatchContext.END, core, 3));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void boundedNumberOfShapes() throws Throwable {
+        for (int round = 0; round < 2; round++) {
+            for (int n = 1; n <= 4 * CAPACITY; n++) {
+                assertEquals(-n, (int) invoker.invoke(contextWithRoles(n), core, n));
+            }
+        }
+        assertEquals(CAPACITY, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedShape() throws Throwable {
+        List<DispatchContext> contexts = new ArrayList<>();
+        for (int n = 1; n <= CAPACITY + 1; n++) {
+            contexts.add(contextWithRoles(n));
+        }
+        for (int n = 0; n < CAPACITY; n++) {
+            invoker.invoke(contexts.get(n), core, 0);
+        }
+        invoker.invoke(contexts.get(0), core, 0);
+        invoker.invoke(contexts.get(CAPACITY), core, 0);
+        assertTrue(cache.contains(contexts.get(0).shape()));
+        assertFalse(cache.contains(contexts.get(1).shape()));
+        assertTrue(cache.contains(contexts.get(CAPACITY).shape()));
+        assertEquals(CAPACITY, cache.size());
+    }
+}
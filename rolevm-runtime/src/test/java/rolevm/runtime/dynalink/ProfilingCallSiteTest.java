@@ -0,0 +1,126 @@
+package rolevm.runtime.dynalink;
+
+import static java.lang.invoke.MethodHandles.constant;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static jdk.dynalink.StandardOperation.CALL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import jdk.dynalink.CallSiteDescriptor;
+import jdk.dynalink.DynamicLinker;
+import jdk.dynalink.DynamicLinkerFactory;
+import jdk.dynalink.linker.GuardedInvocation;
+import jdk.dynalink.linker.support.Guards;
+
+public class ProfilingCallSiteTest {
+    private static final MethodType TYPE = methodType(String.class, Object.class);
+    private static final CallSiteDescriptor DESCRIPTOR = new CallSiteDescriptor(lookup(), CALL.named("name"), TYPE);
+    private static final Object[] RECEIVERS = { "a", 1, 2L, 3.0f, 4.0, 'c', (short) 5, (byte) 6 };
+
+    private DynamicLinker linker;
+    private int unstableLinks;
+
+    @Before
+    public void setUp() {
+        DynamicLinkerFactory factory = new DynamicLinkerFactory();
+        factory.setUnstableRelinkThreshold(2);
+        factory.setPrioritizedLinkers((request, services) -> {
+            if (request.isCallSiteUnstable()) {
+                unstableLinks++;
+                return new GuardedInvocation(dropArguments(constant(String.class, "unstable"), 0, Object.class));
+            }
+            Class<?> receiverClass = request.getReceiver().getClass();
+            MethodHandle target = dropArguments(constant(String.class, receiverClass.getSimpleName()), 0,
+                    Object.class);
+            return new GuardedInvocation(target, Guards.asType(Guards.getClassGuard(receiverClass), TYPE));
+        });
+        linker = factory.createLinker();
+    }
+
+    private static String name(final MethodHandle invoker, final Object receiver) throws Throwable {
+        return (String) invoker.invokeExact(receiver);
+    }
+
+    @Test
+    public void stableUpToDepth() throws Throwable {
+        ProfilingCallSite callSite = new ProfilingCallSite(DESCRIPTOR, 4, 0);
+        MethodHandle invoker = linker.link(callSite).dynamicInvoker();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertEquals(RECEIVERS[i].getClass().getSimpleName(), name(invoker, RECEIVERS[i]));
+            }
+        }
+        assertEquals(4, callSite.invocations().size());
+        assertEquals(0, unstableLinks);
+    }
+
+    @Test
+    public void unstableAfterChurn() throws Throwable {
+        ProfilingCallSite callSite = new ProfilingCallSite(DESCRIPTOR, 2, 0);
+        MethodHandle invoker = linker.link(callSite).dynamicInvoker();
+        for (Object receiver : RECEIVERS) {
+            name(invoker, receiver);
+        }
+        assertEquals(1, unstableLinks);
+        assertEquals("unstable", name(invoker, RECEIVERS[0]));
+        List<GuardedInvocation> invocations = callSite.invocations();
+        assertEquals(1, invocations.size());
+        assertNull(invocations.get(0).getGuard());
+    }
+
+    @Test
+    public void boundedDepth() throws Throwable {
+        ProfilingCallSite callSite = new ProfilingCallSite(DESCRIPTOR, 3, 0);
+        MethodHandle invoker = linker.link(callSite).dynamicInvoker();
+        for (int i = 0; i < 4; i++) {
+            name(invoker, RECEIVERS[i]);
+            assertTrue(callSite.invocations().size() <= 3);
+        }
+        assertEquals(0, unstableLinks);
+    }
+
+    @Test
+    public void hottestInvocationFirst() throws Throwable {
+        ProfilingCallSite callSite = new ProfilingCallSite(DESCRIPTOR, 4, 10);
+        MethodHandle invoker = linker.link(callSite).dynamicInvoker();
+        for (int i = 0; i < 3; i++) {
+            name(invoker, RECEIVERS[i]);
+        }
+        assertTrue(callSite.isProfiling());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Long", name(invoker, RECEIVERS[2]));
+        }
+        assertFalse(callSite.isProfiling());
+        List<GuardedInvocation> invocations = callSite.invocations();
+        assertEquals(3, invocations.size());
+        assertEquals("Long", name(invocations.get(0).getInvocation(), null));
+        assertEquals("String", name(invoker, RECEIVERS[0]));
+    }
+
+    @Test
+    public void evictsLeastFrequentlyHitInvocation() throws Throwable {
+        ProfilingCallSite callSite = new ProfilingCallSite(DESCRIPTOR, 2, 100);
+        MethodHandle invoker = linker.link(callSite).dynamicInvoker();
+        name(invoker, RECEIVERS[0]);
+        name(invoker, RECEIVERS[1]);
+        for (int i = 0; i < 5; i++) {
+            name(invoker, RECEIVERS[1]);
+        }
+        name(invoker, RECEIVERS[2]);
+        List<GuardedInvocation> invocations = callSite.invocations();
+        assertEquals(2, invocations.size());
+        assertEquals("Integer", name(invocations.get(0).getInvocation(), null));
+        assertEquals("Long", name(invocations.get(1).getInvocation(), null));
+    }
+}
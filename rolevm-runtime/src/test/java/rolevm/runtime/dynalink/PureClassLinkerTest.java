@@ -0,0 +1,88 @@
+package rolevm.runtime.dynalink;
+
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.invoke.SwitchPoint;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import jdk.dynalink.linker.GuardedInvocation;
+import rolevm.runtime.GuardedQuery;
+import rolevm.runtime.GuardedValue;
+import rolevm.runtime.SomeCore;
+
+public class PureClassLinkerTest extends DynalinkTestBase {
+    private PureClassLinker linker;
+    private GuardedQuery query;
+    private GuardedValue<Boolean> isPure;
+    private SubCore subCore;
+
+    public static class SubCore extends SomeCore {
+        @Override
+        public int someMethod(int arg) {
+            return 2 * arg;
+        }
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        super.setUp();
+        query = mock(GuardedQuery.class);
+        isPure = mock(GuardedValue.class);
+        linker = new PureClassLinker(query);
+        subCore = new SubCore();
+        when(request.getReceiver()).thenReturn(subCore);
+        when(query.getGuardedIsPureType(SubCore.class)).thenReturn(isPure);
+        when(query.getGuardedIsPureMethod(SubCore.class, "someMethod", methodType(int.class, int.class)))
+                .thenReturn(isPure);
+    }
+
+    @Test
+    public void returnsNullWhenUnstable() throws Exception {
+        when(request.isCallSiteUnstable()).thenReturn(true);
+        assertNull(linker.getGuardedInvocation(request, null));
+    }
+
+    @Test
+    public void returnsNullForStaticReceiverType() throws Exception {
+        when(request.isCallSiteUnstable()).thenReturn(false);
+        when(request.getReceiver()).thenReturn(core);
+        assertNull(linker.getGuardedInvocation(request, null));
+        verify(query, never()).getGuardedIsPureType(SomeCore.class);
+    }
+
+    @Test
+    public void returnsNullWhenNotPure() throws Exception {
+        when(request.isCallSiteUnstable()).thenReturn(false);
+        when(isPure.value()).thenReturn(false);
+        assertNull(linker.getGuardedInvocation(request, null));
+    }
+
+    @Test
+    public void successCase() throws Throwable {
+        when(request.isCallSiteUnstable()).thenReturn(false);
+        SwitchPoint switchpoint = new SwitchPoint();
+        when(isPure.value()).thenReturn(true);
+        when(isPure.switchpoint()).thenReturn(switchpoint);
+        GuardedInvocation invocation = linker.getGuardedInvocation(request, null);
+        assertNotNull(invocation);
+        assertSame(switchpoint, invocation.getSwitchPoints()[0]);
+        assertTrue((boolean) invocation.getGuard().invoke((SomeCore) subCore, 1));
+        assertTrue((boolean) invocation.getGuard().invoke((SomeCore) new SubCore(), 1));
+        assertFalse((boolean) invocation.getGuard().invoke(core, 1));
+        assertEquals(descriptor.getMethodType(), invocation.getInvocation().type());
+        assertEquals(84, (int) invocation.getInvocation().invoke(subCore, 42));
+    }
+}
@@ -0,0 +1,60 @@
+package rolevm.runtime.dynalink;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import rolevm.api.DispatchContext;
+import rolevm.runtime.SomeCore;
+import rolevm.runtime.TestCompartment;
+import rolevm.runtime.proceed.ProceedInvocations;
+
+public class ShapeInlineCacheTest {
+    private ShapeInlineCache cache;
+    private MethodHandle invoker;
+    private SomeCore core;
+
+    @Before
+    public void setUp() {
+        cache = new ShapeInlineCache(new ProceedInvocations(), lookup(), "someMethod",
+                methodType(int.class, DispatchContext.class, SomeCore.class, int.class));
+        invoker = cache.dynamicInvoker();
+        core = new SomeCore();
+    }
+
+    /** Returns a context with {@code n} roles, i.e., with a distinct shape per n. */
+    private static DispatchContext contextWithRoles(final int n) {
+        TestCompartment compartment = new TestCompartment();
+        List<Object> roles = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            roles.add(compartment.new RoleForSomeCore());
+        }
+        return DispatchContext.of(roles);
+    }
+
+    @Test
+    public void sameShapeSharesTarget() throws Throwable {
+        assertEquals(-1, (int) invoker.invoke(contextWithRoles(1), core, 1));
+        assertEquals(-2, (int) invoker.invoke(contextWithRoles(1), core, 2));
+        assertEquals(3, (int) invoker.invoke(DispatchContext.END, core, 3));
+        assertEquals(-4, (int) invoker.invoke(contextWithRoles(1), core, 4));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void boundedNumberOfShapes() throws Throwable {
+        for (int round = 0; round < 2; round++) {
+            for (int n = 1; n <= 2 * ShapeInlineCache.MAX_SHAPES; n++) {
+                assertEquals(-n, (int) invoker.invoke(contextWithRoles(n), core, n));
+            }
+        }
+        assertEquals(ShapeInlineCache.MAX_SHAPES, cache.size());
+    }
+}
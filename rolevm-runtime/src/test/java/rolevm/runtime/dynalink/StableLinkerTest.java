@@ -1,5 +1,7 @@
 package rolevm.runtime.dynalink;
 
+import static java.lang.invoke.MethodHandles.insertArguments;
+import static java.lang.invoke.MethodType.methodType;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
@@ -9,23 +11,32 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.SwitchPoint;
+import java.lang.invoke.WrongMethodTypeException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import jdk.dynalink.linker.GuardedInvocation;
+import jdk.dynalink.linker.support.Lookup;
 import rolevm.api.DispatchContext;
 import rolevm.runtime.GuardedQuery;
 import rolevm.runtime.GuardedValue;
 import rolevm.runtime.SomeCore;
+import rolevm.runtime.TestCompartment;
 import rolevm.runtime.TestCompartment.RoleForSomeCore;
 
 public class StableLinkerTest extends DynalinkTestBase {
     private StableLinker linker;
     private GuardedQuery query;
     private GuardedValue<Optional<DispatchContext>> guardedContext;
+    private SwitchPoint revalidationSwitchpoint;
+    private Map<Object, Object> contexts;
 
     @Before
     @SuppressWarnings("unchecked")
@@ -33,7 +44,18 @@ public class StableLinkerTest extends DynalinkTestBase {
         super.setUp();
         query = mock(GuardedQuery.class);
         guardedContext = mock(GuardedValue.class);
-        linker = new StableLinker(query);
+        revalidationSwitchpoint = new SwitchPoint();
+        when(query.getRevalidationSwitchpoint(SomeCore.class)).thenReturn(revalidationSwitchpoint);
+        contexts = new IdentityHashMap<>();
+        MethodHandle getContext = Lookup.PUBLIC.findVirtual(Map.class, "getOrDefault",
+                methodType(Object.class, Object.class, Object.class));
+        getContext = insertArguments(getContext.bindTo(contexts), 1, DispatchContext.END);
+        linker = new StableLinker(query, getContext.asType(methodType(DispatchContext.class, Object.class)));
+    }
+
+    @Test(expected = WrongMethodTypeException.class)
+    public void failsWithWrongMethodTypeException() {
+        new StableLinker(query, Lookup.PUBLIC.findVirtual(Map.class, "get", methodType(Object.class, Object.class)));
     }
 
     @Test
@@ -57,6 +79,7 @@ public class StableLinkerTest extends DynalinkTestBase {
         when(guardedContext.value()).thenReturn(Optional.empty());
         GuardedInvocation invocation = linker.getGuardedInvocation(request, null);
         assertSame(switchpoint, invocation.getSwitchPoints()[0]);
+        assertSame(revalidationSwitchpoint, invocation.getSwitchPoints()[1]);
         assertTrue((boolean) invocation.getGuard().invoke(core));
         assertFalse((boolean) invocation.getGuard().invoke(new SomeCore()));
         assertEquals(descriptor.getMethodType(), invocation.getInvocation().type());
@@ -74,10 +97,78 @@ public class StableLinkerTest extends DynalinkTestBase {
         when(guardedContext.value()).thenReturn(Optional.of(ctx));
         GuardedInvocation invocation = linker.getGuardedInvocation(request, null);
         assertSame(switchpoint, invocation.getSwitchPoints()[0]);
+        assertSame(revalidationSwitchpoint, invocation.getSwitchPoints()[1]);
         assertTrue((boolean) invocation.getGuard().invoke(core));
         assertFalse((boolean) invocation.getGuard().invoke(new SomeCore()));
         assertEquals(descriptor.getMethodType(), invocation.getInvocation().type());
         invocation.getInvocation().invoke(core, 1337);
         verify(mockedRole).someMethod(ctx.next(), core, 1337);
     }
+
+    @Test
+    public void inactiveRolesAreSkipped() throws Throwable {
+        TestCompartment compartment = new TestCompartment();
+        RoleForSomeCore mockedRole = mock(RoleForSomeCore.class);
+        DispatchContext ctx = DispatchContext.of(List.of(mockedRole), List.of(compartment));
+        compartment.deactivate();
+        SwitchPoint activation = compartment.getActivationSwitchpoint();
+        when(request.isCallSiteUnstable()).thenReturn(false);
+        when(query.getGuardedDispatchContext(core)).thenReturn(guardedContext);
+        when(guardedContext.switchpoint()).thenReturn(new SwitchPoint());
+        when(guardedContext.value()).thenReturn(Optional.of(ctx));
+        GuardedInvocation invocation = linker.getGuardedInvocation(request, null);
+        assertEquals(3, invocation.getSwitchPoints().length);
+        assertSame(activation, invocation.getSwitchPoints()[2]);
+        assertEquals(42, (int) invocation.getInvocation().invoke(core, 42));
+        compartment.activate();
+        assertTrue(activation.hasBeenInvalidated());
+    }
+
+    @Test
+    public void shapeInvocationWhenRelinked() throws Throwable {
+        when(request.isCallSiteUnstable()).thenReturn(false);
+        when(query.getGuardedDispatchContext(core)).thenReturn(guardedContext);
+        when(guardedContext.switchpoint()).thenReturn(new SwitchPoint());
+        when(guardedContext.value()).thenReturn(Optional.empty());
+        GuardedInvocation first = linker.getGuardedInvocation(request, null);
+        assertTrue((boolean) first.getGuard().invoke(core));
+        when(request.getReceiver()).thenReturn(new SomeCore());
+        GuardedInvocation relinked = linker.getGuardedInvocation(request, null);
+        assertNull(relinked.getGuard());
+        assertEquals(1, relinked.getSwitchPoints().length);
+        assertSame(revalidationSwitchpoint, relinked.getSwitchPoints()[0]);
+        assertEquals(descriptor.getMethodType(), relinked.getInvocation().type());
+        SomeCore player1 = new SomeCore();
+        SomeCore player2 = new SomeCore();
+        contexts.put(player1, DispatchContext.ofRoles(role1));
+        contexts.put(player2, DispatchContext.ofRoles(new TestCompartment().new RoleForSomeCore()));
+        assertEquals(42, (int) relinked.getInvocation().invoke(core, 42));
+        assertEquals(-1, (int) relinked.getInvocation().invoke(player1, 1));
+        assertEquals(-2, (int) relinked.getInvocation().invoke(player2, 2));
+        contexts.remove(player1);
+        assertEquals(3, (int) relinked.getInvocation().invoke(player1, 3));
+    }
+
+    @Test
+    public void stableInvocationWhenRelinkedForSameReceiver() throws Throwable {
+        SwitchPoint switchpoint = new SwitchPoint();
+        when(request.isCallSiteUnstable()).thenReturn(false);
+        when(query.getGuardedDispatchContext(core)).thenReturn(guardedContext);
+        when(guardedContext.switchpoint()).thenReturn(switchpoint);
+        when(guardedContext.value()).thenReturn(Optional.empty());
+        linker.getGuardedInvocation(request, null);
+        // e.g., a role has been bound to the receiver
+        SwitchPoint.invalidateAll(new SwitchPoint[] { switchpoint });
+        SwitchPoint rebound = new SwitchPoint();
+        RoleForSomeCore mockedRole = mock(RoleForSomeCore.class);
+        DispatchContext ctx = DispatchContext.ofRoles(mockedRole);
+        when(guardedContext.switchpoint()).thenReturn(rebound);
+        when(guardedContext.value()).thenReturn(Optional.of(ctx));
+        GuardedInvocation relinked = linker.getGuardedInvocation(request, null);
+        assertSame(rebound, relinked.getSwitchPoints()[0]);
+        assertTrue((boolean) relinked.getGuard().invoke(core));
+        assertFalse((boolean) relinked.getGuard().invoke(new SomeCore()));
+        relinked.getInvocation().invoke(core, 7);
+        verify(mockedRole).someMethod(ctx.next(), core, 7);
+    }
 }
@@ -3,15 +3,19 @@ package rolevm.runtime.proceed;
 import static java.lang.invoke.MethodHandles.lookup;
 import static java.lang.invoke.MethodType.methodType;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodType;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import rolevm.api.Compartment;
 import rolevm.api.DispatchContext;
+import rolevm.runtime.TestCompartment;
 
 public class ProceedHandleTest extends ProceedTestBase {
     private static final MethodType TYPE = RoleAlike.HANDLE.type().dropParameterTypes(0, 1);
@@ -51,6 +55,20 @@ public class ProceedHandleTest extends ProceedTestBase {
         assertEquals(List.of(), core.calledWithArgs);
     }
 
+    @Test
+    public void proceedSkipsInactiveRoles() throws Throwable {
+        Compartment compartment = new TestCompartment();
+        DispatchContext ctx = DispatchContext.of(List.of(roleAlike, anotherRoleAlike),
+                Arrays.asList(compartment, null));
+        compartment.deactivate();
+        proceed.invokeExact(ctx, core, 5);
+        assertEquals(List.of(), roleAlike.calledWithArgs);
+        assertEquals(List.of(ctx.next().next(), core, 5), anotherRoleAlike.calledWithArgs);
+        compartment.activate();
+        proceed.invokeExact(ctx, core, 6);
+        assertEquals(List.of(ctx.next(), core, 6), roleAlike.calledWithArgs);
+    }
+
     @Test
     public void proceedMissingMethod() throws Throwable {
         DispatchContext ctx = DispatchContext.ofRoles(new RoleAlikeEmpty());
@@ -74,6 +92,68 @@ public class ProceedHandleTest extends ProceedTestBase {
         assertEquals(451, result);
     }
 
+    @Test
+    public void proceedSkipsRolesWithoutRoleMethod() throws Throwable {
+        DispatchContext ctx = DispatchContext.ofRoles(new RoleAlikeEmpty(), roleAlike, new RoleAlikeEmpty());
+        proceed.invokeExact(ctx, core, 10);
+        assertEquals(List.of(DispatchContext.END, core, 10), roleAlike.calledWithArgs);
+    }
+
+    @Test
+    public void filteredContextIsCached() {
+        ProceedInvocation invocation = factory.getInvocation(lookup(), "method", TYPE);
+        DispatchContext ctx = DispatchContext.ofRoles(new RoleAlikeEmpty(), roleAlike, anotherRoleAlike);
+        DispatchContext filtered = invocation.filter(ctx);
+        assertEquals(List.of(roleAlike, anotherRoleAlike), List.of(filtered.target(), filtered.next().target()));
+        assertSame(filtered, invocation.filter(ctx));
+        assertSame(filtered, factory.getInvocation(lookup(), "method", TYPE).filter(ctx));
+        assertSame(filtered, invocation.filter(filtered));
+        assertSame(DispatchContext.END, factory.getInvocation(lookup(), "otherMethod", TYPE).filter(ctx));
+    }
+
+    @Test
+    public void compiledContext() throws Throwable {
+        ProceedInvocation invocation = factory.getInvocation(lookup(), "method", TYPE);
+        DispatchContext ctx = DispatchContext.ofRoles(roleAlike, anotherRoleAlike);
+        MethodHandle compiled = invocation.compile(ctx);
+        assertEquals(TYPE.dropParameterTypes(0, 1), compiled.type());
+        compiled.invokeExact(core, 11);
+        assertEquals(List.of(ctx.next(), core, 11), roleAlike.calledWithArgs);
+        invocation.compile(DispatchContext.ofRoles(new RoleAlikeEmpty())).invokeExact(core, 12);
+        assertEquals(List.of(12), core.calledWithArgs);
+        invocation.compile(DispatchContext.END).invokeExact(core, 13);
+        assertEquals(List.of(13), core.calledWithArgs);
+    }
+
+    @Test
+    public void specializedHandle() throws Throwable {
+        ProceedInvocation invocation = factory.getInvocation(lookup(), "method", TYPE);
+        DispatchContext ctx = DispatchContext.ofRoles(roleAlike, anotherRoleAlike);
+        invocation.specialize(RoleAlike.class).invokeExact(ctx, core, 14);
+        assertEquals(List.of(ctx.next(), core, 14), roleAlike.calledWithArgs);
+        invocation.specialize(null).invokeExact(DispatchContext.END, core, 15);
+        assertEquals(List.of(15), core.calledWithArgs);
+        invocation.specialize(RoleAlikeEmpty.class).invokeExact(DispatchContext.ofRoles(new RoleAlikeEmpty()), core,
+                16);
+        assertEquals(List.of(16), core.calledWithArgs);
+    }
+
+    @Test
+    public void unstableNestedCallSite() throws Throwable {
+        for (int i = 0; i < 4; i++) {
+            adaptedProceed.invokeExact((MethodHandle) null, DispatchContext.ofRoles(roleAlike), core, i);
+            assertEquals(List.of(DispatchContext.END, core, i), roleAlike.calledWithArgs);
+            adaptedProceed.invokeExact((MethodHandle) null, DispatchContext.ofRoles(anotherRoleAlike), core, i);
+            assertEquals(List.of(DispatchContext.END, core, i), anotherRoleAlike.calledWithArgs);
+            adaptedProceed.invokeExact((MethodHandle) null, DispatchContext.ofRoles(new RoleAlikeEmpty()), core, i);
+            assertEquals(List.of(i), core.calledWithArgs);
+            adaptedProceed.invokeExact((MethodHandle) null, DispatchContext.END, core, -i);
+            assertEquals(List.of(-i), core.calledWithArgs);
+            adaptedProceed.invokeExact((MethodHandle) null, DispatchContext.ofRoles(new Object()), core, i);
+            assertEquals(List.of(i), core.calledWithArgs);
+        }
+    }
+
     @Test(expected = NoSuchMethodException.class)
     public void missingCoreMethod() throws Throwable {
         DispatchContext ctx = DispatchContext.ofRoles();